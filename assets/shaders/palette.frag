@@ -0,0 +1,33 @@
+#ifdef GL_ES
+precision mediump float;
+#endif
+
+// The vertex color does not tint the sprite. Instead, it selects how the
+// sprite is drawn (see PaletteShader.java):
+//   r = the row of the palette texture to use
+//   g = the number of colors in that palette
+//   b = the mode, 0 for palette swap, 1 for cutout, anything else draws the texture as-is
+varying vec4 v_color;
+varying vec2 v_texCoords;
+
+uniform sampler2D u_texture;
+uniform sampler2D u_palette;
+uniform vec2 u_paletteSize;  // (max colors, max palettes)
+
+void main() {
+    vec4 texColor = texture2D(u_texture, v_texCoords);
+    vec3 data = floor(v_color.rgb * 255.0 + 0.5);
+
+    if (data.b < 0.5) {
+        float numColors = data.g;
+        float colorIndex = clamp(floor(texColor.r * numColors), 0.0, numColors - 1.0);
+        vec2 paletteCoords = (vec2(colorIndex, data.r) + 0.5) / u_paletteSize;
+        gl_FragColor = texture2D(u_palette, paletteCoords);
+    } else if (data.b < 1.5) {
+        float epsilon = 0.0001;
+        float isBlack = step(texColor.r, epsilon) * step(texColor.g, epsilon) * step(texColor.b, epsilon);
+        gl_FragColor = mix(texColor, vec4(0.0, 0.0, 0.0, 0.0), isBlack);
+    } else {
+        gl_FragColor = texColor;
+    }
+}
@@ -3,9 +3,6 @@ package com.buaisociety.pacman;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.EntityType;
@@ -20,10 +17,17 @@ import com.buaisociety.pacman.event.GameEndEvent;
 import com.buaisociety.pacman.event.LoseLifeEvent;
 import com.buaisociety.pacman.event.NextLevelEvent;
 import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.MazeTemplate;
 import com.buaisociety.pacman.maze.TerminalReason;
 import com.buaisociety.pacman.maze.TileState;
+import com.buaisociety.pacman.metrics.LevelLoadEvent;
+import com.buaisociety.pacman.metrics.Metrics;
+import com.buaisociety.pacman.metrics.Phase;
+import com.buaisociety.pacman.metrics.TickEvent;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
+import com.buaisociety.pacman.sprite.PaletteShader;
 import com.buaisociety.pacman.sprite.TextSpriteSheet;
+import com.buaisociety.pacman.util.AssetFiles;
 import com.buaisociety.pacman.util.Disposable;
 import com.buaisociety.pacman.util.EventSystem;
 import com.buaisociety.pacman.util.Joystick;
@@ -34,8 +38,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 
+import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.StreamSupport;
 
 /**
@@ -43,8 +52,12 @@ import java.util.stream.StreamSupport;
  */
 public class GameManager implements Disposable {
 
+    // Tile layouts of each maze, by name. Shared by every game
+    private static final @NotNull Map<String, MazeTemplate> MAZE_TEMPLATES = new ConcurrentHashMap<>();
+
     private final @NotNull EventSystem events;
     private final @NotNull Config config;
+    private final @NotNull SplittableRandom random;
 
     private int level;
     private int extraLives;
@@ -54,22 +67,27 @@ public class GameManager implements Disposable {
     private @NotNull GrayscaleSpriteSheet pacmanSprite;
 
     public GameManager(@NotNull EventSystem events, @NotNull Config config) {
-        this.events = events;
+        this.events = events.createChild();
         this.config = config;
 
         this.level = config.startLevel;
         this.extraLives = config.startLives;
         this.score = config.startScore;
         this.currentMaze = null;
+        this.random = new SplittableRandom(config.seed);
 
         this.textSprite = config.textSprite;
         textSprite.getSpriteSheet().setColors(Color.CLEAR, Color.WHITE);
         this.pacmanSprite = config.pacmanSprite;
         pacmanSprite.setColors(Color.CLEAR, Color.YELLOW);
+        Metrics.gameStarted();
     }
 
     /**
      * Returns the event system, in charge of firing and listening to events.
+     * This is a {@link EventSystem#createChild() child} of the event system
+     * the game was created with, so listeners registered here only hear
+     * events from this game.
      *
      * @return the event system
      */
@@ -87,6 +105,18 @@ public class GameManager implements Disposable {
         return config;
     }
 
+    /**
+     * Returns the random number generator for this game, seeded with
+     * {@link Config#seed}. All randomness in a game should come from here, so
+     * that games with the same seed (and deterministic behaviors) play out
+     * identically.
+     *
+     * @return the random number generator for this game
+     */
+    public @NotNull SplittableRandom getRandom() {
+        return random;
+    }
+
     /**
      * Returns the current level. 1 is the first level. 0 implies that no game
      * has been started yet.
@@ -163,7 +193,7 @@ public class GameManager implements Disposable {
             return;
         if (extraLives < 0) {
             // Let people press any button to restart the game
-            if (Gdx.input.isKeyJustPressed(Input.Keys.ANY_KEY)) {
+            if (Gdx.input != null && Gdx.input.isKeyJustPressed(Input.Keys.ANY_KEY)) {
                 level = 0;
                 extraLives = config.startLives;
                 score = config.startScore;
@@ -173,10 +203,25 @@ public class GameManager implements Disposable {
             return;
         }
 
+        TickEvent tick = new TickEvent();
+        tick.begin();
+        long start = System.nanoTime();
         currentMaze.update();
+        Metrics.record(Phase.UPDATE, start);
+        Metrics.tick();
+        tick.end(config.id, level);
     }
 
     public void postUpdate() {
+        long start = System.nanoTime();
+        checkTerminal();
+        Metrics.record(Phase.POST_UPDATE, start);
+    }
+
+    /**
+     * Starts the next level if pacman won, or takes a life if pacman lost.
+     */
+    private void checkTerminal() {
         TerminalReason complete = currentMaze.getTerminalReason();
 
         if (complete == TerminalReason.WIN) {
@@ -228,19 +273,28 @@ public class GameManager implements Disposable {
             textSprite.render(batch, 76, 120, "GAME OVER");
             textSprite.getSpriteSheet().setColors(Color.CLEAR, Color.WHITE);
         }
+
+        PaletteShader.end(batch);
     }
 
     /**
      * Moves to the next level, and sets up the maze for that level.
      */
     public void nextLevel() {
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        loadNextLevel();
+        event.end(config.id, level);
+    }
+
+    private void loadNextLevel() {
         level++;
 
         // Parse levels.json, and determine the name of the next level
         ObjectMapper mapper = new ObjectMapper();
         JsonNode levelsJson;
         try {
-            levelsJson = mapper.readTree(Gdx.files.internal(config.levelsPreset).readString());
+            levelsJson = mapper.readTree(AssetFiles.readString(config.levelsPreset));
         } catch (Exception e) {
             throw new RuntimeException("Failed to load " + config.levelsPreset, e);
         }
@@ -256,37 +310,14 @@ public class GameManager implements Disposable {
         // Now that we have the next level name, we should get the maze for it
         JsonNode mazeConfigJson;
         try {
-            mazeConfigJson = mapper.readTree(Gdx.files.internal("mazes/" + nextLevelName + "/config.json").readString());
+            mazeConfigJson = mapper.readTree(AssetFiles.readString("mazes/" + nextLevelName + "/config.json"));
         } catch (Exception e) {
             throw new RuntimeException("Failed to load maze config for " + nextLevelName, e);
         }
 
-        Pixmap pixmap = new Pixmap(Gdx.files.internal("mazes/" + nextLevelName + "/maze.png"));
-        TileState[][] tiles = new TileState[pixmap.getHeight()][pixmap.getWidth()];
-        for (int y = 0; y < pixmap.getHeight(); y++) {
-            for (int x = 0; x < pixmap.getWidth(); x++) {
-                int pixel = pixmap.getPixel(x, y);
-                Color color = new Color(pixel);
-                int red = (int) (color.r * 255);  // grayscale, so r=g=b
-
-                // This is a 4-bit grayscale image, so we can only have 16 colors
-                int normalized = red / (256 / (TileState.values().length - 1));
-                tiles[pixmap.getHeight() - 1 - y][x] = switch (normalized) {
-                    case 0 -> TileState.SPACE;
-                    case 1 -> TileState.TUNNEL;
-                    case 2 -> TileState.PELLET;
-                    case 3 -> TileState.POWER_PELLET;
-                    case 4 -> TileState.GHOST_PEN;
-                    case 5 -> TileState.WALL;
-                    default -> throw new IllegalStateException("Unexpected value: " + normalized);
-                };
-            }
-        }
-
-        Sprite levelSprite = new Sprite(new Texture("mazes/" + nextLevelName + "/render.png"));
-
+        MazeTemplate template = MAZE_TEMPLATES.computeIfAbsent(nextLevelName, GameManager::loadMazeTemplate);
         Vector2i fruitSpawnPixel = parseVector(mazeConfigJson.get("fruit_spawn_position"));
-        Maze maze = new Maze(this, levelSprite, tiles, fruitSpawnPixel);
+        Maze maze = new Maze(this, "mazes/" + nextLevelName + "/render.png", template, fruitSpawnPixel);
         Vector2i pacmanSpawnPixel = parseVector(mazeConfigJson.get("pacman_spawn_position"));
         Vector2i ghostRevivePixel = parseVector(mazeConfigJson.get("ghost_revive_position"));
 
@@ -299,7 +330,7 @@ public class GameManager implements Disposable {
 
             JsonNode ghostJson;
             try {
-                ghostJson = mapper.readTree(Gdx.files.internal(ghostName).readString());
+                ghostJson = mapper.readTree(AssetFiles.readString(ghostName));
             } catch (Exception e) {
                 throw new RuntimeException("Failed to load ghost config for " + ghostName, e);
             }
@@ -329,7 +360,7 @@ public class GameManager implements Disposable {
 
             GhostEntity.Config ghostConfig = new GhostEntity.Config();
             ghostConfig.isElroy = isElroy;
-            ghostConfig.spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/ghost-sprite.png"), 20);
+            ghostConfig.spriteSheet = new GrayscaleSpriteSheet("sprites/ghost-sprite.png", 20);
             ghostConfig.chase = behavior;
             ghostConfig.scatterTile = ghostScatterTile;
             ghostConfig.spawnPixel = ghostSpawnPixel;
@@ -356,15 +387,16 @@ public class GameManager implements Disposable {
             if (spawnEvent.isCancelled())
                 continue;
 
-            maze.getEntities().add(spawnEvent.getEntity());
+            maze.addEntity(spawnEvent.getEntity());
         }
 
         Joystick joystick = new Joystick();
-        Gdx.input.setInputProcessor(joystick);
+        if (Gdx.input != null)
+            Gdx.input.setInputProcessor(joystick);
         PacmanEntity.Config pacmanConfig = new PacmanEntity.Config();
         pacmanConfig.behavior = new JoystickInputBehavior(joystick);
         pacmanConfig.spawnPixel = pacmanSpawnPixel;
-        pacmanConfig.spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        pacmanConfig.spriteSheet = new GrayscaleSpriteSheet("sprites/pacman-sprite.png", 20);
 
         // Fire an event to allow modification of the pacman config
         EntityPreSpawnEvent preSpawnEvent = new EntityPreSpawnEvent(maze, EntityType.PACMAN, pacmanConfig);
@@ -381,10 +413,14 @@ public class GameManager implements Disposable {
         if (spawnEvent.isCancelled())
             return;
 
-        maze.getEntities().add(spawnEvent.getEntity());
+        maze.addEntity(spawnEvent.getEntity());
 
         CreateMazeEvent createMazeEvent = new CreateMazeEvent(maze);
         events.fireEvent(createMazeEvent);
+
+        // Free the textures and frame buffers of the previous level
+        if (currentMaze != null)
+            currentMaze.dispose();
         this.currentMaze = maze;
     }
 
@@ -399,6 +435,37 @@ public class GameManager implements Disposable {
         pacmanSprite.dispose();
     }
 
+    /**
+     * Parses the tiles of a maze from its <code>maze.png</code>. Each maze is
+     * only parsed once, then every game shares the template.
+     *
+     * @param mazeName the name of the maze, e.g. <code>"1"</code>
+     * @return the template of the maze
+     */
+    private static @NotNull MazeTemplate loadMazeTemplate(@NotNull String mazeName) {
+        BufferedImage image = AssetFiles.readImage("mazes/" + mazeName + "/maze.png");
+        TileState[][] tiles = new TileState[image.getHeight()][image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int pixel = image.getRGB(x, y);  // ARGB
+                int red = (pixel >> 16) & 0xFF;  // grayscale, so r=g=b
+
+                // This is a 4-bit grayscale image, so we can only have 16 colors
+                int normalized = red / (256 / (TileState.values().length - 1));
+                tiles[image.getHeight() - 1 - y][x] = switch (normalized) {
+                    case 0 -> TileState.SPACE;
+                    case 1 -> TileState.TUNNEL;
+                    case 2 -> TileState.PELLET;
+                    case 3 -> TileState.POWER_PELLET;
+                    case 4 -> TileState.GHOST_PEN;
+                    case 5 -> TileState.WALL;
+                    default -> throw new IllegalStateException("Unexpected value: " + normalized);
+                };
+            }
+        }
+        return new MazeTemplate(tiles);
+    }
+
     private static @NotNull Color parseColor(@NotNull JsonNode node) {
         return new Color(
             (float) node.get("r").asDouble(),
@@ -415,12 +482,13 @@ public class GameManager implements Disposable {
 
     public static class Config {
         public int id = 0;
-        public @NotNull TextSpriteSheet textSprite = new TextSpriteSheet(new GrayscaleSpriteSheet(new Texture("sprites/text-sprite.png"), 8));
-        public @NotNull GrayscaleSpriteSheet pacmanSprite = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        public @NotNull TextSpriteSheet textSprite = new TextSpriteSheet(new GrayscaleSpriteSheet("sprites/text-sprite.png", 8));
+        public @NotNull GrayscaleSpriteSheet pacmanSprite = new GrayscaleSpriteSheet("sprites/pacman-sprite.png", 20);
         public String levelsPreset = "levels.json";
         public int startLevel = 0;  // when nextLevel() is called for the first time, this gets incremented to 1
         public int startLives = 2;
         public int startScore = 0;
         public int handicap = 0;  // Delays the level speed changes by this many levels
+        public long seed = ThreadLocalRandom.current().nextLong();  // Seeds the randomness of the game, see getRandom()
     }
 }
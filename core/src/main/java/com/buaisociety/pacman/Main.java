@@ -17,6 +17,11 @@ import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
 import com.buaisociety.pacman.event.CreateMazeEvent;
 import com.buaisociety.pacman.event.EntityPreSpawnEvent;
 import com.buaisociety.pacman.event.GameEndEvent;
+import com.buaisociety.pacman.feature.Features;
+import com.buaisociety.pacman.metrics.GenerationMetrics;
+import com.buaisociety.pacman.metrics.Metrics;
+import com.buaisociety.pacman.metrics.MetricsLog;
+import com.buaisociety.pacman.metrics.Phase;
 import com.buaisociety.pacman.util.EventSystem;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
@@ -52,16 +57,26 @@ public class Main extends ApplicationAdapter {
     private final @NotNull Vector2i visibleGames = new Vector2i(4, 2);
     private final @NotNull List<PacmanNeatClient> managers = new ArrayList<>();
     private final int totalGames = 250;
+    private final @NotNull RacingEvaluator racing = new RacingEvaluator(new RacingEvaluator.Config());
+    private MultiMazeEvaluator multiMaze;  // when enabled, replaces the games above
     private GameLoop secondLoop;  // 1 update per second
     private boolean paused;
     private boolean showNetworks;
+    private boolean overview;  // press O to draw every game as a minimap
+    private final @NotNull PopulationOverview populationOverview = new PopulationOverview(25, 28, 36);
+    private boolean turbo;  // press T to run as many ticks as fit in the frame budget
+    private final long frameBudgetNanos = 14_000_000L;  // leaves ~2.5ms of a 60Hz frame for drawing
+    private final int ticksPerFrame = 1;  // only draw every Nth tick, e.g. 4 runs the games 4x faster
     private int frames;
     private int fps;
+    private int tps;
+    private int renderCalls;  // draw calls in the last frame
 
     // deep learning
     private Neat neat;
     private NeatPrinter neatPrinter;
     private NeatSaver neatSaver;
+    private MetricsLog metricsLog;  // metrics.csv and metrics.jsonl in the save folder
     private ExecutorService threadPool;
 
     @Override
@@ -71,12 +86,15 @@ public class Main extends ApplicationAdapter {
         camera.setToOrtho(false, 8 * 28 * visibleGames.x, 8 * 36 * visibleGames.y);
         neat = createNeat();
         neatPrinter = new NeatPrinter(neat);
-        neatSaver = new NeatSaver(neat, getSaveFolder());
+        File saveFolder = getSaveFolder();
+        neatSaver = new NeatSaver(neat, saveFolder);
+        metricsLog = new MetricsLog(saveFolder);
         secondLoop = new GameLoop(1);
 
         int processors = Runtime.getRuntime().availableProcessors();
         threadPool = Executors.newFixedThreadPool(processors);
         System.out.println("Using " + processors + " threads");
+        multiMaze = new MultiMazeEvaluator(new MultiMazeEvaluator.Config(), processors);
 
         // When all games have ended, reset
         events.registerListener(GameEndEvent.class, event -> {
@@ -91,7 +109,8 @@ public class Main extends ApplicationAdapter {
 
             PacmanEntity.Config config = (PacmanEntity.Config) event.getConfig();
             int id = event.getMaze().getLevelManager().getConfig().id;
-            config.behavior = new NeatPacmanBehavior(neat.getClients().get(id));
+            PacmanNeatClient manager = managers.get(id);
+            config.behavior = new NeatPacmanBehavior(manager.getClient(), true, manager.getLiveInputs());
         });
 
         events.registerListener(CreateMazeEvent.class, SpecialTrainingConditions.onCreateMaze());
@@ -172,22 +191,36 @@ public class Main extends ApplicationAdapter {
     }
 
     public void reset() {
+        long start = System.nanoTime();
+        startGames();
+        Metrics.record(Phase.RESET, start);
+    }
+
+    private void startGames() {
         for (PacmanNeatClient manager : managers) {
             manager.getGameManager().dispose();
         }
         managers.clear();
 
+        if (multiMaze.getConfig().enabled) {
+            multiMaze.startGeneration(neat.getClients(), threadPool);
+            return;
+        }
+
         for (int i = 0; i < totalGames; i++) {
             GameManager.Config config = new GameManager.Config();
             config.id = i;
             GameManager gameManager = new GameManager(events, config);
-            gameManager.nextLevel();
-            gameManager.setExtraLives(0);
 
+            // Added before the first level, since spawning pacman looks up its client by id
             PacmanNeatClient neatClient = new PacmanNeatClient(neat, neat.getClients().get(i));
-            neatClient.setGameManager(gameManager);
             this.managers.add(neatClient);
+            gameManager.nextLevel();
+            gameManager.setExtraLives(0);
+            neatClient.setGameManager(gameManager);
         }
+
+        racing.startGeneration(managers);
     }
 
     @Override
@@ -195,21 +228,53 @@ public class Main extends ApplicationAdapter {
 
         paused ^= Gdx.input.isKeyJustPressed(Input.Keys.SPACE);
         showNetworks ^= Gdx.input.isKeyJustPressed(Input.Keys.TAB);
+        turbo ^= Gdx.input.isKeyJustPressed(Input.Keys.T);
+        overview ^= Gdx.input.isKeyJustPressed(Input.Keys.O);
 
         frames++;
         fps++;
 
         if (secondLoop.update()) {
-            System.out.println("FPS: " + fps + ", Frames: " + frames);
+            System.out.println("FPS: " + fps + ", Frames: " + frames + ", TPS: " + tps + (turbo ? " (turbo)" : "") + ", Draw calls: " + renderCalls);
             fps = 0;
+            tps = 0;
         }
 
+        if (multiMaze.getConfig().enabled) {
+            renderMultiMaze();
+            return;
+        }
+
+        // Simulation speed is not tied to the frame rate. Run ticksPerFrame
+        // ticks, and in turbo mode, keep going until the frame budget is used
+        long frameStart = System.nanoTime();
+        int ticks = 0;
+        do {
+            tick();
+            ticks++;
+        } while (!paused && (ticks < ticksPerFrame || turbo && System.nanoTime() - frameStart < frameBudgetNanos));
+        tps += paused ? 0 : ticks;
+
+        long start = System.nanoTime();
+        draw();
+        Metrics.record(Phase.RENDER, start);
+    }
+
+    /**
+     * Updates every running game by 1 tick, and starts the next generation
+     * once every game is complete.
+     */
+    private void tick() {
         // If all games are complete, reset
         if (managers.stream().map(PacmanNeatClient::getGameCompleteFuture).allMatch(CompletableFuture::isDone)) {
-            reset();
+            // Evolve before the next games are created, so their pacmen (and
+            // live inputs) use the new genomes
+            racing.endGeneration();
             System.out.println(neatPrinter.render());
-            neatSaver.save();
-            neat.evolve();
+            Features.printCosts();
+            Features.resetCosts();
+            saveAndEvolve();
+            reset();
         }
 
         // Update games
@@ -244,10 +309,28 @@ public class Main extends ApplicationAdapter {
             manager.getGameManager().postUpdate();
         }
 
-        // Render everything
+        // Eliminate the worst clients once they have used their tick budget
+        if (!updatedManagers.isEmpty())
+            racing.onTick(updatedManagers.size());
+    }
+
+    /**
+     * Draws the latest state of the first few running games, or every game
+     * as a minimap in overview mode.
+     */
+    private void draw() {
+        int renderCallsBefore = batch.totalRenderCalls;  // renderCalls resets when the pellet layers pause the batch
         ScreenUtils.clear(0, 0, 0, 1);
         batch.begin();
 
+        if (overview) {
+            batch.setProjectionMatrix(camera.combined);
+            populationOverview.render(batch, managers, 8 * 28 * visibleGames.x, 8 * 36 * visibleGames.y);
+            batch.end();
+            renderCalls = batch.totalRenderCalls - renderCallsBefore;
+            return;
+        }
+
         // Get a copy of the managers list and sort by score so the best are rendered first
         List<PacmanNeatClient> sortedManagers = new ArrayList<>(managers);
         sortedManagers.sort(Comparator.comparingInt(manager -> -manager.getGameManager().getScore()));
@@ -267,10 +350,49 @@ public class Main extends ApplicationAdapter {
             manager.render(batch);
         }
         batch.end();
+        renderCalls = batch.totalRenderCalls - renderCallsBefore;
+    }
+
+    /**
+     * In multi-maze mode, games run to completion on the thread pool, so there
+     * is nothing to update or draw here. Just wait for the generation to end.
+     */
+    private void renderMultiMaze() {
+        ScreenUtils.clear(0, 0, 0, 1);
+        if (!multiMaze.isGenerationDone())
+            return;
+
+        // The clients must evolve before the next generation starts, since
+        // the jobs start immediately
+        multiMaze.endGeneration();
+        System.out.println(neatPrinter.render());
+        Features.printCosts();
+        Features.resetCosts();
+        saveAndEvolve();
+        reset();
+    }
+
+    /**
+     * Saves and evolves the population, then writes the metrics of the
+     * generation that just ended.
+     */
+    private void saveAndEvolve() {
+        long start = System.nanoTime();
+        neatSaver.save();
+        Metrics.record(Phase.SAVE, start);
+
+        start = System.nanoTime();
+        neat.evolve();
+        Metrics.record(Phase.EVOLVE, start);
+
+        GenerationMetrics metrics = Metrics.endGeneration();
+        System.out.println(metrics);
+        metricsLog.write(metrics);
     }
 
     @Override
     public void dispose() {
+        populationOverview.dispose();
         batch.dispose();
     }
 }
@@ -0,0 +1,230 @@
+package com.buaisociety.pacman;
+
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
+import com.buaisociety.pacman.event.CreateMazeEvent;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.event.NextLevelEvent;
+import com.buaisociety.pacman.util.EventSystem;
+import com.cjcrafter.neat.Client;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates every client on several mazes, instead of only the mazes listed
+ * in <code>levels.json</code>.
+ *
+ * <p>Each (client, maze) pair is a separate job, which plays a game from start
+ * to finish on the thread pool. Once every job has finished, each client's
+ * fitness is the {@link Aggregation} of its results on each maze.
+ *
+ * <p>Jobs are submitted longest first (using how many ticks the same job took
+ * last generation), so the thread pool never ends a generation waiting on one
+ * long game that was started last. This keeps the time per generation close
+ * to the total work divided by the number of threads.
+ */
+public class MultiMazeEvaluator {
+
+    private final @NotNull Config config;
+    private final int threads;
+
+    private @NotNull List<Client> clients = List.of();
+    private @NotNull boolean[][] liveInputs = new boolean[0][];  // per client, see NeatPacmanBehavior#analyzeLiveInputs
+    private int[][] fitness = new int[0][];
+    private int[][] ticks = new int[0][];
+    private int[][] expectedTicks = new int[0][];
+    private @NotNull CompletableFuture<Void> generationFuture = CompletableFuture.completedFuture(null);
+    private final @NotNull AtomicInteger completedJobs = new AtomicInteger();
+    private final @NotNull AtomicLong jobNanos = new AtomicLong();
+    private int totalJobs;
+    private long generationStart;
+
+    public MultiMazeEvaluator(@NotNull Config config, int threads) {
+        this.config = config;
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the configuration for this evaluator.
+     *
+     * @return the configuration for this evaluator
+     */
+    public @NotNull Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns <code>true</code> once every job of the current generation has
+     * finished.
+     *
+     * @return true if the generation is done
+     */
+    public boolean isGenerationDone() {
+        return generationFuture.isDone();
+    }
+
+    /**
+     * Returns the number of jobs that have finished this generation.
+     *
+     * @return the number of finished jobs
+     */
+    public int getCompletedJobs() {
+        return completedJobs.get();
+    }
+
+    /**
+     * Returns the number of jobs in this generation.
+     *
+     * @return the number of jobs
+     */
+    public int getTotalJobs() {
+        return totalJobs;
+    }
+
+    /**
+     * Submits a job for every (client, maze) pair to the thread pool, longest
+     * expected job first.
+     *
+     * @param clients the clients to evaluate
+     * @param threadPool the thread pool to run the games on
+     */
+    public void startGeneration(@NotNull List<Client> clients, @NotNull ExecutorService threadPool) {
+        int mazes = config.mazes.length;
+        if (expectedTicks.length != clients.size())
+            expectedTicks = new int[clients.size()][mazes];
+
+        this.clients = new ArrayList<>(clients);
+        liveInputs = new boolean[clients.size()][];
+        for (int client = 0; client < clients.size(); client++)
+            liveInputs[client] = NeatPacmanBehavior.analyzeLiveInputs(clients.get(client));
+        fitness = new int[clients.size()][mazes];
+        ticks = new int[clients.size()][mazes];
+        completedJobs.set(0);
+        jobNanos.set(0);
+        totalJobs = clients.size() * mazes;
+        generationStart = System.nanoTime();
+
+        // Longest processing time first. Before the first generation, all
+        // jobs are expected to take the same time.
+        List<int[]> jobs = new ArrayList<>(totalJobs);
+        for (int client = 0; client < clients.size(); client++) {
+            for (int maze = 0; maze < mazes; maze++)
+                jobs.add(new int[]{ client, maze });
+        }
+        jobs.sort(Comparator.comparingInt((int[] job) -> expectedTicks[job[0]][job[1]]).reversed());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(totalJobs);
+        for (int[] job : jobs) {
+            int client = job[0];
+            int maze = job[1];
+            futures.add(CompletableFuture.runAsync(() -> play(client, maze), threadPool));
+        }
+        generationFuture = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private void play(int clientIndex, int mazeIndex) {
+        long start = System.nanoTime();
+        Client client = clients.get(clientIndex);
+        String maze = config.mazes[mazeIndex];
+        EventSystem events = new EventSystem();
+        NeatPacmanBehavior[] behavior = new NeatPacmanBehavior[1];
+
+        // Every level of this game is played on the same maze
+        events.registerListener(NextLevelEvent.class, event -> event.setNextLevel(maze));
+        events.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() != EntityType.PACMAN)
+                return;
+
+            PacmanEntity.Config pacmanConfig = (PacmanEntity.Config) event.getConfig();
+            behavior[0] = new NeatPacmanBehavior(client, false, liveInputs[clientIndex]);
+            pacmanConfig.behavior = behavior[0];
+        });
+        events.registerListener(CreateMazeEvent.class, SpecialTrainingConditions.onCreateMaze());
+        events.registerListener(EntityPreSpawnEvent.class, SpecialTrainingConditions.onEntityPreSpawn());
+
+        GameManager gameManager = new GameManager(events, new GameManager.Config());
+        gameManager.nextLevel();
+        gameManager.setExtraLives(config.extraLives);
+
+        int tick = 0;
+        while (gameManager.getExtraLives() >= 0 && tick < config.maxTicksPerGame) {
+            gameManager.update();
+            gameManager.postUpdate();
+            tick++;
+        }
+
+        fitness[clientIndex][mazeIndex] = behavior[0] == null ? gameManager.getScore() : behavior[0].getFitness();
+        ticks[clientIndex][mazeIndex] = tick;
+        gameManager.dispose();
+        jobNanos.addAndGet(System.nanoTime() - start);
+        completedJobs.incrementAndGet();
+    }
+
+    /**
+     * Sets the fitness of every client to the aggregate of its results, and
+     * prints how well the jobs were scheduled. Should be called once
+     * {@link #isGenerationDone()} returns <code>true</code>.
+     */
+    public void endGeneration() {
+        generationFuture.join();
+
+        long totalTicks = 0;
+        for (int i = 0; i < clients.size(); i++) {
+            clients.get(i).setScore((float) config.aggregation.aggregate(fitness[i]));
+            for (int maze = 0; maze < config.mazes.length; maze++) {
+                expectedTicks[i][maze] = ticks[i][maze];
+                totalTicks += ticks[i][maze];
+            }
+        }
+
+        // Efficiency compares the generation time to a perfect schedule,
+        // where every thread finishes at the same time
+        double seconds = (System.nanoTime() - generationStart) / 1e9;
+        double idealSeconds = jobNanos.get() / 1e9 / threads;
+        System.out.printf("Multi-maze: %d jobs on %d mazes, %d ticks in %.1fs (ideal %.1fs, %.0f%% efficient)%n",
+            totalJobs, config.mazes.length, totalTicks, seconds, idealSeconds, 100 * idealSeconds / Math.max(seconds, 1e-9));
+    }
+
+
+    /**
+     * How a client's results on each maze are combined into its fitness.
+     */
+    public enum Aggregation {
+        MEAN,
+        MIN,
+        MEDIAN;
+
+        public double aggregate(@NotNull int[] values) {
+            if (values.length == 0)
+                return 0.0;
+
+            return switch (this) {
+                case MEAN -> Arrays.stream(values).average().orElse(0.0);
+                case MIN -> Arrays.stream(values).min().orElse(0);
+                case MEDIAN -> {
+                    int[] sorted = values.clone();
+                    Arrays.sort(sorted);
+                    int middle = sorted.length / 2;
+                    yield sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+                }
+            };
+        }
+    }
+
+    public static class Config {
+        public boolean enabled = false;
+        public @NotNull String[] mazes = { "0", "1", "2", "3", "4", "5", "6", "7", "8", "9" };  // folders in assets/mazes
+        public @NotNull Aggregation aggregation = Aggregation.MEAN;
+        public int extraLives = 0;  // same as the single maze training
+        public int maxTicksPerGame = 60 * 60 * 10;  // 10 minutes of game time, in case a game never ends
+    }
+}
@@ -4,29 +4,41 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
 import com.cjcrafter.neat.Client;
 import com.cjcrafter.neat.Neat;
+import com.cjcrafter.neat.compute.Calculator;
 import com.cjcrafter.neat.genome.ConnectionGene;
 import com.cjcrafter.neat.genome.NodeGene;
+import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
+import com.buaisociety.pacman.sprite.PaletteShader;
 import com.buaisociety.pacman.util.Disposable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public class PacmanNeatClient implements Disposable {
 
     private static final @NotNull Texture NODE_TEXTURE = createNodeTexture();
-    private static final @NotNull TextureRegion CONNECTION_TEXTURE = createConnectionTexture();
+    private static final int VERTEX_SIZE = 5;  // x, y, color, u, v
+    private static final int SPRITE_SIZE = 4 * VERTEX_SIZE;
 
     private final @NotNull Neat neat;
     private final @NotNull Client client;
     private @Nullable GameManager gameManager;
     private @Nullable CompletableFuture<Void> gameCompleteFuture;
     private boolean renderNetwork;
+    private @Nullable boolean[] liveInputs;  // computed the first time it is needed
+
+    // The neural network, as SpriteBatch vertices: connections, then nodes
+    private @Nullable float[] networkVertices;
+    private @NotNull int[] nodeIds = new int[0];
+    private int connectionCount;
 
     public PacmanNeatClient(@NotNull Neat neat, @NotNull Client client) {
         this.neat = neat;
@@ -58,6 +70,21 @@ public class PacmanNeatClient implements Disposable {
         return gameCompleteFuture;
     }
 
+    /**
+     * Returns which inputs can affect the outputs of the client's network,
+     * see {@link NeatPacmanBehavior#analyzeLiveInputs(Client)}. A new wrapper
+     * is made for every generation, after the population evolves, so the
+     * genome does not change while this wrapper is used and this is only
+     * computed once.
+     *
+     * @return <code>true</code> for each input that is used
+     */
+    public @NotNull boolean[] getLiveInputs() {
+        if (liveInputs == null)
+            liveInputs = NeatPacmanBehavior.analyzeLiveInputs(client);
+        return liveInputs;
+    }
+
     public boolean isRenderNetwork() {
         return renderNetwork;
     }
@@ -76,54 +103,114 @@ public class PacmanNeatClient implements Disposable {
     /**
      * Renders the neural network of the client.
      *
+     * <p>The genome does not change during a generation (and a new client
+     * wrapper is made for every generation), so the geometry of the network
+     * is built once, the first time it is rendered. Each frame only updates
+     * the node colors from their activations, then draws the whole network
+     * with a single call.
+     *
      * @param batch the sprite batch to render to
      */
     private void renderNeuralNetwork(@NotNull SpriteBatch batch) {
-        Map<Integer, NodeGene> cache = new HashMap<>();
-        for (NodeGene node : client.getGenome().getNodes()) {
-            cache.put(node.getId(), node);
+        PaletteShader.end(batch);  // the network is drawn with tints
+
+        if (networkVertices == null)
+            buildNetworkMesh();
+
+        // Node colors are the last vertices, after the connections
+        Calculator calculator = client.getCalculator();
+        int offset = connectionCount * SPRITE_SIZE;
+        for (int i = 0; i < nodeIds.length; i++, offset += SPRITE_SIZE) {
+            float activation = MathUtils.clamp(calculator.getActivation(nodeIds[i]), 0f, 1f);
+            float color = Color.toFloatBits(activation, activation, activation, 1f);
+            for (int corner = 0; corner < 4; corner++)
+                networkVertices[offset + corner * VERTEX_SIZE + 2] = color;
+        }
+
+        batch.draw(NODE_TEXTURE, networkVertices, 0, networkVertices.length);
+    }
+
+    private void buildNetworkMesh() {
+        // Flatten the node positions, so connections can find them by index
+        List<NodeGene> nodes = new ArrayList<>();
+        client.getGenome().getNodes().forEach(nodes::add);
+        Map<Integer, Integer> indices = new HashMap<>();
+        nodeIds = new int[nodes.size()];
+        float[] nodeX = new float[nodes.size()];
+        float[] nodeY = new float[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeGene node = nodes.get(i);
+            indices.put(node.getId(), i);
+            nodeIds[i] = node.getId();
+            nodeX[i] = node.getPosition().x() * 8 * 28;
+            nodeY[i] = node.getPosition().y() * 8 * 36;
         }
 
+        List<ConnectionGene> connections = new ArrayList<>();
         for (ConnectionGene connection : client.getGenome().getConnections()) {
-            NodeGene from = cache.get(connection.getFromId());
-            NodeGene to = cache.get(connection.getToId());
-            renderConnection(batch, connection, from, to);
+            if (indices.containsKey(connection.getFromId()) && indices.containsKey(connection.getToId()))
+                connections.add(connection);
         }
 
-        for (NodeGene node : client.getGenome().getNodes()) {
-            renderNode(batch, node);
+        connectionCount = connections.size();
+        networkVertices = new float[(connectionCount + nodeIds.length) * SPRITE_SIZE];
+        int offset = 0;
+
+        // Connections are lines from one node to the other, thicker for
+        // larger weights. They use the solid center of the node texture, so
+        // the whole network is drawn from 1 texture.
+        for (ConnectionGene connection : connections) {
+            int from = indices.get(connection.getFromId());
+            int to = indices.get(connection.getToId());
+            float x1 = nodeX[from];
+            float y1 = nodeY[from];
+            float x2 = nodeX[to];
+            float y2 = nodeY[to];
+
+            float dx = x2 - x1;
+            float dy = y2 - y1;
+            float length = (float) Math.sqrt(dx * dx + dy * dy);
+            if (length == 0f) {
+                dx = 1f;
+                length = 1f;
+            }
+
+            // Half the thickness, perpendicular to the line
+            float halfWidth = Math.min(Math.abs(connection.getWeight()), 1f) / 2f;
+            float nx = -dy / length * halfWidth;
+            float ny = dx / length * halfWidth;
+
+            Color tint = connection.getWeight() > 0 ? Color.GREEN : Color.RED;
+            if (!connection.getEnabled()) {
+                tint = Color.GRAY;
+            }
+
+            float color = tint.toFloatBits();
+            offset = putVertex(offset, x1 - nx, y1 - ny, color, 0.5f, 0.5f);
+            offset = putVertex(offset, x1 + nx, y1 + ny, color, 0.5f, 0.5f);
+            offset = putVertex(offset, x2 + nx, y2 + ny, color, 0.5f, 0.5f);
+            offset = putVertex(offset, x2 - nx, y2 - ny, color, 0.5f, 0.5f);
         }
-    }
 
-    private void renderNode(@NotNull SpriteBatch batch, @NotNull NodeGene node) {
+        // Node colors are filled in every frame
         float nodeSize = 6;
-        float x = node.getPosition().x() * 8 * 28 - nodeSize / 2;
-        float y = node.getPosition().y() * 8 * 36 - nodeSize / 2;
-
-        float activation = getClient().getCalculator().getActivation(node.getId());
-        batch.setColor(activation, activation, activation, 1f);
-        batch.draw(NODE_TEXTURE, x, y, nodeSize, nodeSize);
-        batch.setColor(Color.WHITE);  // reset tint
-    }
-
-    private void renderConnection(@NotNull SpriteBatch batch, @NotNull ConnectionGene connection, @NotNull NodeGene from, @NotNull NodeGene to) {
-        float x1 = from.getPosition().x() * 8 * 28;
-        float y1 = from.getPosition().y() * 8 * 36;
-        float x2 = to.getPosition().x() * 8 * 28;
-        float y2 = to.getPosition().y() * 8 * 36;
-
-        float angle = (float) Math.atan2(y2 - y1, x2 - x1) * 180f / (float) Math.PI;
-        float distance = (float) Math.hypot(x2 - x1, y2 - y1);
-
-        Color tint = connection.getWeight() > 0 ? Color.GREEN : Color.RED;
-        if (!connection.getEnabled()) {
-            tint = Color.GRAY;
+        for (int i = 0; i < nodeIds.length; i++) {
+            float x = nodeX[i] - nodeSize / 2;
+            float y = nodeY[i] - nodeSize / 2;
+            offset = putVertex(offset, x, y, 0f, 0f, 1f);
+            offset = putVertex(offset, x, y + nodeSize, 0f, 0f, 0f);
+            offset = putVertex(offset, x + nodeSize, y + nodeSize, 0f, 1f, 0f);
+            offset = putVertex(offset, x + nodeSize, y, 0f, 1f, 1f);
         }
+    }
 
-        float scale = Math.min(Math.abs(connection.getWeight()), 1f);
-        batch.setColor(tint);
-        batch.draw(CONNECTION_TEXTURE, x1, y1, 0, 0.5f, distance, 1f, 1f, scale, angle);
-        batch.setColor(Color.WHITE);  // reset tint
+    private int putVertex(int offset, float x, float y, float color, float u, float v) {
+        networkVertices[offset] = x;
+        networkVertices[offset + 1] = y;
+        networkVertices[offset + 2] = color;
+        networkVertices[offset + 3] = u;
+        networkVertices[offset + 4] = v;
+        return offset + VERTEX_SIZE;
     }
 
     public static @NotNull Texture createNodeTexture() {
@@ -136,15 +223,6 @@ public class PacmanNeatClient implements Disposable {
         return texture;
     }
 
-    public static @NotNull TextureRegion createConnectionTexture() {
-        Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
-        pixmap.setColor(1f, 1f, 1f, 1f);
-        pixmap.drawLine(0, 0, 1, 1);
-        Texture texture = new Texture(pixmap);
-        pixmap.dispose();
-        return new TextureRegion(texture);
-    }
-
     /**
      * Disposes of the resources. Should be called when the object is deleted.
      */
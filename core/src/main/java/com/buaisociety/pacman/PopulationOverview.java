@@ -0,0 +1,194 @@
+package com.buaisociety.pacman;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.TileState;
+import com.buaisociety.pacman.util.Disposable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2ic;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * Draws every game of the population as a minimap, 1 pixel per tile, in a
+ * single texture.
+ *
+ * <p>Each frame, the tiles and entities of every game are written straight
+ * into the pixels of one {@link Pixmap}, which is uploaded and drawn with a
+ * single draw call. Games that have ended are dimmed.
+ */
+public class PopulationOverview implements Disposable {
+
+    // RGBA8888
+    private static final int SPACE_COLOR = 0x000000FF;
+    private static final int WALL_COLOR = 0x2121DEFF;
+    private static final int PELLET_COLOR = 0x8A6E66FF;  // dim, so entities stand out
+    private static final int POWER_PELLET_COLOR = 0xFFB897FF;
+    private static final int GHOST_PEN_COLOR = 0x303030FF;
+    private static final int PACMAN_COLOR = 0xFFFF00FF;
+    private static final int GHOST_COLOR = 0xFF0000FF;
+    private static final int GHOST_FRIGHTENED_COLOR = 0x2121FFFF;
+    private static final int GHOST_EATEN_COLOR = 0xFFFFFFFF;
+    private static final int FRUIT_COLOR = 0x00FF00FF;
+
+    private final int columns;
+    private final int mazeWidth;
+    private final int mazeHeight;
+
+    private @Nullable Pixmap pixmap;
+    private @Nullable IntBuffer pixels;
+    private @Nullable Texture texture;
+
+    /**
+     * Creates an overview that lays the games out in a grid.
+     *
+     * @param columns the number of games per row
+     * @param mazeWidth the width of each maze, in tiles
+     * @param mazeHeight the height of each maze, in tiles
+     */
+    public PopulationOverview(int columns, int mazeWidth, int mazeHeight) {
+        this.columns = columns;
+        this.mazeWidth = mazeWidth;
+        this.mazeHeight = mazeHeight;
+    }
+
+    /**
+     * Writes the state of every game into the overview, then draws it scaled
+     * to fit inside the given area. Must be called between
+     * {@link SpriteBatch#begin()} and {@link SpriteBatch#end()}.
+     *
+     * @param batch the batch to draw with
+     * @param games the games to draw, in order
+     * @param width the width of the area to draw in
+     * @param height the height of the area to draw in
+     */
+    public void render(@NotNull SpriteBatch batch, @NotNull List<PacmanNeatClient> games, float width, float height) {
+        int rows = Math.max(1, (games.size() + columns - 1) / columns);
+        ensureSize(columns * mazeWidth, rows * mazeHeight);
+
+        for (int i = 0; i < games.size(); i++) {
+            PacmanNeatClient game = games.get(i);
+            Maze maze = game.getGameManager().getCurrentMaze();
+            int originX = (i % columns) * mazeWidth;
+            int originY = (i / columns) * mazeHeight;
+            if (maze == null) {
+                fill(originX, originY, SPACE_COLOR);
+                continue;
+            }
+
+            boolean dim = game.getGameCompleteFuture().isDone();
+            writeTiles(maze, originX, originY, dim);
+            writeEntities(maze, originX, originY, dim);
+        }
+
+        // Any cells past the last game stay black
+        for (int i = games.size(); i < rows * columns; i++)
+            fill((i % columns) * mazeWidth, (i / columns) * mazeHeight, SPACE_COLOR);
+
+        texture.draw(pixmap, 0, 0);
+
+        float scale = Math.min(width / pixmap.getWidth(), height / pixmap.getHeight());
+        float drawWidth = pixmap.getWidth() * scale;
+        float drawHeight = pixmap.getHeight() * scale;
+        batch.draw(texture, (width - drawWidth) / 2, (height - drawHeight) / 2, drawWidth, drawHeight);
+    }
+
+    private void ensureSize(int width, int height) {
+        if (pixmap != null && pixmap.getWidth() == width && pixmap.getHeight() == height)
+            return;
+
+        dispose();
+        pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        pixmap.setBlending(Pixmap.Blending.None);
+
+        // Big endian, so each int is written as the bytes R, G, B, A
+        pixels = pixmap.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        texture = new Texture(pixmap);
+        texture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+    }
+
+    private void writeTiles(@NotNull Maze maze, int originX, int originY, boolean dim) {
+        Vector2ic dimensions = maze.getDimensions();
+        int width = Math.min(dimensions.x(), mazeWidth);
+        int height = Math.min(dimensions.y(), mazeHeight);
+        int stride = pixmap.getWidth();
+
+        for (int y = 0; y < height; y++) {
+            // Pixmaps start at the top, mazes start at the bottom
+            int row = (originY + mazeHeight - 1 - y) * stride + originX;
+            for (int x = 0; x < width; x++) {
+                int color = colorOf(maze.getTileState(x, y));
+                pixels.put(row + x, dim ? dim(color) : color);
+            }
+        }
+    }
+
+    private void writeEntities(@NotNull Maze maze, int originX, int originY, boolean dim) {
+        int stride = pixmap.getWidth();
+        for (Entity entity : maze.getEntities()) {
+            int tileX = entity.getTileX();
+            int tileY = entity.getTileY();
+            if (tileX < 0 || tileX >= mazeWidth || tileY < 0 || tileY >= mazeHeight)
+                continue;  // e.g. in the tunnel
+
+            int color;
+            if (entity instanceof PacmanEntity) {
+                color = PACMAN_COLOR;
+            } else if (entity instanceof GhostEntity ghost) {
+                color = switch (ghost.getState()) {
+                    case FRIGHTENED -> GHOST_FRIGHTENED_COLOR;
+                    case EATEN -> GHOST_EATEN_COLOR;
+                    default -> GHOST_COLOR;
+                };
+            } else {
+                color = FRUIT_COLOR;
+            }
+
+            int index = (originY + mazeHeight - 1 - tileY) * stride + originX + tileX;
+            pixels.put(index, dim ? dim(color) : color);
+        }
+    }
+
+    private void fill(int originX, int originY, int color) {
+        int stride = pixmap.getWidth();
+        for (int y = 0; y < mazeHeight; y++) {
+            int row = (originY + y) * stride + originX;
+            for (int x = 0; x < mazeWidth; x++)
+                pixels.put(row + x, color);
+        }
+    }
+
+    private static int colorOf(@NotNull TileState state) {
+        return switch (state) {
+            case WALL -> WALL_COLOR;
+            case PELLET -> PELLET_COLOR;
+            case POWER_PELLET -> POWER_PELLET_COLOR;
+            case GHOST_PEN -> GHOST_PEN_COLOR;
+            case SPACE, TUNNEL -> SPACE_COLOR;
+        };
+    }
+
+    private static int dim(int color) {
+        // Quarter the brightness of each color channel, keeping the alpha
+        return ((color >>> 2) & 0x3F3F3F00) | (color & 0xFF);
+    }
+
+    @Override
+    public void dispose() {
+        if (texture != null)
+            texture.dispose();
+        if (pixmap != null)
+            pixmap.dispose();
+        texture = null;
+        pixmap = null;
+        pixels = null;
+    }
+}
@@ -0,0 +1,260 @@
+package com.buaisociety.pacman;
+
+import com.cjcrafter.neat.Client;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Successive-halving ("racing") evaluation of a generation of clients.
+ *
+ * <p>Most genomes in a generation are clearly bad within the first few hundred
+ * ticks, so simulating every game until pacman runs out of lives wastes most of
+ * the generation. Instead, every client starts with a short tick budget. Once
+ * the budget is used up, the clients that are still playing are ranked by
+ * their score, the top fraction survives with a larger budget, and the rest
+ * are eliminated. Eliminated clients keep the score of their partial run as
+ * their fitness.
+ *
+ * <p>Scores only ever increase during a game, so a survivor always finishes
+ * with at least the score that let it survive. This means an eliminated
+ * client is always ranked below every client that outlasted it.
+ *
+ * <p>Racing changes how fitness is assigned, so it is off unless
+ * {@link Config#enabled} is set. Either way, every
+ * {@link Config#validateEvery} generations a validation run is made where
+ * nobody is eliminated. Instead, we record who <i>would</i> have been
+ * eliminated, and compare the racing ranking with the full ranking at the end
+ * of the generation, so racing can be checked before it is turned on.
+ */
+public class RacingEvaluator {
+
+    private final @NotNull Config config;
+
+    private @NotNull List<PacmanNeatClient> clients = List.of();
+    private boolean[] eliminated = new boolean[0];
+    private double[] racingFitness = new double[0];
+    private int[] eliminatedTicks = new int[0];
+    private int[] endTicks = new int[0];
+
+    private int generation;
+    private boolean validating;
+    private int tick;
+    private int rung;
+    private int rungEnd;
+    private long simulatedTicks;
+    private final @NotNull List<Integer> survivorsPerRung = new ArrayList<>();
+
+    public RacingEvaluator(@NotNull Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns the configuration for this evaluator.
+     *
+     * @return the configuration for this evaluator
+     */
+    public @NotNull Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns <code>true</code> if the current generation is a validation run,
+     * where no clients are eliminated.
+     *
+     * @return true if the current generation is a validation run
+     */
+    public boolean isValidating() {
+        return validating;
+    }
+
+    /**
+     * Starts racing a new generation of clients. Should be called once all
+     * the games for the generation have been created.
+     *
+     * @param clients the clients to race, each with a game manager set
+     */
+    public void startGeneration(@NotNull List<PacmanNeatClient> clients) {
+        this.clients = new ArrayList<>(clients);
+        int size = clients.size();
+        eliminated = new boolean[size];
+        racingFitness = new double[size];
+        eliminatedTicks = new int[size];
+        endTicks = new int[size];
+
+        generation++;
+        validating = config.validateEvery > 0 && generation % config.validateEvery == 0;
+        tick = 0;
+        rung = 0;
+        rungEnd = config.initialBudget;
+        simulatedTicks = 0;
+        survivorsPerRung.clear();
+    }
+
+    /**
+     * Should be called once after every game has been updated for a tick.
+     *
+     * @param updatedGames the number of games that were updated this tick
+     */
+    public void onTick(int updatedGames) {
+        tick++;
+        simulatedTicks += updatedGames;
+
+        // Remember when each game stopped, so validation runs can compute how
+        // many ticks racing would have needed
+        for (int i = 0; i < clients.size(); i++) {
+            if (endTicks[i] == 0 && clients.get(i).getGameCompleteFuture().isDone())
+                endTicks[i] = tick;
+        }
+
+        if (!config.enabled && !validating || tick < rungEnd || rung >= config.maxRungs)
+            return;
+
+        eliminate();
+        rung++;
+        rungEnd = (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(rungEnd * config.budgetGrowth));
+    }
+
+    private void eliminate() {
+        List<Integer> running = new ArrayList<>();
+        for (int i = 0; i < clients.size(); i++) {
+            if (!eliminated[i] && !clients.get(i).getGameCompleteFuture().isDone())
+                running.add(i);
+        }
+
+        if (running.size() <= config.minSurvivors) {
+            survivorsPerRung.add(running.size());
+            return;
+        }
+
+        // Best clients first
+        running.sort(Comparator.comparingDouble((Integer i) -> clients.get(i).getClient().getScore()).reversed());
+        int keep = Math.max(config.minSurvivors, (int) Math.ceil(running.size() * config.keepFraction));
+        survivorsPerRung.add(keep);
+
+        for (int j = keep; j < running.size(); j++) {
+            int i = running.get(j);
+            PacmanNeatClient neatClient = clients.get(i);
+            Client client = neatClient.getClient();
+            double fitness = client.getScore();
+
+            eliminated[i] = true;
+            eliminatedTicks[i] = tick;
+            racingFitness[i] = fitness;
+
+            // During validation, let the game keep running so we can compare
+            if (!validating) {
+                client.setScore((float) fitness);
+                neatClient.getGameCompleteFuture().complete(null);
+            }
+        }
+    }
+
+    /**
+     * Should be called once every game in the generation has completed. Prints
+     * the number of simulated ticks, and during validation runs, how well the
+     * racing ranking agrees with the full ranking.
+     */
+    public void endGeneration() {
+        if (!config.enabled && !validating) {
+            System.out.println("Racing: disabled, simulated " + simulatedTicks + " ticks");
+            return;
+        }
+
+        if (!validating) {
+            System.out.println("Racing: simulated " + simulatedTicks + " ticks, survivors per rung " + survivorsPerRung);
+            return;
+        }
+
+        int size = clients.size();
+        double[] fullFitness = new double[size];
+        double[] predictedFitness = new double[size];
+        long racingTicks = 0;
+        for (int i = 0; i < size; i++) {
+            fullFitness[i] = clients.get(i).getClient().getScore();
+            predictedFitness[i] = eliminated[i] ? racingFitness[i] : fullFitness[i];
+
+            // endTicks may be 0 for games that ended on the very last tick
+            int end = endTicks[i] == 0 ? tick : endTicks[i];
+            racingTicks += eliminated[i] ? Math.min(eliminatedTicks[i], end) : end;
+        }
+
+        // How many of the true top-k clients would have survived every rung
+        int k = Math.min(config.topK, size);
+        Integer[] byFull = new Integer[size];
+        for (int i = 0; i < size; i++)
+            byFull[i] = i;
+        Arrays.sort(byFull, Comparator.comparingDouble((Integer i) -> fullFitness[i]).reversed());
+        int retained = 0;
+        for (int j = 0; j < k; j++) {
+            if (!eliminated[byFull[j]])
+                retained++;
+        }
+
+        double speedup = racingTicks == 0 ? 1.0 : (double) simulatedTicks / racingTicks;
+        System.out.printf("Racing validation: %d full ticks vs %d racing ticks (%.2fx), top-%d retained %d/%d, spearman %.3f, survivors per rung %s%n",
+            simulatedTicks, racingTicks, speedup, k, retained, k, spearman(predictedFitness, fullFitness), survivorsPerRung);
+    }
+
+    /**
+     * Returns the Spearman rank correlation between the two arrays. Ties are
+     * given their average rank.
+     */
+    private static double spearman(@NotNull double[] a, @NotNull double[] b) {
+        double[] rankA = ranks(a);
+        double[] rankB = ranks(b);
+        int n = a.length;
+        if (n < 2)
+            return 1.0;
+
+        double mean = (n - 1) / 2.0;
+        double covariance = 0, varianceA = 0, varianceB = 0;
+        for (int i = 0; i < n; i++) {
+            double da = rankA[i] - mean;
+            double db = rankB[i] - mean;
+            covariance += da * db;
+            varianceA += da * da;
+            varianceB += db * db;
+        }
+
+        if (varianceA == 0 || varianceB == 0)
+            return 1.0;
+        return covariance / Math.sqrt(varianceA * varianceB);
+    }
+
+    private static @NotNull double[] ranks(@NotNull double[] values) {
+        int n = values.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+
+        double[] ranks = new double[n];
+        int i = 0;
+        while (i < n) {
+            int j = i;
+            while (j + 1 < n && values[order[j + 1]] == values[order[i]])
+                j++;
+            double rank = (i + j) / 2.0;
+            for (int k = i; k <= j; k++)
+                ranks[order[k]] = rank;
+            i = j + 1;
+        }
+        return ranks;
+    }
+
+
+    public static class Config {
+        public boolean enabled = false;  // eliminate clients, see the validation runs first
+        public int initialBudget = 60 * 15;  // includes the 4-second "READY!" freeze
+        public double budgetGrowth = 2.0;  // each rung's budget is this much larger than the last
+        public double keepFraction = 0.5;  // fraction of running games that survive each rung
+        public int minSurvivors = 8;  // never eliminate below this many running games
+        public int maxRungs = 4;  // after this many rungs, the survivors run until they finish
+        public int validateEvery = 10;  // every N generations, race without eliminating, even when disabled (0 disables)
+        public int topK = 10;  // the top-k used to validate racing
+    }
+}
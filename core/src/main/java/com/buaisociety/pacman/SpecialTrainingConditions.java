@@ -9,7 +9,7 @@ import com.buaisociety.pacman.util.EventListener;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2ic;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
 
 /**
  * Just a quick utility class to help with your special training conditions.
@@ -43,11 +43,12 @@ public final class SpecialTrainingConditions {
     public static @NotNull EventListener<CreateMazeEvent> onCreateMaze() {
         return event -> {
             Maze maze = event.getMaze();
+            SplittableRandom random = maze.getLevelManager().getRandom();
 
             // Go through each cell in the maze and try to remove pellets
             // During training, this is useful since the randomness will help
             // prevent overfitting
-            double pelletDensity = ThreadLocalRandom.current().nextDouble();
+            double pelletDensity = random.nextDouble();
             Vector2ic dimensions = maze.getDimensions();
             for (int x = 0; x < dimensions.x(); x++) {
                 for (int y = 0; y < dimensions.y(); y++) {
@@ -55,7 +56,7 @@ public final class SpecialTrainingConditions {
                     if (tileState != TileState.PELLET && tileState != TileState.POWER_PELLET)
                         continue;
 
-                    if (ThreadLocalRandom.current().nextDouble() < pelletDensity) {
+                    if (random.nextDouble() < pelletDensity) {
                         maze.getTile(x, y).setState(TileState.SPACE);
                     }
                 }
@@ -65,7 +66,7 @@ public final class SpecialTrainingConditions {
             maze.initTiles();
 
             // spawn in a fruit by default to help Pacman learn to eat them
-            if (ThreadLocalRandom.current().nextDouble() < 0.75) {
+            if (random.nextDouble() < 0.75) {
                 maze.spawnFruit();
             }
         };
@@ -38,6 +38,7 @@ public class Tournament extends ApplicationAdapter {
     private GameLoop secondLoop;  // 1 update per second
     private int frames;
     private int fps;
+    private int renderCalls;  // draw calls in the last frame
 
     /**
      * This is where you can instantiate your behavior you have been working
@@ -115,7 +116,7 @@ public class Tournament extends ApplicationAdapter {
         fps++;
 
         if (secondLoop.update()) {
-            System.out.println("FPS: " + fps + ", Frames: " + frames);
+            System.out.println("FPS: " + fps + ", Frames: " + frames + ", Draw calls: " + renderCalls);
             fps = 0;
         }
 
@@ -129,9 +130,11 @@ public class Tournament extends ApplicationAdapter {
 
         batch.setProjectionMatrix(camera.combined);
 
+        int renderCallsBefore = batch.totalRenderCalls;  // renderCalls resets when the pellet layer pauses the batch
         batch.begin();
         gameManager.render(batch);
         batch.end();
+        renderCalls = batch.totalRenderCalls - renderCallsBefore;
     }
 
     @Override
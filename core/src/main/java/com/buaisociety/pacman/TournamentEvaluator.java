@@ -0,0 +1,278 @@
+package com.buaisociety.pacman;
+
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.entity.behavior.TournamentBehavior;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.util.AssetFiles;
+import com.buaisociety.pacman.util.Disposable;
+import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.Statistics;
+import com.cjcrafter.neat.compute.SimpleCalculator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates saved calculators in the same configuration as the
+ * {@link Tournament}, without a window, across every core.
+ *
+ * <p>Each game is seeded (<code>baseSeed</code>, <code>baseSeed + 1</code>,
+ * ...) so runs are reproducible, and every calculator plays the same seeds.
+ * Games are played until the 95% confidence interval of the mean score is
+ * narrower than {@link Config#relativeTolerance} of the mean, or until
+ * {@link Config#maxGames} have been played.
+ *
+ * <p>Long games tend to score higher, and they finish last. To avoid biasing
+ * the results towards short games, the stopping rule (and the final report)
+ * only looks at the longest run of consecutive seeds that have finished.
+ *
+ * <p>Run with <code>./gradlew evaluate -Pcalculators=saves/a.json,saves/b.json</code>.
+ * When 2 calculators are given, the difference of their mean scores is also
+ * reported.
+ */
+public class TournamentEvaluator implements Disposable {
+
+    private final @NotNull Config config;
+    private final @NotNull ExecutorService threadPool;
+
+    public TournamentEvaluator(@NotNull Config config) {
+        this.config = config;
+        this.threadPool = Executors.newFixedThreadPool(config.threads);
+    }
+
+    /**
+     * Returns the configuration for this evaluator.
+     *
+     * @return the configuration for this evaluator
+     */
+    public @NotNull Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Plays seeded tournament games with the given calculator until the score
+     * is known precisely enough.
+     *
+     * @param calculatorJson the saved calculator, e.g. the contents of <code>best-calculator-50.json</code>
+     * @return the results of the games
+     */
+    public @NotNull Summary evaluate(@NotNull String calculatorJson) {
+        long start = System.nanoTime();
+        CompletionService<GameResult> completion = new ExecutorCompletionService<>(threadPool);
+        List<Future<GameResult>> futures = new ArrayList<>();
+        GameResult[] results = new GameResult[config.maxGames];
+
+        // Keep a few games queued per thread, so threads never sit idle
+        int submitted = 0;
+        int inFlight = 0;
+        while (submitted < Math.min(config.maxGames, config.threads * 2)) {
+            long seed = config.baseSeed + submitted;
+            futures.add(completion.submit(() -> play(calculatorJson, seed)));
+            submitted++;
+            inFlight++;
+        }
+
+        int prefix = 0;  // results[0, prefix) have all finished
+        while (inFlight > 0) {
+            GameResult result;
+            try {
+                result = completion.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while evaluating", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Game failed", e.getCause());
+            }
+
+            inFlight--;
+            results[(int) (result.seed - config.baseSeed)] = result;
+            while (prefix < submitted && results[prefix] != null)
+                prefix++;
+
+            if (isPrecise(results, prefix))
+                break;
+
+            if (submitted < config.maxGames) {
+                long seed = config.baseSeed + submitted;
+                futures.add(completion.submit(() -> play(calculatorJson, seed)));
+                submitted++;
+                inFlight++;
+            }
+        }
+
+        // Games past the prefix would bias the results, so they are not needed
+        for (Future<GameResult> future : futures)
+            future.cancel(true);
+
+        double[] scores = new double[prefix];
+        double[] levels = new double[prefix];
+        for (int i = 0; i < prefix; i++) {
+            scores[i] = results[i].score;
+            levels[i] = results[i].level;
+        }
+        return new Summary(scores, levels, (System.nanoTime() - start) / 1e9);
+    }
+
+    private boolean isPrecise(@NotNull GameResult[] results, int prefix) {
+        if (prefix < config.minGames)
+            return false;
+
+        double[] scores = new double[prefix];
+        for (int i = 0; i < prefix; i++)
+            scores[i] = results[i].score;
+        return Statistics.confidenceHalfWidth(scores) <= config.relativeTolerance * Math.abs(Statistics.mean(scores));
+    }
+
+    private @NotNull GameResult play(@NotNull String calculatorJson, long seed) {
+        EventSystem events = new EventSystem();
+
+        // Same as the Tournament, one behavior is shared by every level
+        Behavior behavior = new TournamentBehavior(SimpleCalculator.fromJson(calculatorJson));
+        events.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() == EntityType.PACMAN) {
+                PacmanEntity.Config config = (PacmanEntity.Config) event.getConfig();
+                config.behavior = behavior;
+            }
+        });
+
+        GameManager.Config gameConfig = new GameManager.Config();
+        gameConfig.handicap = config.handicap;
+        gameConfig.levelsPreset = config.levelsPreset;
+        gameConfig.seed = seed;
+        GameManager gameManager = new GameManager(events, gameConfig);
+        gameManager.nextLevel();
+
+        int ticks = 0;
+        while (gameManager.getExtraLives() >= 0 && ticks < config.maxTicksPerGame) {
+            if (Thread.currentThread().isInterrupted())
+                throw new CancellationException("Game " + seed + " was cancelled");
+
+            gameManager.update();
+            gameManager.postUpdate();
+            ticks++;
+        }
+
+        GameResult result = new GameResult(seed, gameManager.getScore(), gameManager.getLevel());
+        gameManager.dispose();
+        return result;
+    }
+
+    /**
+     * Shuts down the thread pool. Should be called when the evaluator is no
+     * longer needed.
+     */
+    @Override
+    public void dispose() {
+        threadPool.shutdownNow();
+    }
+
+    public static void main(String[] args) {
+        // TODO: Change this to the calculator(s) you want to compare
+        String[] paths = args.length > 0
+            ? args
+            : new String[]{ "saves" + File.separator + "oct26-8" + File.separator + "best-calculator-50.json" };
+
+        Config config = new Config();
+        System.out.println("Using " + config.threads + " threads");
+        TournamentEvaluator evaluator = new TournamentEvaluator(config);
+
+        List<Summary> summaries = new ArrayList<>();
+        try {
+            for (String path : paths) {
+                Summary summary = evaluator.evaluate(AssetFiles.readString(path));
+                summaries.add(summary);
+                System.out.println(path + ": " + summary);
+            }
+        } finally {
+            evaluator.dispose();
+        }
+
+        if (summaries.size() == 2) {
+            Summary a = summaries.get(0);
+            Summary b = summaries.get(1);
+
+            // Both calculators played the same seeds, so compare them seed by
+            // seed. The luck of each seed cancels out, which makes the
+            // interval much tighter than comparing 2 independent samples.
+            double[] differences = Statistics.pairedDifferences(a.scores, b.scores);
+            double difference = Statistics.mean(differences);
+            double halfWidth = Statistics.confidenceHalfWidth(differences);
+            boolean significant = Math.abs(difference) > halfWidth;
+            System.out.printf("Score difference: %.1f +/- %.1f over %d paired seeds (%s)%n",
+                difference, halfWidth, differences.length, significant ? "significant" : "not significant");
+        }
+    }
+
+
+    /**
+     * The result of a single game.
+     */
+    private static class GameResult {
+        private final long seed;
+        private final int score;
+        private final int level;
+
+        private GameResult(long seed, int score, int level) {
+            this.seed = seed;
+            this.score = score;
+            this.level = level;
+        }
+    }
+
+    /**
+     * The scores and levels reached over every evaluated game, in seed order.
+     */
+    public static class Summary {
+        private final @NotNull double[] scores;
+        private final @NotNull double[] levels;
+        private final double seconds;
+
+        public Summary(@NotNull double[] scores, @NotNull double[] levels, double seconds) {
+            this.scores = scores;
+            this.levels = levels;
+            this.seconds = seconds;
+        }
+
+        public @NotNull double[] getScores() {
+            return scores;
+        }
+
+        public @NotNull double[] getLevels() {
+            return levels;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games in %.1fs, score %.1f +/- %.1f (median %.0f), level %.2f +/- %.2f (median %.1f)",
+                scores.length, seconds,
+                Statistics.mean(scores), Statistics.confidenceHalfWidth(scores), Statistics.median(scores),
+                Statistics.mean(levels), Statistics.confidenceHalfWidth(levels), Statistics.median(levels));
+        }
+    }
+
+    public static class Config {
+        public @NotNull String levelsPreset = "tournament_levels.json";
+        public int handicap = 8;  // same as the Tournament
+        public int minGames = 32;  // never stop before this many games have finished
+        public int maxGames = 1000;
+        public double relativeTolerance = 0.02;  // stop once the 95% CI of the mean score is within 2%
+        public long baseSeed = 0;  // game i uses seed baseSeed + i
+        public int threads = Runtime.getRuntime().availableProcessors();
+        public int maxTicksPerGame = 60 * 60 * 60;  // 1 hour of game time, in case a game never ends
+    }
+}
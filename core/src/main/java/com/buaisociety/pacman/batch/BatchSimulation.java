@@ -0,0 +1,977 @@
+package com.buaisociety.pacman.batch;
+
+import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.FruitEntity;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.GhostState;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.AggressiveChaseBehavior;
+import com.buaisociety.pacman.entity.behavior.AmbushChaseBehavior;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.entity.behavior.FeignChaseBehavior;
+import com.buaisociety.pacman.entity.behavior.PatrolChaseBehavior;
+import com.buaisociety.pacman.entity.behavior.TargetableBehavior;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.MazeTemplate;
+import com.buaisociety.pacman.maze.NavigationTable;
+import com.buaisociety.pacman.maze.TileState;
+import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.FixedPoint;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Vector2ic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Steps many games of Pacman in lockstep, with the state of every game
+ * stored in flat primitive arrays instead of {@link Maze} and
+ * {@link Entity} objects.
+ *
+ * <p>Each array holds one field for every game (or every ghost of every
+ * game), so a tick is a loop over the games with no virtual calls and no
+ * allocation. This is the same game as {@link Maze#update()} and
+ * {@link GameManager#postUpdate()}, tick for tick, with a few differences:
+ * <ul>
+ *     <li>No events are fired, so listeners cannot change the game once it
+ *     has started (listeners still apply while the games are created).</li>
+ *     <li>Clearing the maze ends the game as a win, instead of moving on to
+ *     the next level.</li>
+ *     <li>Frightened ghosts use a random number generator owned by this
+ *     class, so they turn differently than in the object version.</li>
+ *     <li>Only the 4 chase behaviors in this repo are supported.</li>
+ * </ul>
+ *
+ * <p>Pacman is steered by a {@link PacmanPolicy}, which reads the game
+ * through a read-only {@link GameView}.
+ */
+public class BatchSimulation {
+
+    public static final byte RUNNING = 0;
+    public static final byte WON = 1;
+    public static final byte LOST = 2;
+
+    // Direction ordinals, see Direction
+    static final int UP = 0;
+    static final int DOWN = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 3;
+    static final int NONE = -1;
+    static final int[] DX = { 0, 0, -1, 1 };
+    static final int[] DY = { 1, -1, 0, 0 };
+    private static final int[] BEHIND = { DOWN, UP, RIGHT, LEFT };
+    private static final int[] RIGHT_OF = { RIGHT, LEFT, UP, DOWN };
+    private static final int[] LEFT_OF = { LEFT, RIGHT, DOWN, UP };
+    static final Direction[] DIRECTIONS = Direction.values();
+
+    // Ghosts move half a pixel per tick inside the pen
+    private static final int PEN_SPEED = FixedPoint.ONE / 2;
+
+    // Tile state ordinals, see TileState
+    static final TileState[] TILE_STATES = TileState.values();
+    private static final byte SPACE = (byte) TileState.SPACE.ordinal();
+    private static final byte PELLET = (byte) TileState.PELLET.ordinal();
+    private static final byte POWER_PELLET = (byte) TileState.POWER_PELLET.ordinal();
+    private static final byte WALL = (byte) TileState.WALL.ordinal();
+    private static final byte TUNNEL = (byte) TileState.TUNNEL.ordinal();
+    private static final byte GHOST_PEN = (byte) TileState.GHOST_PEN.ordinal();
+    private static final boolean[] PASSABLE = new boolean[TILE_STATES.length];
+
+    // Ghost state ordinals, see GhostState
+    static final GhostState[] GHOST_STATES = GhostState.values();
+    private static final byte CHASE = (byte) GhostState.CHASE.ordinal();
+    private static final byte SCATTER = (byte) GhostState.SCATTER.ordinal();
+    private static final byte FRIGHTENED = (byte) GhostState.FRIGHTENED.ordinal();
+    private static final byte EATEN = (byte) GhostState.EATEN.ordinal();
+
+    // Same as GhostEntity
+    private static final int[] ELROY_PELLETS = {
+        20, 30, 40, 40, 40, 50, 50, 50, 60, 60, 60, 80, 80, 80, 100, 100, 100, 100, 120, 120, 120
+    };
+
+    // Chase behaviors
+    private static final byte AGGRESSIVE = 0;
+    private static final byte AMBUSH = 1;
+    private static final byte PATROL = 2;
+    private static final byte FEIGN = 3;
+
+    static {
+        for (TileState state : TILE_STATES)
+            PASSABLE[state.ordinal()] = state.isPassable();
+    }
+
+    final int games;
+    final int width;
+    final int height;
+    final int area;
+    final int maxGhosts;
+
+    // Maze, 1 per game. Tiles are indexed [game * area + y * width + x]
+    final byte[] tiles;
+    final byte[] status;
+    final int[] level;
+    final int[] handicap;
+    final int[] score;
+    final int[] extraLives;
+    final int[] totalPellets;
+    final int[] pelletsRemaining;
+    final int[] freezeTicks;
+    final int[] startTicks;
+    final int[] frightenedTimer;
+    final int[] chaseCounter;
+    final int[] chaseIndex;
+    final boolean[] ghostChase;
+    final int[] ghostsEaten;
+    final long[] random;
+
+    // Positions are in 16.16 fixed point, like Entity. See FixedPoint
+
+    // Pacman, 1 per game
+    final int[] pacmanX;
+    final int[] pacmanY;
+    final byte[] pacmanDirection;
+    final int[] pacmanFreezeTicks;
+    final boolean[] pacmanAlive;
+    final int[] pacmanSpawnX;
+    final int[] pacmanSpawnY;
+
+    // Fruit, at most 1 per game
+    final boolean[] fruitPresent;
+    final int[] fruitTicksLeft;
+    final int[] fruitTileX;
+    final int[] fruitTileY;
+    final int[] fruitSpawnX;
+    final int[] fruitSpawnY;
+
+    // Ghosts, maxGhosts per game. Indexed [game * maxGhosts + ghost]
+    final int[] ghostCount;
+    final int[] ghostX;
+    final int[] ghostY;
+    final int[] ghostLastX;
+    final int[] ghostLastY;
+    final byte[] ghostDirection;
+    final byte[] ghostNextDirection;
+    final byte[] ghostState;
+    final boolean[] ghostReleased;
+    final int[] ghostDotCounter;
+    final byte[] ghostKind;
+    final boolean[] ghostElroy;
+    final int[] ghostScatterX;
+    final int[] ghostScatterY;
+    final NavigationTable[] ghostScatterTable;  // shared with every game on the same maze
+    final NavigationTable[] ghostReviveTable;
+    final int[] ghostSpawnX;
+    final int[] ghostSpawnY;
+    final byte[] ghostSpawnDirection;
+    final boolean[] ghostSpawnReleased;
+
+    /**
+     * Copies the games into a batch. Every game must have started a maze
+     * (with {@link GameManager#nextLevel()}) that has not been updated yet,
+     * and every maze must have the same dimensions. The games themselves are
+     * not changed, except that each one's random number generator seeds the
+     * copy.
+     *
+     * @param games the games to copy
+     * @throws IllegalArgumentException if a game cannot be copied
+     */
+    public BatchSimulation(@NotNull List<GameManager> games) {
+        this(maxGhosts(games), games.size(), games.get(0));
+        for (int n = 0; n < this.games; n++)
+            load(n, games.get(n), games.get(n).getRandom().nextLong());
+    }
+
+    /**
+     * Creates a batch of identical copies of one game, which differ only in
+     * their random number generators. This is much faster than creating a
+     * {@link GameManager} for every game.
+     *
+     * @param template the game to copy, see {@link #BatchSimulation(List)}
+     * @param copies the number of games
+     * @param seed the seed for the random number generators
+     * @throws IllegalArgumentException if the game cannot be copied
+     */
+    public BatchSimulation(@NotNull GameManager template, int copies, long seed) {
+        this(maxGhosts(List.of(template)), copies, template);
+        for (int n = 0; n < games; n++)
+            load(n, template, seed + n * 0x9E3779B97F4A7C15L);
+    }
+
+    private BatchSimulation(int maxGhosts, int games, @NotNull GameManager first) {
+        Vector2ic dimensions = requireMaze(first).getDimensions();
+        this.games = games;
+        this.width = dimensions.x();
+        this.height = dimensions.y();
+        this.area = width * height;
+        this.maxGhosts = maxGhosts;
+
+        tiles = new byte[games * area];
+        status = new byte[games];
+        level = new int[games];
+        handicap = new int[games];
+        score = new int[games];
+        extraLives = new int[games];
+        totalPellets = new int[games];
+        pelletsRemaining = new int[games];
+        freezeTicks = new int[games];
+        startTicks = new int[games];
+        frightenedTimer = new int[games];
+        chaseCounter = new int[games];
+        chaseIndex = new int[games];
+        ghostChase = new boolean[games];
+        ghostsEaten = new int[games];
+        random = new long[games];
+
+        pacmanX = new int[games];
+        pacmanY = new int[games];
+        pacmanDirection = new byte[games];
+        pacmanFreezeTicks = new int[games];
+        pacmanAlive = new boolean[games];
+        pacmanSpawnX = new int[games];
+        pacmanSpawnY = new int[games];
+
+        fruitPresent = new boolean[games];
+        fruitTicksLeft = new int[games];
+        fruitTileX = new int[games];
+        fruitTileY = new int[games];
+        fruitSpawnX = new int[games];
+        fruitSpawnY = new int[games];
+
+        int totalGhosts = games * maxGhosts;
+        ghostCount = new int[games];
+        ghostX = new int[totalGhosts];
+        ghostY = new int[totalGhosts];
+        ghostLastX = new int[totalGhosts];
+        ghostLastY = new int[totalGhosts];
+        ghostDirection = new byte[totalGhosts];
+        ghostNextDirection = new byte[totalGhosts];
+        ghostState = new byte[totalGhosts];
+        ghostReleased = new boolean[totalGhosts];
+        ghostDotCounter = new int[totalGhosts];
+        ghostKind = new byte[totalGhosts];
+        ghostElroy = new boolean[totalGhosts];
+        ghostScatterX = new int[totalGhosts];
+        ghostScatterY = new int[totalGhosts];
+        ghostScatterTable = new NavigationTable[totalGhosts];
+        ghostReviveTable = new NavigationTable[totalGhosts];
+        ghostSpawnX = new int[totalGhosts];
+        ghostSpawnY = new int[totalGhosts];
+        ghostSpawnDirection = new byte[totalGhosts];
+        ghostSpawnReleased = new boolean[totalGhosts];
+    }
+
+    private static @NotNull Maze requireMaze(@NotNull GameManager game) {
+        Maze maze = game.getCurrentMaze();
+        if (maze == null)
+            throw new IllegalArgumentException("Game has not started a maze yet");
+        return maze;
+    }
+
+    private static int maxGhosts(@NotNull List<GameManager> games) {
+        if (games.isEmpty())
+            throw new IllegalArgumentException("Need at least 1 game");
+
+        int max = 0;
+        for (GameManager game : games) {
+            int count = 0;
+            for (Entity entity : requireMaze(game).getEntities()) {
+                if (entity instanceof GhostEntity)
+                    count++;
+            }
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    private void load(int n, @NotNull GameManager game, long seed) {
+        Maze maze = requireMaze(game);
+        if (maze.getDimensions().x() != width || maze.getDimensions().y() != height)
+            throw new IllegalArgumentException("Every maze must be " + width + "x" + height);
+
+        PacmanEntity pacman = maze.getPacman();
+        if (pacman.getTicksAlive() != 0)
+            throw new IllegalArgumentException("Maze has already been updated");
+
+        maze.copyTileStates(tiles, n * area);
+
+        status[n] = RUNNING;
+        level[n] = game.getLevel();
+        handicap[n] = game.getConfig().handicap;
+        score[n] = game.getScore();
+        extraLives[n] = game.getExtraLives();
+        pelletsRemaining[n] = maze.getPelletsRemaining();
+        totalPellets[n] = maze.getPelletsRemaining();
+        freezeTicks[n] = 0;
+        startTicks[n] = Maze.START_TICKS;
+        frightenedTimer[n] = maze.getFrightenedTimer();
+        chaseCounter[n] = 0;
+        chaseIndex[n] = 0;
+        ghostChase[n] = maze.isGhostChase();
+        ghostsEaten[n] = 0;
+        random[n] = seed;
+
+        pacmanX[n] = pacman.getFixedX();
+        pacmanY[n] = pacman.getFixedY();
+        pacmanDirection[n] = (byte) pacman.getDirection().ordinal();
+        pacmanFreezeTicks[n] = 0;
+        pacmanAlive[n] = pacman.isAlive();
+        pacmanSpawnX[n] = FixedPoint.fromPixels(pacman.getSpawnPixel().x);
+        pacmanSpawnY[n] = FixedPoint.fromPixels(pacman.getSpawnPixel().y);
+
+        fruitPresent[n] = false;
+        fruitSpawnX[n] = FixedPoint.fromPixels(maze.getFruitSpawnPixel().x());
+        fruitSpawnY[n] = FixedPoint.fromPixels(maze.getFruitSpawnPixel().y());
+
+        int ghosts = 0;
+        for (Entity entity : maze.getEntities()) {
+            if (entity instanceof FruitEntity fruit) {
+                fruitPresent[n] = !fruit.isRemove();
+                fruitTicksLeft[n] = fruit.getTicksLeft();
+                fruitTileX[n] = fruit.getTilePosition().x;
+                fruitTileY[n] = fruit.getTilePosition().y;
+            } else if (entity instanceof GhostEntity ghost) {
+                int g = n * maxGhosts + ghosts++;
+                ghostX[g] = ghost.getFixedX();
+                ghostY[g] = ghost.getFixedY();
+                ghostLastX[g] = ghostX[g];
+                ghostLastY[g] = ghostY[g];
+                ghostDirection[g] = (byte) ghost.getDirection().ordinal();
+                ghostNextDirection[g] = NONE;
+                ghostState[g] = (byte) ghost.getState().ordinal();
+                ghostReleased[g] = ghost.isReleased();
+                ghostDotCounter[g] = ghost.getLocalDotCounter();
+                ghostKind[g] = kindOf(ghost.getBehavior(GhostState.CHASE));
+                ghostElroy[g] = ghost.isElroy();
+                ghostScatterX[g] = ghost.getScatterTile().x;
+                ghostScatterY[g] = ghost.getScatterTile().y;
+                Vector2ic revive = ((TargetableBehavior) ghost.getBehavior(GhostState.EATEN)).getTarget(ghost);
+                MazeTemplate template = maze.getTemplate();
+                ghostScatterTable[g] = template.getNavigationTable(ghostScatterX[g], ghostScatterY[g]);
+                ghostReviveTable[g] = template.getNavigationTable(revive.x(), revive.y());
+                ghostSpawnX[g] = FixedPoint.fromPixels(ghost.getSpawnPixel().x);
+                ghostSpawnY[g] = FixedPoint.fromPixels(ghost.getSpawnPixel().y);
+                ghostSpawnDirection[g] = (byte) ghost.getSpawnDirection().ordinal();
+                ghostSpawnReleased[g] = ghost.isSpawnReleased();
+            }
+        }
+        ghostCount[n] = ghosts;
+    }
+
+    private static byte kindOf(@NotNull Behavior behavior) {
+        if (behavior instanceof AggressiveChaseBehavior)
+            return AGGRESSIVE;
+        if (behavior instanceof AmbushChaseBehavior)
+            return AMBUSH;
+        if (behavior instanceof PatrolChaseBehavior)
+            return PATROL;
+        if (behavior instanceof FeignChaseBehavior)
+            return FEIGN;
+        throw new IllegalArgumentException("Unsupported chase behavior: " + behavior.getClass().getName());
+    }
+
+    /**
+     * Returns the number of games in this batch.
+     *
+     * @return the number of games
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * Returns a read-only view of one game. Views read straight from the
+     * arrays of this batch, so they always show the latest tick.
+     *
+     * @param game the index of the game
+     * @return a view of the game
+     */
+    public @NotNull GameView getView(int game) {
+        GameView view = new GameView(this);
+        view.setGame(game);
+        return view;
+    }
+
+    /**
+     * Returns {@link #RUNNING}, {@link #WON} or {@link #LOST}.
+     *
+     * @param game the index of the game
+     * @return the status of the game
+     */
+    public byte getStatus(int game) {
+        return status[game];
+    }
+
+    /**
+     * Returns true once every game has been won or lost.
+     *
+     * @return true if no game is running
+     */
+    public boolean isDone() {
+        for (int n = 0; n < games; n++) {
+            if (status[n] == RUNNING)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Advances every running game by 1 tick.
+     *
+     * @param policy steers pacman in every game
+     */
+    public void step(@NotNull PacmanPolicy policy) {
+        step(0, games, policy);
+    }
+
+    /**
+     * Advances the running games in <code>[fromGame, toGame)</code> by 1
+     * tick. Games do not share any state, so separate ranges can be stepped
+     * on separate threads.
+     *
+     * @param fromGame the first game, inclusive
+     * @param toGame the last game, exclusive
+     * @param policy steers pacman in every game
+     */
+    public void step(int fromGame, int toGame, @NotNull PacmanPolicy policy) {
+        GameView view = new GameView(this);
+        for (int n = fromGame; n < toGame; n++) {
+            if (status[n] != RUNNING)
+                continue;
+
+            view.setGame(n);
+            updateMaze(n, policy, view);
+            postUpdate(n);
+        }
+    }
+
+    // Maze#update()
+    private void updateMaze(int n, @NotNull PacmanPolicy policy, @NotNull GameView view) {
+        if (freezeTicks[n] > 0) {
+            freezeTicks[n]--;
+            return;
+        }
+        if (startTicks[n] > 0) {
+            startTicks[n]--;
+            return;
+        }
+        if (pelletsRemaining[n] == 0 || !pacmanAlive[n])
+            return;
+
+        if (frightenedTimer[n] > 0)
+            frightenedTimer[n]--;
+
+        if (chaseCounter[n]-- == 0) {
+            ghostChase[n] = !ghostChase[n];
+            int levelIndex = level[n] >= 5 ? 2 : level[n] >= 2 ? 1 : 0;
+            chaseCounter[n] = Maze.LEVEL_STATES[levelIndex][chaseIndex[n]++];
+        }
+
+        // Entities update in the order they are added to the maze
+        int base = n * maxGhosts;
+        for (int g = base; g < base + ghostCount[n]; g++)
+            updateGhost(n, g);
+        updatePacman(n, policy, view);
+        if (fruitPresent[n])
+            updateFruit(n);
+    }
+
+    // GameManager#postUpdate()
+    private void postUpdate(int n) {
+        if (pelletsRemaining[n] == 0) {
+            status[n] = WON;
+        } else if (!pacmanAlive[n]) {
+            resetMaze(n);
+            extraLives[n]--;
+            if (extraLives[n] < 0)
+                status[n] = LOST;
+        }
+    }
+
+    // Maze#reset()
+    private void resetMaze(int n) {
+        frightenedTimer[n] = 0;
+
+        int base = n * maxGhosts;
+        for (int g = base; g < base + ghostCount[n]; g++) {
+            ghostX[g] = ghostSpawnX[g];
+            ghostY[g] = ghostSpawnY[g];
+            ghostLastX[g] = ghostX[g];
+            ghostLastY[g] = ghostY[g];
+            ghostDirection[g] = ghostSpawnDirection[g];
+            ghostReleased[g] = ghostSpawnReleased[g];
+            ghostState[g] = ghostChase[n] ? CHASE : SCATTER;
+            ghostNextDirection[g] = NONE;
+        }
+
+        pacmanFreezeTicks[n] = 0;
+        pacmanAlive[n] = true;
+        pacmanX[n] = pacmanSpawnX[n];
+        pacmanY[n] = pacmanSpawnY[n];
+        pacmanDirection[n] = UP;
+    }
+
+    // PacmanEntity#update()
+    private void updatePacman(int n, @NotNull PacmanPolicy policy, @NotNull GameView view) {
+        if (pacmanFreezeTicks[n] > 0) {
+            pacmanFreezeTicks[n]--;
+            return;
+        }
+
+        int direction = policy.getDirection(view).ordinal();
+        pacmanDirection[n] = (byte) direction;
+        int x = pacmanX[n];
+        int y = pacmanY[n];
+        if (canMove(n, x, y, direction)) {
+            // Pacman stops at the center of the tile instead of overshooting into a wall
+            int tileX = tileOf(x);
+            int tileY = tileOf(y);
+            int speed = getPacmanSpeed(n);
+            if (!isPassable(n, tileX + DX[direction], tileY + DY[direction])) {
+                x = FixedPoint.moveTowards(x, centerOf(tileX), speed);
+                y = FixedPoint.moveTowards(y, centerOf(tileY), speed);
+            } else {
+                x += speed * DX[direction];
+                y += speed * DY[direction];
+            }
+            if (DY[direction] == 0)
+                y = FixedPoint.moveTowards(y, centerOf(tileY), speed);
+            else
+                x = FixedPoint.moveTowards(x, centerOf(tileX), speed);
+
+            pacmanX[n] = wrapX(x);
+            pacmanY[n] = wrapY(y);
+        }
+
+        int eaten = eatPellet(n, tileOf(pacmanX[n]), tileOf(pacmanY[n]));
+        if (eaten == PELLET)
+            pacmanFreezeTicks[n] += 1;
+        else if (eaten == POWER_PELLET)
+            pacmanFreezeTicks[n] += 3;
+    }
+
+    private int getPacmanSpeed(int n) {
+        int level = Math.max(1, this.level[n] - handicap[n]);
+        if (frightenedTimer[n] > 0)
+            return Entity.speed(level >= 5 ? 100 : level >= 2 ? 95 : 90);
+        return Entity.speed(level >= 21 ? 90 : level >= 5 ? 100 : level >= 2 ? 90 : 80);
+    }
+
+    // Maze#eatPellet(PacmanEntity, Tile)
+    private int eatPellet(int n, int tileX, int tileY) {
+        int index = tileIndex(n, tileX, tileY);
+        byte state = tiles[index];
+        int level = Math.max(1, this.level[n] - handicap[n]);
+        int base = n * maxGhosts;
+
+        if (state == PELLET) {
+            addScore(n, 10);
+            pelletsRemaining[n]--;
+            tiles[index] = SPACE;
+
+            // Release the ghosts, see Maze#eatPellet
+            for (int i = 0; i < ghostCount[n]; i++) {
+                int g = base + i;
+                int bound = switch (level) {
+                    case 1 -> i == 2 ? 30 : i >= 3 ? 60 : 0;
+                    case 2 -> i >= 3 ? 50 : 0;
+                    default -> 0;
+                };
+                if (ghostReleased[g])
+                    continue;
+
+                if (ghostDotCounter[g] >= bound)
+                    ghostReleased[g] = true;
+                else
+                    ghostDotCounter[g]++;
+            }
+        } else if (state == POWER_PELLET) {
+            ghostsEaten[n] = 0;
+            addScore(n, 50);
+            pelletsRemaining[n]--;
+            tiles[index] = SPACE;
+
+            int levelIndex = Math.min(level - 1, Maze.LEVEL_FRIGHT_TIMES.length - 1);
+            frightenedTimer[n] = Maze.LEVEL_FRIGHT_TIMES[levelIndex];
+            for (int g = base; g < base + ghostCount[n]; g++)
+                setGhostState(n, g, FRIGHTENED);
+        } else {
+            return state;
+        }
+
+        int pelletsEaten = totalPellets[n] - pelletsRemaining[n];
+        if (pelletsEaten == 70 || pelletsEaten == 170) {
+            fruitPresent[n] = true;
+            fruitTicksLeft[n] = 9 * 60 + nextInt(n, 60);
+            fruitTileX[n] = tileOf(fruitSpawnX[n]);
+            fruitTileY[n] = tileOf(fruitSpawnY[n]);
+        }
+        return state;
+    }
+
+    // FruitEntity#update()
+    private void updateFruit(int n) {
+        boolean remove = --fruitTicksLeft[n] <= 0;
+        if (tileOf(pacmanX[n]) == fruitTileX[n] && tileOf(pacmanY[n]) == fruitTileY[n]) {
+            remove = true;
+            addScore(n, switch (level[n]) {
+                case 1 -> 100;
+                case 2 -> 300;
+                case 3, 4 -> 500;
+                case 5, 6 -> 700;
+                case 7, 8 -> 1000;
+                case 9, 10 -> 2000;
+                case 11, 12 -> 3000;
+                default -> 5000;
+            });
+        }
+        fruitPresent[n] = !remove;
+    }
+
+    // GameManager#incrementScore(int)
+    private void addScore(int n, int points) {
+        int oldScore = score[n];
+        score[n] += points;
+        if (oldScore / 10000 != score[n] / 10000)
+            extraLives[n]++;
+    }
+
+    // GhostEntity#update()
+    private void updateGhost(int n, int g) {
+        int x = ghostX[g];
+        int y = ghostY[g];
+        int tileX = tileOf(x);
+        int tileY = tileOf(y);
+        byte current = tiles[tileIndex(n, tileX, tileY)];
+        int speed = getGhostSpeed(n, g, current);
+
+        if (ghostState[g] == FRIGHTENED && frightenedTimer[n] == 0)
+            setGhostState(n, g, ghostChase[n] ? CHASE : SCATTER);
+
+        // Bounce up and down in the ghost pen until released
+        if (!ghostReleased[g]) {
+            int direction = ghostDirection[g];
+            int nextX = tileOf(x + DX[direction] * PEN_SPEED);
+            int nextY = tileOf(y + DY[direction] * PEN_SPEED);
+            if (Math.floorMod(nextX, width) != Math.floorMod(tileX, width) || Math.floorMod(nextY, height) != Math.floorMod(tileY, height))
+                ghostDirection[g] = (byte) BEHIND[direction];
+            moveGhost(g, ghostDirection[g], PEN_SPEED, false);
+            return;
+        }
+
+        int centerX = FixedPoint.fromPixels(width * Maze.TILE_SIZE / 2);
+        if (current == GHOST_PEN && ghostState[g] != EATEN) {
+            // Move to the middle of the pen, then straight up to leave it
+            if (x == centerX) {
+                ghostDirection[g] = UP;
+                moveGhost(g, UP, PEN_SPEED, false);
+                return;
+            }
+
+            ghostDirection[g] = (byte) (x > centerX ? LEFT : RIGHT);
+            setGhostPosition(g, FixedPoint.moveTowards(x, centerX, PEN_SPEED), y);
+            return;
+        }
+
+        if (ghostState[g] == EATEN) {
+            // Enter the pen from the middle, and revive at the bottom of it
+            byte down = tiles[tileIndex(n, tileX, tileY - 1)];
+            if (down == GHOST_PEN) {
+                int newX = FixedPoint.moveTowards(x, centerX, speed);
+                setGhostPosition(g, newX, y);
+                if (newX == centerX) {
+                    ghostDirection[g] = DOWN;
+                    moveGhost(g, DOWN, speed, false);
+                }
+                return;
+            }
+
+            if (current == GHOST_PEN && down == WALL) {
+                setGhostState(n, g, ghostChase[n] ? CHASE : SCATTER);
+                return;
+            }
+        }
+
+        if (ghostState[g] == CHASE && !ghostChase[n])
+            setGhostState(n, g, SCATTER);
+        else if (ghostState[g] == SCATTER && ghostChase[n])
+            setGhostState(n, g, CHASE);
+
+        if (tileOf(pacmanX[n]) == tileX && tileOf(pacmanY[n]) == tileY)
+            eatGhost(n, g);
+
+        // Only pick a new direction when entering a new tile
+        if (tileOf(ghostLastX[g]) != tileX || tileOf(ghostLastY[g]) != tileY || ghostNextDirection[g] == NONE)
+            ghostNextDirection[g] = (byte) getGhostDirection(n, g);
+
+        // Turn at the center of the tile
+        if (ghostNextDirection[g] != ghostDirection[g]) {
+            int centerPixelX = FixedPoint.tileCenter(tileX);
+            int centerPixelY = FixedPoint.tileCenter(tileY);
+            if (x != centerPixelX || y != centerPixelY) {
+                setGhostPosition(g, FixedPoint.moveTowards(x, centerPixelX, speed), FixedPoint.moveTowards(y, centerPixelY, speed));
+                return;
+            }
+
+            ghostDirection[g] = ghostNextDirection[g];
+        }
+
+        if (!canMove(n, ghostX[g], ghostY[g], ghostDirection[g]))
+            return;
+
+        moveGhost(g, ghostDirection[g], speed, true);
+    }
+
+    private int getGhostSpeed(int n, int g, byte currentTile) {
+        int level = Math.max(1, this.level[n] - handicap[n]);
+        if (ghostState[g] == EATEN)
+            return Entity.speed(200);
+        if (ghostState[g] == FRIGHTENED)
+            return Entity.speed(level == 1 ? 50 : level <= 4 ? 55 : 60);
+        if (currentTile == TUNNEL)
+            return Entity.speed(level == 1 ? 40 : level <= 4 ? 45 : 50);
+
+        if (ghostElroy[g]) {
+            int pellets = ELROY_PELLETS[Math.min(level, ELROY_PELLETS.length - 1)];
+            if (pelletsRemaining[n] < pellets / 2)
+                return Entity.speed(level == 1 ? 85 : level <= 4 ? 95 : 105);
+            if (pelletsRemaining[n] < pellets)
+                return Entity.speed(level == 1 ? 80 : level <= 4 ? 90 : 100);
+        }
+
+        return Entity.speed(level == 1 ? 75 : level <= 4 ? 85 : 95);
+    }
+
+    // GhostEntity#setState(GhostState)
+    private void setGhostState(int n, int g, byte state) {
+        if (state == FRIGHTENED && (ghostState[g] == FRIGHTENED || ghostState[g] == EATEN))
+            return;
+
+        ghostNextDirection[g] = NONE;
+
+        // Ghosts reverse when they change state, unless that backs into a wall
+        int direction = ghostDirection[g];
+        if (!canMove(n, ghostX[g], ghostY[g], BEHIND[direction])) {
+            if (canMove(n, ghostX[g], ghostY[g], RIGHT_OF[direction]))
+                ghostDirection[g] = (byte) RIGHT_OF[direction];
+            else if (canMove(n, ghostX[g], ghostY[g], LEFT_OF[direction]))
+                ghostDirection[g] = (byte) LEFT_OF[direction];
+        } else {
+            ghostDirection[g] = (byte) BEHIND[direction];
+        }
+
+        ghostState[g] = state;
+    }
+
+    // Maze#eatGhost(PacmanEntity, GhostEntity)
+    private void eatGhost(int n, int g) {
+        if (ghostState[g] == CHASE || ghostState[g] == SCATTER) {
+            pacmanAlive[n] = false;
+            return;
+        }
+        if (ghostState[g] == EATEN)
+            return;
+
+        setGhostState(n, g, EATEN);
+        addScore(n, 200 << ghostsEaten[n]);
+        freezeTicks[n] += 40;
+        ghostsEaten[n]++;
+    }
+
+    // TargetableBehavior#getDirection(Entity) and RandomDirectionBehavior
+    private int getGhostDirection(int n, int g) {
+        int tileX = tileOf(ghostX[g]);
+        int tileY = tileOf(ghostY[g]);
+        int behind = BEHIND[ghostDirection[g]];
+
+        if (ghostState[g] == FRIGHTENED) {
+            int direction = nextInt(n, 4);
+            while (!isPassable(n, tileX + DX[direction], tileY + DY[direction]) || direction == behind)
+                direction = RIGHT_OF[direction];
+            return direction;
+        }
+
+        // Static targets come from the maze's navigation tables
+        if (ghostState[g] == EATEN || ghostState[g] == SCATTER) {
+            NavigationTable table = ghostState[g] == EATEN ? ghostReviveTable[g] : ghostScatterTable[g];
+            int direction = table.getDirectionOrdinal(tileY * width + tileX, ghostDirection[g]);
+            return direction == NONE ? ghostDirection[g] : direction;
+        }
+
+        // Chase targets depend on the kind of ghost
+        int targetX;
+        int targetY;
+        int pacmanTileX = tileOf(pacmanX[n]);
+        int pacmanTileY = tileOf(pacmanY[n]);
+        int facing = pacmanDirection[n];
+        switch (ghostKind[g]) {
+            case AMBUSH -> {
+                targetX = pacmanTileX + DX[facing] * 4;
+                targetY = pacmanTileY + DY[facing] * 4;
+            }
+            case PATROL -> {
+                int blinky = findBlinky(n);
+                int blinkyX = blinky == NONE ? pacmanTileX : tileOf(ghostX[blinky]);
+                int blinkyY = blinky == NONE ? pacmanTileY : tileOf(ghostY[blinky]);
+                targetX = (pacmanTileX + DX[facing] * 2 - blinkyX) * 2 + blinkyX;
+                targetY = (pacmanTileY + DY[facing] * 2 - blinkyY) * 2 + blinkyY;
+            }
+            case FEIGN -> {
+                int dx = pacmanTileX - tileX;
+                int dy = pacmanTileY - tileY;
+                boolean far = dx * dx + dy * dy > 64;
+                targetX = far ? pacmanTileX : ghostScatterX[g];
+                targetY = far ? pacmanTileY : ghostScatterY[g];
+            }
+            default -> {
+                targetX = pacmanTileX;
+                targetY = pacmanTileY;
+            }
+        }
+
+        int best = NONE;
+        int smallest = Integer.MAX_VALUE;
+        for (int direction = 0; direction < 4; direction++) {
+            if (direction == behind)
+                continue;
+            if (!isPassable(n, tileX + DX[direction], tileY + DY[direction]))
+                continue;
+
+            int dx = tileX + DX[direction] - targetX;
+            int dy = tileY + DY[direction] - targetY;
+            int distance = dx * dx + dy * dy;
+            if (distance <= smallest) {
+                smallest = distance;
+                best = direction;
+            }
+        }
+        return best == NONE ? ghostDirection[g] : best;
+    }
+
+    private int findBlinky(int n) {
+        int base = n * maxGhosts;
+        for (int g = base; g < base + ghostCount[n]; g++) {
+            if (ghostKind[g] == AGGRESSIVE)
+                return g;
+        }
+        return NONE;
+    }
+
+    // Entity#moveFixed(Direction, int, boolean), for ghosts
+    private void moveGhost(int g, int direction, int speed, boolean fixCenter) {
+        int x = ghostX[g] + speed * DX[direction];
+        int y = ghostY[g] + speed * DY[direction];
+        if (fixCenter) {
+            if (DY[direction] == 0)
+                y = FixedPoint.moveTowards(y, centerOf(tileOf(ghostY[g])), speed);
+            else
+                x = FixedPoint.moveTowards(x, centerOf(tileOf(ghostX[g])), speed);
+        }
+        setGhostPosition(g, wrapX(x), wrapY(y));
+    }
+
+    private void setGhostPosition(int g, int x, int y) {
+        ghostLastX[g] = ghostX[g];
+        ghostLastY[g] = ghostY[g];
+        ghostX[g] = x;
+        ghostY[g] = y;
+    }
+
+    // Entity#canMove(Direction)
+    private boolean canMove(int n, int x, int y, int direction) {
+        int tileX = tileOf(x);
+        int tileY = tileOf(y);
+        if (isPassable(n, tileX + DX[direction], tileY + DY[direction]))
+            return true;
+
+        // Entities can still move into a wall until they reach the center
+        int toCenterX = FixedPoint.toPixel(FixedPoint.tileCenter(tileX)) - FixedPoint.toPixel(x);
+        int toCenterY = FixedPoint.toPixel(FixedPoint.tileCenter(tileY)) - FixedPoint.toPixel(y);
+        return toCenterX * DX[direction] + toCenterY * DY[direction] != 0;
+    }
+
+    boolean isPassable(int n, int tileX, int tileY) {
+        return PASSABLE[tiles[tileIndex(n, tileX, tileY)]];
+    }
+
+    int tileIndex(int n, int tileX, int tileY) {
+        return n * area + Math.floorMod(tileY, height) * width + Math.floorMod(tileX, width);
+    }
+
+    static int tileOf(int fixed) {
+        return FixedPoint.toTile(fixed);
+    }
+
+    private static int centerOf(int tile) {
+        return FixedPoint.tileCenter(tile);
+    }
+
+    private int wrapX(int x) {
+        return Math.floorMod(x, FixedPoint.fromPixels(width * Maze.TILE_SIZE));
+    }
+
+    private int wrapY(int y) {
+        return Math.floorMod(y, FixedPoint.fromPixels(height * Maze.TILE_SIZE));
+    }
+
+    // SplitMix64, so the random state is 1 long per game
+    private int nextInt(int n, int bound) {
+        long z = (random[n] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) ((z >>> 1) % bound);
+    }
+
+    /**
+     * Measures how many games per second the batch can play, with a simple
+     * policy that keeps moving forward and turns at walls.
+     *
+     * @param args the number of games (default 10000) and threads (default all)
+     */
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        GameManager template = new GameManager(new EventSystem(), new GameManager.Config());
+        template.nextLevel();
+        template.setExtraLives(0);
+        BatchSimulation batch = new BatchSimulation(template, games, 0);
+
+        PacmanPolicy policy = view -> {
+            Direction direction = view.getPacmanDirection();
+            if (view.canMove(direction))
+                return direction;
+            if (view.canMove(direction.right()))
+                return direction.right();
+            if (view.canMove(direction.left()))
+                return direction.left();
+            return direction.behind();
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int chunk = (games + threads - 1) / threads;
+        long start = System.nanoTime();
+        long ticks = 0;
+        while (!batch.isDone() && ticks < 60 * 60 * 10) {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int from = 0; from < games; from += chunk) {
+                int to = Math.min(from + chunk, games);
+                int first = from;
+                futures.add(pool.submit(() -> batch.step(first, to, policy)));
+            }
+            for (Future<?> future : futures)
+                future.get();
+            ticks++;
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games x %d ticks in %.2fs on %d threads: %.0f game-ticks/s%n",
+            games, ticks, seconds, threads, games * ticks / seconds);
+    }
+}
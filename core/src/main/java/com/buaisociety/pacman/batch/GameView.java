@@ -0,0 +1,183 @@
+package com.buaisociety.pacman.batch;
+
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.GhostState;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.TerminalReason;
+import com.buaisociety.pacman.maze.TileState;
+import com.buaisociety.pacman.util.FixedPoint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A read-only view of one game in a {@link BatchSimulation}, with the same
+ * getters as {@link Maze} and the entities in it.
+ *
+ * <p>Views do not copy anything. They read straight from the arrays of the
+ * batch, and {@link BatchSimulation#step(PacmanPolicy)} moves a single view
+ * from game to game, so policies should not keep the view they are given.
+ */
+public final class GameView {
+
+    private final @NotNull BatchSimulation batch;
+    private int game;
+
+    GameView(@NotNull BatchSimulation batch) {
+        this.batch = batch;
+    }
+
+    void setGame(int game) {
+        if (game < 0 || game >= batch.games)
+            throw new IndexOutOfBoundsException("Game " + game + " out of " + batch.games);
+        this.game = game;
+    }
+
+    /**
+     * Returns the index of the game this view shows.
+     *
+     * @return the index of the game
+     */
+    public int getGame() {
+        return game;
+    }
+
+    public int getWidth() {
+        return batch.width;
+    }
+
+    public int getHeight() {
+        return batch.height;
+    }
+
+    /**
+     * Returns the state of the tile, wrapping around the edges of the maze
+     * like {@link Maze#getTile(int, int)}.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the state of the tile
+     */
+    public @NotNull TileState getTileState(int x, int y) {
+        return BatchSimulation.TILE_STATES[batch.tiles[batch.tileIndex(game, x, y)]];
+    }
+
+    public int getLevel() {
+        return batch.level[game];
+    }
+
+    public int getScore() {
+        return batch.score[game];
+    }
+
+    public int getExtraLives() {
+        return batch.extraLives[game];
+    }
+
+    public int getPelletsRemaining() {
+        return batch.pelletsRemaining[game];
+    }
+
+    public int getFrightenedTimer() {
+        return batch.frightenedTimer[game];
+    }
+
+    public boolean isGhostChase() {
+        return batch.ghostChase[game];
+    }
+
+    /**
+     * Returns <code>null</code> while the game is running, see
+     * {@link Maze#getTerminalReason()}.
+     *
+     * @return <code>null</code>, or why the game ended
+     */
+    public @Nullable TerminalReason getTerminalReason() {
+        return switch (batch.status[game]) {
+            case BatchSimulation.WON -> TerminalReason.WIN;
+            case BatchSimulation.LOST -> TerminalReason.LOSE;
+            default -> null;
+        };
+    }
+
+    public double getPacmanX() {
+        return FixedPoint.toPixels(batch.pacmanX[game]);
+    }
+
+    public double getPacmanY() {
+        return FixedPoint.toPixels(batch.pacmanY[game]);
+    }
+
+    public int getPacmanTileX() {
+        return BatchSimulation.tileOf(batch.pacmanX[game]);
+    }
+
+    public int getPacmanTileY() {
+        return BatchSimulation.tileOf(batch.pacmanY[game]);
+    }
+
+    public @NotNull Direction getPacmanDirection() {
+        return BatchSimulation.DIRECTIONS[batch.pacmanDirection[game]];
+    }
+
+    /**
+     * Returns true if the tile next to pacman, in the given direction, can be
+     * walked on. Unlike {@link com.buaisociety.pacman.entity.Entity#canMove(Direction)},
+     * this ignores how far pacman is from the center of his tile.
+     *
+     * @param direction the direction to check
+     * @return true if the neighboring tile is passable
+     */
+    public boolean canMove(@NotNull Direction direction) {
+        return batch.isPassable(game, getPacmanTileX() + direction.getDx(), getPacmanTileY() + direction.getDy());
+    }
+
+    public int getGhostCount() {
+        return batch.ghostCount[game];
+    }
+
+    public double getGhostX(int ghost) {
+        return FixedPoint.toPixels(batch.ghostX[ghostIndex(ghost)]);
+    }
+
+    public double getGhostY(int ghost) {
+        return FixedPoint.toPixels(batch.ghostY[ghostIndex(ghost)]);
+    }
+
+    public int getGhostTileX(int ghost) {
+        return BatchSimulation.tileOf(batch.ghostX[ghostIndex(ghost)]);
+    }
+
+    public int getGhostTileY(int ghost) {
+        return BatchSimulation.tileOf(batch.ghostY[ghostIndex(ghost)]);
+    }
+
+    public @NotNull Direction getGhostDirection(int ghost) {
+        return BatchSimulation.DIRECTIONS[batch.ghostDirection[ghostIndex(ghost)]];
+    }
+
+    public @NotNull GhostState getGhostState(int ghost) {
+        return BatchSimulation.GHOST_STATES[batch.ghostState[ghostIndex(ghost)]];
+    }
+
+    public boolean isGhostReleased(int ghost) {
+        return batch.ghostReleased[ghostIndex(ghost)];
+    }
+
+    public boolean isFruitPresent() {
+        return batch.fruitPresent[game];
+    }
+
+    public int getFruitTileX() {
+        return batch.fruitTileX[game];
+    }
+
+    public int getFruitTileY() {
+        return batch.fruitTileY[game];
+    }
+
+    private int ghostIndex(int ghost) {
+        if (ghost < 0 || ghost >= batch.ghostCount[game])
+            throw new IndexOutOfBoundsException("Ghost " + ghost + " out of " + batch.ghostCount[game]);
+        return game * batch.maxGhosts + ghost;
+    }
+}
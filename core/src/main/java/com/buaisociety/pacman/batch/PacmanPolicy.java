@@ -0,0 +1,24 @@
+package com.buaisociety.pacman.batch;
+
+import com.buaisociety.pacman.entity.Direction;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Steers pacman in a {@link BatchSimulation}. This is the batch version of
+ * a {@link com.buaisociety.pacman.entity.behavior.Behavior}.
+ *
+ * <p>Policies are called from whichever thread steps the games, so a policy
+ * used with multiple threads must be thread-safe.
+ */
+@FunctionalInterface
+public interface PacmanPolicy {
+
+    /**
+     * Returns the direction pacman should move in this tick. Only called on
+     * ticks where pacman moves (not while the game is frozen).
+     *
+     * @param view the game pacman is in. Only valid during this call
+     * @return the desired direction
+     */
+    @NotNull Direction getDirection(@NotNull GameView view);
+}
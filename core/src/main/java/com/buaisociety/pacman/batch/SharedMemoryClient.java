@@ -0,0 +1,170 @@
+package com.buaisociety.pacman.batch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The Java side of the {@link SharedMemoryEnv} protocol, used for testing
+ * the transport and as a reference for clients in other languages.
+ *
+ * <p>{@link #step(int[])} sends 1 action to every game, then waits for
+ * every game's next observation. The server starts stepping each game as
+ * soon as its action is written, so games are stepped while later actions
+ * are still being sent.
+ */
+public class SharedMemoryClient implements AutoCloseable {
+
+    private final @NotNull MappedByteBuffer buffer;
+    private final int games;
+    private final int observationSize;
+    private final int slotBytes;
+    private final @NotNull int[] sequences;
+    private final @NotNull float[] observations;
+    private final @NotNull float[] rewards;
+    private final @NotNull boolean[] dones;
+
+    private SharedMemoryClient(@NotNull MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.games = buffer.getInt(SharedMemoryEnv.HEADER_GAMES);
+        this.observationSize = buffer.getInt(SharedMemoryEnv.HEADER_OBSERVATION_SIZE);
+        this.slotBytes = buffer.getInt(SharedMemoryEnv.HEADER_SLOT_BYTES);
+        this.sequences = new int[games];
+        this.observations = new float[games * observationSize];
+        this.rewards = new float[games];
+        this.dones = new boolean[games];
+    }
+
+    /**
+     * Maps a file created by a {@link SharedMemoryEnv}, and waits for the
+     * first observation of every game.
+     *
+     * @param path the file the server created
+     * @return the connected client
+     * @throws IllegalStateException if the file is not a compatible session, or it closed
+     */
+    public static @NotNull SharedMemoryClient connect(@NotNull Path path) {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + path, e);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+
+        if (buffer.getInt(SharedMemoryEnv.HEADER_MAGIC) != SharedMemoryEnv.MAGIC || buffer.getInt(SharedMemoryEnv.HEADER_VERSION) != SharedMemoryEnv.VERSION)
+            throw new IllegalStateException(path + " is not a version " + SharedMemoryEnv.VERSION + " pacman environment");
+
+        SharedMemoryClient client = new SharedMemoryClient(buffer);
+        if (buffer.capacity() < SharedMemoryEnv.HEADER_BYTES + (long) client.games * client.slotBytes)
+            throw new IllegalStateException(path + " is too small for " + client.games + " games");
+
+        for (int game = 0; game < client.games; game++)
+            client.receive(game, 1);
+        return client;
+    }
+
+    public int getNumEnvs() {
+        return games;
+    }
+
+    public int getObservationSize() {
+        return observationSize;
+    }
+
+    /**
+     * Returns the last observation of every game, 1 after the other, like
+     * {@link VectorEnv.Result#getObservations()}.
+     *
+     * @return the observations
+     */
+    public @NotNull float[] getObservations() {
+        return observations;
+    }
+
+    public @NotNull float[] getRewards() {
+        return rewards;
+    }
+
+    public @NotNull boolean[] getDones() {
+        return dones;
+    }
+
+    /**
+     * Sends 1 action to every game, and waits for their next observations.
+     *
+     * @param actions the action of each game, see {@link VectorEnv#ACTIONS}
+     * @throws IllegalStateException if the server closed the session
+     */
+    public void step(@NotNull int[] actions) {
+        if (actions.length != games)
+            throw new IllegalArgumentException("Expected " + games + " actions, got " + actions.length);
+
+        for (int game = 0; game < games; game++)
+            send(game, actions[game]);
+        for (int game = 0; game < games; game++)
+            receive(game, sequences[game] + 1);
+    }
+
+    /**
+     * Sends an action to 1 game without waiting for the result. Use with
+     * {@link #receive(int)} to step games at different rates.
+     *
+     * @param game the index of the game
+     * @param action the action, see {@link VectorEnv#ACTIONS}
+     */
+    public void send(int game, int action) {
+        int offset = slotOffset(game);
+        buffer.putInt(offset + SharedMemoryEnv.SLOT_ACTION, action);
+        SharedMemoryEnv.INT.setRelease(buffer, offset + SharedMemoryEnv.SLOT_ACTION_SEQUENCE, sequences[game]);
+    }
+
+    /**
+     * Waits for the observation that answers the last {@link #send(int, int)}
+     * to a game, and copies it into this client's arrays.
+     *
+     * @param game the index of the game
+     */
+    public void receive(int game) {
+        receive(game, sequences[game] + 1);
+    }
+
+    private void receive(int game, int sequence) {
+        int offset = slotOffset(game);
+        int idle = 0;
+        while ((int) SharedMemoryEnv.INT.getAcquire(buffer, offset + SharedMemoryEnv.SLOT_OBSERVATION_SEQUENCE) != sequence) {
+            if ((int) SharedMemoryEnv.INT.getAcquire(buffer, SharedMemoryEnv.HEADER_STATE) == SharedMemoryEnv.STATE_CLOSED)
+                throw new IllegalStateException("The environment closed");
+            if (++idle < SharedMemoryEnv.SPINS_BEFORE_PARK)
+                Thread.onSpinWait();
+            else
+                LockSupport.parkNanos(SharedMemoryEnv.PARK_NANOS);
+        }
+
+        int row = game * observationSize;
+        for (int i = 0; i < observationSize; i++)
+            observations[row + i] = buffer.getFloat(offset + SharedMemoryEnv.SLOT_OBSERVATION + i * Float.BYTES);
+        rewards[game] = buffer.getFloat(offset + SharedMemoryEnv.SLOT_REWARD);
+        dones[game] = buffer.getInt(offset + SharedMemoryEnv.SLOT_DONE) != 0;
+        sequences[game] = sequence;
+    }
+
+    private int slotOffset(int game) {
+        return SharedMemoryEnv.HEADER_BYTES + game * slotBytes;
+    }
+
+    /**
+     * Ends the session, which stops the server.
+     */
+    @Override
+    public void close() {
+        SharedMemoryEnv.INT.setRelease(buffer, SharedMemoryEnv.HEADER_STATE, SharedMemoryEnv.STATE_CLOSED);
+    }
+}
@@ -0,0 +1,301 @@
+package com.buaisociety.pacman.batch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Serves a {@link VectorEnv} to another process through a memory-mapped
+ * file, so a policy written in another language (or another JVM) can step
+ * the games without serializing anything.
+ *
+ * <p>The file is a header followed by 1 slot per game. Everything is in the
+ * native byte order, and every offset is in bytes:
+ * <pre>
+ * header (64 bytes):
+ *   0  int   magic, {@link #MAGIC}
+ *   4  int   version, {@link #VERSION}
+ *   8  int   number of games
+ *   12 int   floats per observation
+ *   16 int   bytes per slot
+ *   20 int   state, {@link #STATE_RUNNING} or {@link #STATE_CLOSED}
+ * slot i, at 64 + i * slot size:
+ *   0  int   action sequence, written by the client
+ *   4  int   action, see {@link VectorEnv#ACTIONS}
+ *   64 int   observation sequence, written by the server
+ *   68 float reward of the last step
+ *   72 int   1 if the game ended during the last step (and was restarted), else 0
+ *   80 float[] observation
+ * </pre>
+ *
+ * <p>The 2 sides never lock. The server publishes observation
+ * <code>n</code> of a game by writing it, then setting the observation
+ * sequence to <code>n</code> (a release store). The client waits until it
+ * reads <code>n</code> (an acquire load), reads the observation, writes the
+ * action, and then sets the action sequence to <code>n</code>. The server
+ * steps each game as soon as its action sequence catches up, and publishes
+ * <code>n + 1</code>. The first observation, right after the reset, is 1.
+ * The action half and the observation half of a slot are on different cache
+ * lines, so the 2 sides never write the same line.
+ *
+ * <p>Either side ends the session by setting the state to
+ * {@link #STATE_CLOSED}. See {@link SharedMemoryClient} for a Java client.
+ */
+public class SharedMemoryEnv implements AutoCloseable {
+
+    public static final int MAGIC = 0x50414331;  // "PAC1"
+    public static final int VERSION = 1;
+    public static final int STATE_STARTING = 0;
+    public static final int STATE_RUNNING = 1;
+    public static final int STATE_CLOSED = 2;
+
+    static final int HEADER_BYTES = 64;
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_GAMES = 8;
+    static final int HEADER_OBSERVATION_SIZE = 12;
+    static final int HEADER_SLOT_BYTES = 16;
+    static final int HEADER_STATE = 20;
+
+    static final int SLOT_ACTION_SEQUENCE = 0;
+    static final int SLOT_ACTION = 4;
+    static final int SLOT_OBSERVATION_SEQUENCE = 64;
+    static final int SLOT_REWARD = 68;
+    static final int SLOT_DONE = 72;
+    static final int SLOT_OBSERVATION = 80;
+
+    // Spin this many times without work before parking the polling thread
+    static final int SPINS_BEFORE_PARK = 10_000;
+    static final long PARK_NANOS = 20_000;
+
+    /**
+     * Reads and writes ints in the mapped file with memory ordering. Only
+     * the sequences and the state need it; the payload is ordered by them.
+     */
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final @NotNull VectorEnv env;
+    private final @NotNull Path path;
+    private final @NotNull MappedByteBuffer buffer;
+    private final int games;
+    private final int observationSize;
+    private final int slotBytes;
+    private final @NotNull List<Thread> threads = new ArrayList<>();
+
+    /**
+     * Creates the file and maps it. Call {@link #start(long[])} to start
+     * serving.
+     *
+     * @param env the games to serve, closed with this server
+     * @param path the file to create, see {@link #defaultPath(String)}
+     */
+    public SharedMemoryEnv(@NotNull VectorEnv env, @NotNull Path path) {
+        this.env = env;
+        this.path = path;
+        this.games = env.getNumEnvs();
+        this.observationSize = env.getObservationSize();
+        this.slotBytes = slotBytes(observationSize);
+
+        long size = HEADER_BYTES + (long) games * slotBytes;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(0);
+            file.setLength(size);
+            this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + path, e);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putInt(HEADER_VERSION, VERSION);
+        buffer.putInt(HEADER_GAMES, games);
+        buffer.putInt(HEADER_OBSERVATION_SIZE, observationSize);
+        buffer.putInt(HEADER_SLOT_BYTES, slotBytes);
+        INT.setRelease(buffer, HEADER_STATE, STATE_STARTING);
+    }
+
+    /**
+     * Returns a file in <code>/dev/shm</code>, which is memory on Linux, or
+     * in the temporary directory if there is none.
+     *
+     * @param name the name of the file
+     * @return the path of the file
+     */
+    public static @NotNull Path defaultPath(@NotNull String name) {
+        Path shm = Paths.get("/dev/shm");
+        Path directory = Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Paths.get(System.getProperty("java.io.tmpdir"));
+        return directory.resolve(name);
+    }
+
+    static int slotBytes(int observationSize) {
+        int bytes = SLOT_OBSERVATION + observationSize * Float.BYTES;
+        return (bytes + 63) & ~63;
+    }
+
+    public @NotNull Path getPath() {
+        return path;
+    }
+
+    /**
+     * Resets every game, publishes the first observations, and starts the
+     * threads that step the games as actions arrive. Each thread polls
+     * {@link VectorEnv.Config#threads its share} of the games.
+     *
+     * @param seeds the seed of each game, see {@link VectorEnv#reset(long[])}
+     */
+    public void start(@NotNull long[] seeds) {
+        if (!threads.isEmpty())
+            throw new IllegalStateException("Already started");
+
+        VectorEnv.Result result = env.reset(seeds);
+        for (int game = 0; game < games; game++)
+            publish(game, 1, result);
+        INT.setRelease(buffer, HEADER_STATE, STATE_RUNNING);
+
+        int threadCount = Math.max(1, Math.min(env.getConfig().threads, games));
+        int chunk = (games + threadCount - 1) / threadCount;
+        for (int from = 0; from < games; from += chunk) {
+            int start = from;
+            int end = Math.min(from + chunk, games);
+            Thread thread = new Thread(() -> serve(start, end), "shared-memory-env-" + threads.size());
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Returns true until either side closes the session.
+     *
+     * @return true if the session is open
+     */
+    public boolean isRunning() {
+        return (int) INT.getAcquire(buffer, HEADER_STATE) == STATE_RUNNING;
+    }
+
+    private void serve(int from, int to) {
+        int[] published = new int[to - from];
+        Arrays.fill(published, 1);
+
+        int idle = 0;
+        while (isRunning()) {
+            boolean stepped = false;
+            for (int game = from; game < to; game++) {
+                int offset = slotOffset(game);
+                int sequence = (int) INT.getAcquire(buffer, offset + SLOT_ACTION_SEQUENCE);
+                if (sequence != published[game - from])
+                    continue;
+
+                VectorEnv.Result result = env.step(game, buffer.getInt(offset + SLOT_ACTION));
+                publish(game, ++published[game - from], result);
+                stepped = true;
+            }
+
+            if (stepped) {
+                idle = 0;
+            } else if (++idle < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private void publish(int game, int sequence, @NotNull VectorEnv.Result result) {
+        int offset = slotOffset(game);
+        float[] observations = result.getObservations();
+        int row = game * observationSize;
+        for (int i = 0; i < observationSize; i++)
+            buffer.putFloat(offset + SLOT_OBSERVATION + i * Float.BYTES, observations[row + i]);
+        buffer.putFloat(offset + SLOT_REWARD, result.getRewards()[game]);
+        buffer.putInt(offset + SLOT_DONE, result.getDones()[game] ? 1 : 0);
+        INT.setRelease(buffer, offset + SLOT_OBSERVATION_SEQUENCE, sequence);
+    }
+
+    private int slotOffset(int game) {
+        return HEADER_BYTES + game * slotBytes;
+    }
+
+    /**
+     * Closes the session, waits for the serving threads, closes the
+     * {@link VectorEnv} and deletes the file.
+     */
+    @Override
+    public void close() {
+        INT.setRelease(buffer, HEADER_STATE, STATE_CLOSED);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        env.close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("Could not delete " + path + ": " + e);
+        }
+    }
+
+    /**
+     * Serves games and drives them with random actions from a
+     * {@link SharedMemoryClient} in the same JVM, and prints the throughput.
+     *
+     * @param args the number of games (default 256), server threads (default every core), and steps (default 2000)
+     */
+    public static void main(String[] args) {
+        VectorEnv.Config config = new VectorEnv.Config();
+        config.games = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        config.threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int stepCount = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        long[] seeds = new long[config.games];
+        for (int i = 0; i < seeds.length; i++)
+            seeds[i] = i;
+
+        Path path = defaultPath("pacman-env-" + ProcessHandle.current().pid());
+        try (SharedMemoryEnv server = new SharedMemoryEnv(new VectorEnv(config), path)) {
+            server.start(seeds);
+
+            try (SharedMemoryClient client = SharedMemoryClient.connect(path)) {
+                SplittableRandom random = new SplittableRandom(0);
+                int[] actions = new int[client.getNumEnvs()];
+                long episodes = 0;
+                double reward = 0;
+                long start = System.nanoTime();
+                for (int step = 0; step < stepCount; step++) {
+                    for (int i = 0; i < actions.length; i++)
+                        actions[i] = random.nextInt(100) < 90 ? 0 : random.nextInt(VectorEnv.ACTIONS);
+
+                    client.step(actions);
+                    for (int i = 0; i < actions.length; i++) {
+                        reward += client.getRewards()[i];
+                        if (client.getDones()[i])
+                            episodes++;
+                    }
+                }
+
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%d games x %d steps through %s in %.2fs: %.0f steps/s, %d episodes, %.0f reward%n",
+                    config.games, stepCount, path, seconds, (double) config.games * stepCount / seconds, episodes, reward);
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.buaisociety.pacman.batch;
+
+import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.event.NextLevelEvent;
+import com.buaisociety.pacman.feature.FeatureContext;
+import com.buaisociety.pacman.feature.FeatureVector;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.util.EventSystem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many games of Pacman side by side behind a Gym-style vectorized
+ * environment API, for training algorithms other than NEAT.
+ *
+ * <p>{@link #reset(long[])} starts every game, and {@link #step(int[])}
+ * applies 1 action per game and advances every game in parallel. Both
+ * return the same {@link Result}, whose arrays are allocated once: the
+ * observations of every game in 1 <code>float[]</code> (game
+ * <code>i</code> is at <code>i * getObservationSize()</code>), the reward of
+ * the step (the change in score), and whether the game ended. Games that
+ * end are started again right away with the next seed, so the observation
+ * of a finished game is already the first observation of its next game.
+ *
+ * <p>Unlike {@link BatchSimulation}, every game is a full
+ * {@link GameManager}, so this is the exact same game that NEAT trains on,
+ * just without rendering. Actions are relative to the way pacman is facing,
+ * like the outputs of {@link NeatPacmanBehavior}: {@link FeatureContext#FORWARD},
+ * {@link FeatureContext#LEFT}, {@link FeatureContext#RIGHT} and
+ * {@link FeatureContext#BEHIND}.
+ */
+public class VectorEnv implements AutoCloseable {
+
+    /**
+     * The number of actions: forward, left, right, and behind.
+     */
+    public static final int ACTIONS = 4;
+
+    private final @NotNull Config config;
+    private final int games;
+    private final int observationSize;
+    private final @NotNull Game[] slots;
+    private final @NotNull Result result;
+    private final @NotNull ExecutorService threadPool;
+    private final int chunk;
+    private final @NotNull List<Future<?>> futures = new ArrayList<>();
+    private long steps;
+
+    public VectorEnv(@NotNull Config config) {
+        if (config.games <= 0)
+            throw new IllegalArgumentException("games must be positive, got " + config.games);
+
+        this.config = config;
+        this.games = config.games;
+        this.observationSize = config.observation.size();
+        this.slots = new Game[games];
+        for (int i = 0; i < games; i++)
+            slots[i] = new Game(i);
+        this.result = new Result(games, observationSize);
+
+        int threads = Math.max(1, Math.min(config.threads, games));
+        this.threadPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "vector-env");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chunk = (games + threads - 1) / threads;
+    }
+
+    public @NotNull Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return the number of games
+     */
+    public int getNumEnvs() {
+        return games;
+    }
+
+    /**
+     * Returns the number of floats in each game's observation.
+     *
+     * @return the size of an observation
+     */
+    public int getObservationSize() {
+        return observationSize;
+    }
+
+    /**
+     * Returns the total number of steps taken by every game, since this
+     * environment was created.
+     *
+     * @return the number of game-steps
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the game running in the given slot. The game is replaced every
+     * time it ends, so do not keep the reference.
+     *
+     * @param game the index of the game
+     * @return the game manager
+     */
+    public @NotNull GameManager getGameManager(int game) {
+        GameManager manager = slots[game].manager;
+        if (manager == null)
+            throw new IllegalStateException("Call reset() first");
+        return manager;
+    }
+
+    /**
+     * Starts a new game in every slot.
+     *
+     * @param seeds the seed of each game, see {@link GameManager.Config#seed}.
+     *              When a game ends, the next one uses the seed plus the
+     *              number of games.
+     * @return the observations, with no rewards and no games done
+     */
+    public @NotNull Result reset(@NotNull long[] seeds) {
+        if (seeds.length != games)
+            throw new IllegalArgumentException("Expected " + games + " seeds, got " + seeds.length);
+
+        run((from, to) -> {
+            for (int i = from; i < to; i++) {
+                slots[i].start(seeds[i]);
+                slots[i].observe();
+                result.rewards[i] = 0f;
+                result.dones[i] = false;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Applies 1 action to every game, and advances every game by
+     * {@link Config#ticksPerStep} ticks.
+     *
+     * @param actions the action of each game, see {@link #ACTIONS}
+     * @return the observations, rewards, and whether each game ended
+     */
+    public @NotNull Result step(@NotNull int[] actions) {
+        if (actions.length != games)
+            throw new IllegalArgumentException("Expected " + games + " actions, got " + actions.length);
+
+        run((from, to) -> {
+            for (int i = from; i < to; i++)
+                slots[i].step(actions[i]);
+        });
+        steps += games;
+        return result;
+    }
+
+    /**
+     * Applies 1 action to 1 game on the calling thread, and writes that
+     * game's row of the {@link Result}. Different games may be stepped by
+     * different threads at the same time, but each game by 1 thread at a
+     * time. {@link #getSteps()} does not count these steps.
+     *
+     * @param game the index of the game
+     * @param action the action, see {@link #ACTIONS}
+     * @return the result, where only the row of <code>game</code> changed
+     */
+    public @NotNull Result step(int game, int action) {
+        slots[game].step(action);
+        return result;
+    }
+
+    private void run(@NotNull Chunk task) {
+        futures.clear();
+        for (int from = 0; from < games; from += chunk) {
+            int start = from;
+            int end = Math.min(from + chunk, games);
+            futures.add(threadPool.submit(() -> task.run(start, end)));
+        }
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A game failed to step", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        threadPool.shutdown();
+        for (Game slot : slots) {
+            if (slot.manager != null)
+                slot.manager.dispose();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Chunk {
+        void run(int from, int to);
+    }
+
+    /**
+     * 1 slot of the environment. The game in the slot is replaced every time
+     * it ends, but the behavior and feature context are reused.
+     */
+    private final class Game implements Behavior {
+        private final int index;
+        private final @NotNull FeatureContext context = new FeatureContext();
+        private @Nullable GameManager manager;
+        private long seed;
+        private int action;
+        private int ticks;
+        private int score;
+
+        private Game(int index) {
+            this.index = index;
+        }
+
+        private void start(long seed) {
+            if (manager != null)
+                manager.dispose();
+
+            EventSystem events = new EventSystem();
+            events.registerListener(EntityPreSpawnEvent.class, event -> {
+                if (event.getEntityType() == EntityType.PACMAN)
+                    ((PacmanEntity.Config) event.getConfig()).behavior = this;
+            });
+            if (config.maze != null) {
+                String maze = config.maze;
+                events.registerListener(NextLevelEvent.class, event -> event.setNextLevel(maze));
+            }
+
+            GameManager.Config gameConfig = new GameManager.Config();
+            gameConfig.seed = seed;
+            GameManager started = new GameManager(events, gameConfig);
+            started.nextLevel();
+            started.setExtraLives(config.extraLives);
+
+            this.manager = started;
+            this.seed = seed;
+            this.action = FeatureContext.FORWARD;
+            this.ticks = 0;
+            this.score = 0;
+        }
+
+        private void step(int action) {
+            GameManager manager = this.manager;
+            if (manager == null)
+                throw new IllegalStateException("Call reset() first");
+
+            this.action = action;
+            boolean done = false;
+            for (int tick = 0; tick < config.ticksPerStep && !done; tick++) {
+                manager.update();
+                manager.postUpdate();
+                ticks++;
+                done = manager.getExtraLives() < 0 || ticks >= config.maxTicks;
+            }
+
+            int newScore = manager.getScore();
+            result.rewards[index] = newScore - score;
+            result.dones[index] = done;
+            score = newScore;
+
+            if (done)
+                start(seed + games);
+            observe();
+        }
+
+        private void observe() {
+            Maze maze = manager == null ? null : manager.getCurrentMaze();
+            if (maze == null)
+                throw new IllegalStateException("Game has no maze");
+            context.update(maze.getPacman());
+            config.observation.compute(context, result.observations, index * observationSize, null);
+        }
+
+        @Override
+        public @NotNull Direction getDirection(@NotNull Entity entity) {
+            Direction forward = entity.getDirection();
+            return switch (action) {
+                case FeatureContext.LEFT -> forward.left();
+                case FeatureContext.RIGHT -> forward.right();
+                case FeatureContext.BEHIND -> forward.behind();
+                default -> forward;
+            };
+        }
+    }
+
+    /**
+     * The output of {@link #reset(long[])} and {@link #step(int[])}. The same
+     * arrays are overwritten by every call.
+     */
+    public static final class Result {
+        private final @NotNull float[] observations;
+        private final @NotNull FloatBuffer observationBuffer;
+        private final @NotNull float[] rewards;
+        private final @NotNull boolean[] dones;
+
+        private Result(int games, int observationSize) {
+            this.observations = new float[games * observationSize];
+            this.observationBuffer = FloatBuffer.wrap(observations);
+            this.rewards = new float[games];
+            this.dones = new boolean[games];
+        }
+
+        /**
+         * Returns the observation of every game, 1 after the other.
+         *
+         * @return the observations
+         */
+        public @NotNull float[] getObservations() {
+            return observations;
+        }
+
+        /**
+         * Returns {@link #getObservations()} as a buffer, e.g. to hand to a
+         * tensor library without copying.
+         *
+         * @return the observations
+         */
+        public @NotNull FloatBuffer getObservationBuffer() {
+            return observationBuffer.duplicate();
+        }
+
+        /**
+         * Returns the change in score of each game during the last step.
+         *
+         * @return the rewards
+         */
+        public @NotNull float[] getRewards() {
+            return rewards;
+        }
+
+        /**
+         * Returns true for each game that ended (lost its last life, or ran
+         * out of ticks) during the last step, and was started again.
+         *
+         * @return whether each game ended
+         */
+        public @NotNull boolean[] getDones() {
+            return dones;
+        }
+    }
+
+    /**
+     * Runs random actions as fast as possible and prints the throughput.
+     *
+     * @param args the number of games (default 256), threads (default every core), and steps (default 2000)
+     */
+    public static void main(String[] args) {
+        Config config = new Config();
+        config.games = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        config.threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int stepCount = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        try (VectorEnv env = new VectorEnv(config)) {
+            long[] seeds = new long[config.games];
+            for (int i = 0; i < seeds.length; i++)
+                seeds[i] = i;
+            env.reset(seeds);
+
+            SplittableRandom random = new SplittableRandom(0);
+            int[] actions = new int[config.games];
+            long episodes = 0;
+            double reward = 0;
+            long start = System.nanoTime();
+            for (int step = 0; step < stepCount; step++) {
+                for (int i = 0; i < actions.length; i++)
+                    actions[i] = random.nextInt(100) < 90 ? FeatureContext.FORWARD : random.nextInt(ACTIONS);
+
+                Result result = env.step(actions);
+                for (int i = 0; i < actions.length; i++) {
+                    reward += result.getRewards()[i];
+                    if (result.getDones()[i])
+                        episodes++;
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games x %d steps in %.2fs on %d threads: %.0f steps/s, %d episodes, %.0f reward%n",
+                config.games, stepCount, seconds, config.threads, env.getSteps() / seconds, episodes, reward);
+        }
+    }
+
+    /**
+     * The configuration of a {@link VectorEnv}.
+     */
+    public static class Config {
+        public int games = 64;
+        public int threads = Runtime.getRuntime().availableProcessors();
+        public @NotNull FeatureVector observation = NeatPacmanBehavior.INPUTS;  // what each game observes every step
+        public int ticksPerStep = 1;  // ticks between actions, like frame skipping
+        public int extraLives = 0;  // a game ends once pacman loses a life with no extra lives left
+        public int maxTicks = 60 * 60 * 10;  // games that last longer than this are ended (10 minutes)
+        public @Nullable String maze = null;  // play every level on this maze, or null to follow the levels preset
+    }
+}
@@ -3,6 +3,7 @@ package com.buaisociety.pacman.entity;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
+import org.joml.Vector2ic;
 
 /**
  * Represents the 4 cardinal directions, UP, DOWN, LEFT, RIGHT. Each direction
@@ -22,10 +23,12 @@ public enum Direction {
 
     private final int dx;
     private final int dy;
+    private final @NotNull Vector2ic vector;
 
     Direction(int dx, int dy) {
         this.dx = dx;
         this.dy = dy;
+        this.vector = new Vector2i(dx, dy);
     }
 
     public int getDx() {
@@ -39,11 +42,11 @@ public enum Direction {
     /**
      * Returns the vector representation of this direction.
      *
-     * @return the vector representation of this direction
+     * @return the vector representation of this direction, read-only
      */
     @Contract(pure = true)
-    public @NotNull Vector2i asVector() {
-        return new Vector2i(dx, dy);
+    public @NotNull Vector2ic asVector() {
+        return vector;
     }
 
     /**
@@ -4,12 +4,14 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
 import com.buaisociety.pacman.maze.Tile;
+import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.util.Disposable;
-import com.buaisociety.pacman.util.NumberUtil;
+import com.buaisociety.pacman.util.FixedPoint;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2d;
 import org.joml.Vector2dc;
 import org.joml.Vector2i;
+import org.joml.Vector2ic;
 
 /**
  * Represents an entity in the game.
@@ -18,12 +20,22 @@ public abstract class Entity implements Disposable {
 
     public static final double BASE_SPEED = 1.26262627083;
 
+    // SPEEDS[percent] is BASE_SPEED * percent / 100 in fixed point
+    private static final int[] SPEEDS = new int[201];
+
+    static {
+        for (int percent = 0; percent < SPEEDS.length; percent++)
+            SPEEDS[percent] = FixedPoint.fromPixels(BASE_SPEED * percent / 100.0);
+    }
+
     protected final @NotNull Maze maze;
     protected final @NotNull EntityType type;
     protected int ticksAlive;
     protected Vector2i spawnTile;
-    protected Vector2dc lastPosition;
-    protected Vector2dc position;
+    protected int lastX;  // positions are in 16.16 fixed point, see FixedPoint
+    protected int lastY;
+    protected int x;
+    protected int y;
     protected Direction direction;
 
     protected Entity(@NotNull Maze maze, @NotNull EntityType type) {
@@ -31,8 +43,6 @@ public abstract class Entity implements Disposable {
         this.type = type;
         this.ticksAlive = 0;
         this.spawnTile = new Vector2i();
-        this.lastPosition = new Vector2d();
-        this.position = new Vector2d();
         this.direction = Direction.UP;
     }
 
@@ -48,17 +58,103 @@ public abstract class Entity implements Disposable {
         return ticksAlive;
     }
 
+    /**
+     * Returns a copy of the position of the entity, in pixels. This allocates
+     * a new vector every call, so per-tick code should use
+     * {@link #getFixedX()}, {@link #getTileX()} and friends instead.
+     *
+     * @return a copy of the position
+     */
     public @NotNull Vector2d getPosition() {
-        return new Vector2d(position);
+        return new Vector2d(FixedPoint.toPixels(x), FixedPoint.toPixels(y));
     }
 
     public void setPosition(@NotNull Vector2dc position) {
-        ((Vector2d) this.lastPosition).set(this.position);
-        ((Vector2d) this.position).set(position);
+        setFixedPosition(FixedPoint.fromPixels(position.x()), FixedPoint.fromPixels(position.y()));
     }
 
+    /**
+     * Returns the x-coordinate of the entity in 16.16 fixed point, see
+     * {@link FixedPoint}.
+     *
+     * @return the fixed-point x-coordinate
+     */
+    public int getFixedX() {
+        return x;
+    }
+
+    /**
+     * Returns the y-coordinate of the entity in 16.16 fixed point, see
+     * {@link FixedPoint}.
+     *
+     * @return the fixed-point y-coordinate
+     */
+    public int getFixedY() {
+        return y;
+    }
+
+    /**
+     * Sets the position of the entity in 16.16 fixed point, and remembers
+     * the old position as the last position.
+     *
+     * @param x the fixed-point x-coordinate
+     * @param y the fixed-point y-coordinate
+     */
+    public void setFixedPosition(int x, int y) {
+        this.lastX = this.x;
+        this.lastY = this.y;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Returns a copy of the tile coordinates of the entity. This allocates a
+     * new vector every call, so per-tick code should use {@link #getTileX()}
+     * and {@link #getTileY()} instead.
+     *
+     * @return a copy of the tile coordinates
+     */
     public @NotNull Vector2i getTilePosition() {
-        return maze.toTileCoords(position);
+        return new Vector2i(getTileX(), getTileY());
+    }
+
+    public int getTileX() {
+        return FixedPoint.toTile(x);
+    }
+
+    public int getTileY() {
+        return FixedPoint.toTile(y);
+    }
+
+    /**
+     * Returns the index of the tile the entity is on, <code>y * width + x</code>.
+     * Useful as a key for arrays with 1 entry per tile.
+     *
+     * @return the index of the current tile
+     */
+    public int getTileIndex() {
+        return getTileY() * maze.getDimensions().x() + getTileX();
+    }
+
+    /**
+     * Returns a view of the tile the entity is on. Views are cheap (a maze and
+     * an index), but this still allocates 1 per call, so per-tick code should
+     * prefer {@link #getTileIndex()}.
+     *
+     * @return the current tile
+     */
+    public @NotNull Tile getTile() {
+        return maze.getTile(getTileX(), getTileY());
+    }
+
+    /**
+     * Returns true if this entity is on the same tile as the other entity.
+     *
+     * @param other the other entity
+     * @return true if both entities are on the same tile
+     */
+    public boolean isOnSameTile(@NotNull Entity other) {
+        return getTileX() == other.getTileX() && getTileY() == other.getTileY();
     }
 
     public @NotNull Vector2i getSpawnTile() {
@@ -94,7 +190,29 @@ public abstract class Entity implements Disposable {
      *
      * @return the speed of the entity.
      */
-    public abstract double getSpeed();
+    public double getSpeed() {
+        return FixedPoint.toPixels(getFixedSpeed());
+    }
+
+    /**
+     * Returns the speed of the entity in 16.16 fixed-point pixels per frame.
+     * This is the speed the entity actually moves with.
+     *
+     * @return the fixed-point speed of the entity.
+     * @see #speed(int)
+     */
+    public abstract int getFixedSpeed();
+
+    /**
+     * Returns a percentage of {@link #BASE_SPEED} in fixed point. The speeds
+     * are precomputed, so this does no floating point math.
+     *
+     * @param percent the percentage, from 0 to 200
+     * @return the fixed-point speed
+     */
+    public static int speed(int percent) {
+        return SPEEDS[percent];
+    }
 
     /**
      * Returns the current behavior (the behavior to handle the next movement)
@@ -114,49 +232,63 @@ public abstract class Entity implements Disposable {
      * @return true if the entity can move in the given direction.
      */
     public boolean canMove(@NotNull Direction direction) {
-        Tile current = maze.getTile(getTilePosition());
-        Tile next = current.getNeighbor(direction);
+        int tileX = FixedPoint.toTile(x);
+        int tileY = FixedPoint.toTile(y);
+        TileState next = maze.getTileState(tileX + direction.getDx(), tileY + direction.getDy());
 
         // When the next tile is not passable, the only case we can move forward
         // in that direction is when we still have some space to move in the
         // current tile (in pixel coordinates).
-        if (!next.getState().isPassable()) {
-            Vector2i currentPixel = new Vector2i((int) position.x(), (int) position.y());
-            Vector2i toCenter = current.getCenterPixel().sub(currentPixel);
-            int dot = toCenter.x * direction.getDx() + toCenter.y * direction.getDy();
+        if (!next.isPassable()) {
+            int toCenterX = FixedPoint.toPixel(FixedPoint.tileCenter(tileX)) - FixedPoint.toPixel(x);
+            int toCenterY = FixedPoint.toPixel(FixedPoint.tileCenter(tileY)) - FixedPoint.toPixel(y);
+            int dot = toCenterX * direction.getDx() + toCenterY * direction.getDy();
 
-            return Math.abs(dot) > 0;
+            return dot != 0;
         }
 
         return true;
     }
 
     public void move(@NotNull Direction direction, double speed, boolean fixCenter) {
-        Vector2d position = getPosition();
+        moveFixed(direction, FixedPoint.fromPixels(speed), fixCenter);
+    }
 
-        Tile currentTile = maze.getTile(getTilePosition());
-        Tile nextTile = currentTile.getNeighbor(direction);
+    /**
+     * Moves the entity in the given direction.
+     *
+     * @param direction the direction to move in.
+     * @param speed the number of pixels to move, in 16.16 fixed point.
+     * @param fixCenter true to also move towards the center line of the
+     *                  current tile, so the entity does not drift off it.
+     */
+    public void moveFixed(@NotNull Direction direction, int speed, boolean fixCenter) {
+        int tileX = FixedPoint.toTile(x);
+        int tileY = FixedPoint.toTile(y);
+        TileState nextTile = maze.getTileState(tileX + direction.getDx(), tileY + direction.getDy());
+        int x = this.x;
+        int y = this.y;
 
         // To prevent overshooting, we should move towards the center of the current tile
-        if (!nextTile.getState().isPassable() && this instanceof PacmanEntity) {
-            Vector2i center = currentTile.getCenterPixel();
-            position.x = NumberUtil.moveTowards(position.x(), center.x(), speed);
-            position.y = NumberUtil.moveTowards(position.y(), center.y(), speed);
+        if (!nextTile.isPassable() && this instanceof PacmanEntity) {
+            x = FixedPoint.moveTowards(x, FixedPoint.tileCenter(tileX), speed);
+            y = FixedPoint.moveTowards(y, FixedPoint.tileCenter(tileY), speed);
         } else {
-            position.add(speed * direction.getDx(), speed * direction.getDy());
+            x += speed * direction.getDx();
+            y += speed * direction.getDy();
         }
 
         if (fixCenter) {
-            Vector2i center = currentTile.getCenterPixel();
             if (direction.isHorizontal()) {
-                position.y = NumberUtil.moveTowards(position.y(), center.y(), speed);
+                y = FixedPoint.moveTowards(y, FixedPoint.tileCenter(tileY), speed);
             } else {
-                position.x = NumberUtil.moveTowards(position.x(), center.x(), speed);
+                x = FixedPoint.moveTowards(x, FixedPoint.tileCenter(tileX), speed);
             }
         }
 
         // When going through a tunnel, we need to wrap around the maze.
-        setPosition(maze.getWrappedPosition(position));
+        Vector2ic size = maze.getPixelDimensions();
+        setFixedPosition(Math.floorMod(x, FixedPoint.fromPixels(size.x())), Math.floorMod(y, FixedPoint.fromPixels(size.y())));
     }
 
     /**
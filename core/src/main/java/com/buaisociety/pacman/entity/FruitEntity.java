@@ -1,13 +1,13 @@
 package com.buaisociety.pacman.entity;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
 import com.buaisociety.pacman.sprite.CutoutSpriteSheet;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.Particle;
+import com.buaisociety.pacman.util.FixedPoint;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2d;
 import org.joml.Vector2i;
@@ -16,8 +16,8 @@ import java.util.concurrent.ThreadLocalRandom;
 
 public class FruitEntity extends Entity {
 
-    public static @NotNull CutoutSpriteSheet fruitSpriteShare = new CutoutSpriteSheet(new Texture("sprites/fruit-sprite.png"), 16);
-    public static @NotNull GrayscaleSpriteSheet bonusSpriteShare = new GrayscaleSpriteSheet(new Texture("sprites/bonus-points-sprite.png"), new Vector2i(8 * 4, 8 * 2));
+    public static @NotNull CutoutSpriteSheet fruitSpriteShare = new CutoutSpriteSheet("sprites/fruit-sprite.png", 16);
+    public static @NotNull GrayscaleSpriteSheet bonusSpriteShare = new GrayscaleSpriteSheet("sprites/bonus-points-sprite.png", new Vector2i(8 * 4, 8 * 2));
 
     private final @NotNull CutoutSpriteSheet fruitSprite;
     private final @NotNull GrayscaleSpriteSheet bonusSprite;
@@ -45,6 +45,15 @@ public class FruitEntity extends Entity {
         this.ticksLeft = config.ticksLeft;
     }
 
+    /**
+     * Returns the number of ticks until the fruit disappears.
+     *
+     * @return the number of ticks left.
+     */
+    public int getTicksLeft() {
+        return ticksLeft;
+    }
+
     /**
      * Returns true if the entity should be removed from the game (permanent death).
      *
@@ -56,12 +65,12 @@ public class FruitEntity extends Entity {
     }
 
     /**
-     * Returns the speed of the entity in pixels per frame.
+     * Returns the speed of the entity in fixed-point pixels per frame.
      *
      * @return the speed of the entity.
      */
     @Override
-    public double getSpeed() {
+    public int getFixedSpeed() {
         return 0;
     }
 
@@ -90,8 +99,7 @@ public class FruitEntity extends Entity {
             isRemove = true;
         }
 
-        Vector2i pacmanTile = maze.getPacman().getTilePosition();
-        if (pacmanTile.equals(getTilePosition())) {
+        if (maze.getPacman().isOnSameTile(this)) {
             isRemove = true;
 
             int score = switch (maze.getLevelManager().getLevel()) {
@@ -135,8 +143,8 @@ public class FruitEntity extends Entity {
      */
     @Override
     public void render(@NotNull SpriteBatch batch) {
-        int pixelX = (int) position.x() - fruitSprite.getTileSize().x() / 2 + 1;
-        int pixelY = (int) position.y() - fruitSprite.getTileSize().y() / 2 + 1;
+        int pixelX = FixedPoint.toPixel(x) - fruitSprite.getTileSize().x() / 2 + 1;
+        int pixelY = FixedPoint.toPixel(y) - fruitSprite.getTileSize().y() / 2 + 1;
         fruitSprite.setCurrentTile(fruitTileX, 0);
         fruitSprite.render(batch, pixelX, pixelY);
     }
@@ -1,17 +1,15 @@
 package com.buaisociety.pacman.entity;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.AggressiveChaseBehavior;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.entity.behavior.RandomDirectionBehavior;
 import com.buaisociety.pacman.entity.behavior.StaticTargetBehavior;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
 import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
-import com.buaisociety.pacman.util.NumberUtil;
+import com.buaisociety.pacman.util.FixedPoint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2d;
@@ -85,6 +83,22 @@ public class GhostEntity extends Entity {
         return scatterTile;
     }
 
+    public @NotNull Vector2i getSpawnPixel() {
+        return spawnPixel;
+    }
+
+    public @NotNull Direction getSpawnDirection() {
+        return spawnDirection;
+    }
+
+    public boolean isSpawnReleased() {
+        return spawnReleased;
+    }
+
+    public boolean isElroy() {
+        return isElroy;
+    }
+
     public int getLocalDotCounter() {
         return localDotCounter;
     }
@@ -137,7 +151,7 @@ public class GhostEntity extends Entity {
     }
 
     @Override
-    public double getSpeed() {
+    public int getFixedSpeed() {
         int level = maze.getLevelManager().getLevel();
 
         // Allow a handicap to delay the speed changes per-level
@@ -146,48 +160,48 @@ public class GhostEntity extends Entity {
 
         // The speed of the ghost changes based on the state
         if (state == GhostState.EATEN) {
-            return BASE_SPEED * 2.0;
+            return speed(200);
         } else if (state == GhostState.FRIGHTENED) {
-            return BASE_SPEED * switch (level) {
-                case 1 -> 0.50;
-                case 2, 3, 4 -> 0.55;
-                default -> 0.60;
-            };
+            return speed(switch (level) {
+                case 1 -> 50;
+                case 2, 3, 4 -> 55;
+                default -> 60;
+            });
         }
 
         // When entering a tunnel, the ghosts suffer a severe speed penalty
-        if (maze.getTile(getTilePosition()).getState() == TileState.TUNNEL) {
-            return BASE_SPEED * switch (level) {
-                case 1 -> 0.40;
-                case 2, 3, 4 -> 0.45;
-                default -> 0.50;
-            };
+        if (maze.getTileState(FixedPoint.toTile(x), FixedPoint.toTile(y)) == TileState.TUNNEL) {
+            return speed(switch (level) {
+                case 1 -> 40;
+                case 2, 3, 4 -> 45;
+                default -> 50;
+            });
         }
 
         // Blinky may become "Elroy" and move faster when there are few pellets left
         if (isElroy) {
             int elroyPellets = ELROY_PELLETS[Math.min(level, ELROY_PELLETS.length - 1)];
             if (maze.getPelletsRemaining() < elroyPellets / 2) {
-                return BASE_SPEED * switch (level) {
-                    case 1 -> 0.85;
-                    case 2, 3, 4 -> 0.95;
-                    default -> 1.05;
-                };
+                return speed(switch (level) {
+                    case 1 -> 85;
+                    case 2, 3, 4 -> 95;
+                    default -> 105;
+                });
             } else if (maze.getPelletsRemaining() < elroyPellets) {
-                return BASE_SPEED * switch (level) {
-                    case 1 -> 0.80;
-                    case 2, 3, 4 -> 0.90;
-                    default -> 1.00;
-                };
+                return speed(switch (level) {
+                    case 1 -> 80;
+                    case 2, 3, 4 -> 90;
+                    default -> 100;
+                });
             }
         }
 
         // Just normal speeds
-        return BASE_SPEED * switch (level) {
-            case 1 -> 0.75;
-            case 2, 3, 4 -> 0.85;
-            default -> 0.95;
-        };
+        return speed(switch (level) {
+            case 1 -> 75;
+            case 2, 3, 4 -> 85;
+            default -> 95;
+        });
     }
 
     @Override
@@ -207,8 +221,10 @@ public class GhostEntity extends Entity {
     @Override
     public void update() {
         super.update();
-        Tile current = maze.getTile(getTilePosition());
-        double speed = getSpeed();
+        int tileX = FixedPoint.toTile(x);
+        int tileY = FixedPoint.toTile(y);
+        TileState current = maze.getTileState(tileX, tileY);
+        int speed = getFixedSpeed();
 
         if (ticksAlive % 5 == 0)
             animationFrame++;
@@ -220,57 +236,53 @@ public class GhostEntity extends Entity {
         if (!released) {
             // If moving forward would cause the ghost to leave it's current tile, then
             // we need to change direction.
-            speed = 0.5;
-            Tile next = maze.getTile(maze.toTileCoords(getPosition().add(direction.getDx() * speed, direction.getDy() * speed)));
-            if (!current.equals(next)) {
+            speed = FixedPoint.ONE / 2;
+            int nextX = FixedPoint.toTile(x + direction.getDx() * speed);
+            int nextY = FixedPoint.toTile(y + direction.getDy() * speed);
+            if (nextX != tileX || nextY != tileY) {
                 direction = direction.behind();
             }
 
             // fixCenter cannot be used in the ghost pen, since the ghosts are off tiles
-            move(direction, speed, false);
+            moveFixed(direction, speed, false);
             return;
         }
 
         // While still in the ghost pen, the ghost should move towards the center,
         // then move straight up. TODO: find a way to handle arbitrary ghost pens
-        if (current.getState() == TileState.GHOST_PEN && state != GhostState.EATEN) {
-            int centerX = maze.getPixelDimensions().x() / 2;
+        if (current == TileState.GHOST_PEN && state != GhostState.EATEN) {
+            int centerX = FixedPoint.fromPixels(maze.getPixelDimensions().x() / 2);
 
             // When centered on the x-axis, move up to get out
-            double dx = position.x() - centerX;
-            if (Math.abs(dx) < 0.01) {
+            if (x == centerX) {
                 direction = Direction.UP;
-                move(direction, 0.5, false); //  TODO: use moveTowards so we don't overshoot
+                moveFixed(direction, FixedPoint.ONE / 2, false); //  TODO: use moveTowards so we don't overshoot
                 return;
             }
 
-            direction = dx > 0 ? Direction.LEFT : Direction.RIGHT;
-            double x = NumberUtil.moveTowards(position.x(), centerX, 0.5);
-            double y = position.y();
-            setPosition(new Vector2d(x, y));
+            direction = x > centerX ? Direction.LEFT : Direction.RIGHT;
+            setFixedPosition(FixedPoint.moveTowards(x, centerX, FixedPoint.ONE / 2), y);
             return;
         }
 
         if (state == GhostState.EATEN) {
             // Look down for an opening to enter the ghost pen
-            Tile down = current.getNeighbor(Direction.DOWN);
-            if (down.getState() == TileState.GHOST_PEN) {
+            TileState down = maze.getTileState(tileX, tileY - 1);
+            if (down == TileState.GHOST_PEN) {
                 // move towards the center of the board, on the x-axis
-                Vector2d position = getPosition();
-                int centerX = maze.getPixelDimensions().x() / 2;
-                position.x = NumberUtil.moveTowards(position.x(), centerX, speed);
-                setPosition(position);
+                int centerX = FixedPoint.fromPixels(maze.getPixelDimensions().x() / 2);
+                setFixedPosition(FixedPoint.moveTowards(x, centerX, speed), y);
 
                 // If we are centered, move down
-                if (position.x() == centerX) {
+                if (x == centerX) {
                     direction = Direction.DOWN;
-                    move(direction, speed, false);
+                    moveFixed(direction, speed, false);
                 }
                 return;
             }
 
             // If we hit a wall, revive
-            if (current.getState() == TileState.GHOST_PEN && down.getState() == TileState.WALL) {
+            if (current == TileState.GHOST_PEN && down == TileState.WALL) {
                 setState(maze.isGhostChase() ? GhostState.CHASE : GhostState.SCATTER);
                 return;
             }
@@ -285,15 +297,15 @@ public class GhostEntity extends Entity {
 
         // Basic collision detection
         PacmanEntity pacman = maze.getPacman();
-        if (pacman.getTilePosition().equals(getTilePosition())) {
+        if (pacman.isOnSameTile(this)) {
             maze.eatGhost(pacman, this);
         }
 
         // In ghost may only change direction when it enters an intersection.
         // Since ghosts may not reverse direction, we simply check when we enter
         // a new tile.
-        Tile last = maze.getTile(maze.toTileCoords(lastPosition));
-        if (!last.equals(current) || nextDirection == null) {
+        boolean enteredTile = FixedPoint.toTile(lastX) != tileX || FixedPoint.toTile(lastY) != tileY;
+        if (enteredTile || nextDirection == null) {
             Behavior behavior = getBehavior();
             nextDirection = behavior.getDirection(this);
         }
@@ -301,11 +313,10 @@ public class GhostEntity extends Entity {
         // When we are locked into a new direction, we should move towards the center
         // of the tile, then move in that direction.
         if (nextDirection != direction) {
-            Vector2d center = new Vector2d(current.getCenterPixel());
-            if (!position.equals(center, 0.1)) {
-                double x = NumberUtil.moveTowards(position.x(), center.x(), speed);
-                double y = NumberUtil.moveTowards(position.y(), center.y(), speed);
-                setPosition(new Vector2d(x, y));
+            int centerX = FixedPoint.tileCenter(tileX);
+            int centerY = FixedPoint.tileCenter(tileY);
+            if (x != centerX || y != centerY) {
+                setFixedPosition(FixedPoint.moveTowards(x, centerX, speed), FixedPoint.moveTowards(y, centerY, speed));
                 return;
             }
 
@@ -318,7 +329,7 @@ public class GhostEntity extends Entity {
             return;
         }
 
-        move(direction, speed, true);
+        moveFixed(direction, speed, true);
     }
 
 
@@ -349,8 +360,8 @@ public class GhostEntity extends Entity {
 
         spriteSheet.setColors(colors);
         spriteSheet.setCurrentTile(spriteX, spriteY);
-        int pixelX = (int) position.x() - spriteSheet.getTileSize().x() / 2 + 1;
-        int pixelY = (int) position.y() - spriteSheet.getTileSize().y() / 2 + 1;
+        int pixelX = FixedPoint.toPixel(x) - spriteSheet.getTileSize().x() / 2 + 1;
+        int pixelY = FixedPoint.toPixel(y) - spriteSheet.getTileSize().y() / 2 + 1;
         spriteSheet.render(batch, pixelX, pixelY);
     }
 
@@ -362,7 +373,7 @@ public class GhostEntity extends Entity {
 
     public static class Config {
         public boolean isElroy = false;
-        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/ghost-sprite.png"), 20);
+        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet("sprites/ghost-sprite.png", 20);
         public @NotNull Behavior chase = new AggressiveChaseBehavior();
         public @NotNull Vector2i scatterTile = new Vector2i();
         public @NotNull Vector2i spawnPixel = new Vector2i();
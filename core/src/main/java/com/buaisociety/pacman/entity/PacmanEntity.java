@@ -1,12 +1,12 @@
 package com.buaisociety.pacman.entity;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.AggressiveChaseBehavior;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.*;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
+import com.buaisociety.pacman.util.FixedPoint;
 import kotlin.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2d;
@@ -14,6 +14,18 @@ import org.joml.Vector2i;
 
 public class PacmanEntity extends Entity {
 
+    /**
+     * {@link #isGhostInHallway(Direction)} only looks past the junction at the
+     * end of hallways up to this many tiles long.
+     */
+    public static final int GHOST_SCAN_HALLWAY_LENGTH = 8;
+
+    /**
+     * How many tiles past the junction {@link #isGhostInHallway(Direction)}
+     * looks for ghosts.
+     */
+    public static final int GHOST_SCAN_PAST_JUNCTION = 2;
+
     private final GrayscaleSpriteSheet spriteSheet;
     private int animationFrame;
 
@@ -21,6 +33,7 @@ public class PacmanEntity extends Entity {
     private final @NotNull Behavior behavior;
     private int freezeTicks;
     private boolean isAlive = true;
+    private final @NotNull Bitboard ghostScanVisited;  // reused by dfsCheckForGhost()
 
     // For graph traversal: the maze graph and the shortest pathfinder
     private final MazeGraph graph;
@@ -37,35 +50,132 @@ public class PacmanEntity extends Entity {
         this.spriteSheet = config.spriteSheet;
         this.spriteSheet.setColors(Color.CLEAR, Color.YELLOW);
 
+        this.ghostScanVisited = new Bitboard(maze.getTemplate().getWidth(), maze.getTemplate().getHeight());
         this.graph = new MazeGraph(maze);
         this.pathFinder = new ShortestPathFinder(graph);
     }
 
     public int getDistanceToNearestPellet(Direction direction) {
-        Tile startTile = maze.getTile(getTilePosition());
-        Tile neighborTile = startTile.getNeighbor(direction);
-        if (!neighborTile.getState().isPassable()) {
-            return Integer.MAX_VALUE;
-        }
-        return pathFinder.getDistanceToNearestPellet(neighborTile);
+        return maze.getPathFinder().distanceToNearest(getTileX(), getTileY(), direction, maze.getPelletBoard());
     }
 
     public int getDistanceToNearestGhost(Direction direction) {
-        Tile startTile = maze.getTile(getTilePosition());
-        Tile neighborTile = startTile.getNeighbor(direction);
-        if (!neighborTile.getState().isPassable()) {
-            return Integer.MAX_VALUE;
-        }
-        return pathFinder.getDistanceToNearestGhost(neighborTile);
+        return maze.getPathFinder().distanceToNearest(getTileX(), getTileY(), direction, maze.getGhostBoard());
     }
 
+    /**
+     * Returns true if there is a ghost a few tiles ahead in the given
+     * direction. This is the ghost input the networks were trained on.
+     *
+     * <p>The check walks the hallway while the current tile has exactly 1
+     * unvisited neighbor, then looks at the tile it stopped on and the last
+     * unvisited neighbor of that tile (in {@link Direction} order). The walk
+     * never marks the tile it leaves as visited, so in a straight hallway it
+     * stops 2 tiles ahead, and only covers about 3 tiles. Hallways walked for
+     * more than 8 tiles are not checked past the walk. See
+     * {@link #isGhostInHallway(Direction)} for a scan of the whole hallway.
+     *
+     * @param direction the direction to look in
+     * @return true if a ghost is nearby in that direction
+     */
     public boolean dfsCheckForGhost(Direction direction) {
-        Tile startTile = maze.getTile(getTilePosition());
-        Tile neighborTile = startTile.getNeighbor(direction);
-        if (!neighborTile.getState().isPassable()) {
+        MazeTemplate template = maze.getTemplate();
+        int start = template.index(getTileX(), getTileY());
+        int current = template.getNeighbor(start, direction);
+        if (!maze.getTileState(current).isPassable()) {
+            return false;
+        }
+
+        ghostScanVisited.clear();
+        ghostScanVisited.set(start);
+        int walked = 0;
+        while (true) {
+            int next = -1;
+            int unvisited = 0;
+            for (Direction exit : Direction.values()) {
+                int neighbor = template.getNeighbor(current, exit);
+                if (maze.getTileState(neighbor).isPassable() && !ghostScanVisited.get(neighbor)) {
+                    unvisited++;
+                    if (next == -1)
+                        next = neighbor;
+                }
+            }
+            if (unvisited != 1)
+                break;
+
+            walked++;
+            if (isGhostOn(current)) {
+                return true;
+            }
+            ghostScanVisited.set(next);
+            current = next;
+        }
+
+        if (walked > 8) {
             return false;
         }
-        return pathFinder.dfsCheckForGhost(startTile, neighborTile);
+        if (isGhostOn(current)) {
+            return true;
+        }
+
+        // The search past the end of the walk stops after 2 tiles: the one
+        // it stopped on, then the last of its unvisited neighbors
+        int last = -1;
+        for (Direction exit : Direction.values()) {
+            int neighbor = template.getNeighbor(current, exit);
+            if (maze.getTileState(neighbor).isPassable() && !ghostScanVisited.get(neighbor))
+                last = neighbor;
+        }
+        return last != -1 && isGhostOn(last);
+    }
+
+    private boolean isGhostOn(int index) {
+        MazeTemplate template = maze.getTemplate();
+        for (GhostEntity ghost : maze.getGhosts()) {
+            if (template.index(ghost.getTileX(), ghost.getTileY()) == index)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if there is a ghost in the hallway in the given direction,
+     * or within {@link #GHOST_SCAN_PAST_JUNCTION} tiles past the junction at
+     * the end of the hallway (only for hallways up to
+     * {@link #GHOST_SCAN_HALLWAY_LENGTH} tiles long).
+     *
+     * <p>This covers more than {@link #dfsCheckForGhost(Direction)}, so
+     * feeding it to a network in place of that input changes what the input
+     * means, and trained populations would have to be retrained.
+     *
+     * @param direction the direction of the hallway
+     * @return true if a ghost is nearby in that direction
+     */
+    public boolean isGhostInHallway(Direction direction) {
+        MazeTemplate template = maze.getTemplate();
+        JunctionGraph graph = template.getJunctionGraph();
+        int from = template.index(getTileX(), getTileY());
+        int junction = graph.getJunctionAhead(from, direction);
+        if (junction == -1) {
+            return false;
+        }
+
+        boolean scanPastJunction = graph.distanceAhead(from, direction, junction) <= GHOST_SCAN_HALLWAY_LENGTH;
+        for (GhostEntity entity : maze.getGhosts()) {
+            int ghost = template.index(entity.getTileX(), entity.getTileY());
+            if (graph.distanceAhead(from, direction, ghost) != -1) {
+                return true;
+            }
+            if (scanPastJunction) {
+                for (Direction exit : Direction.values()) {
+                    int distance = graph.distanceAhead(junction, exit, ghost);
+                    if (distance != -1 && distance <= GHOST_SCAN_PAST_JUNCTION) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
     }
 
     @Override
@@ -79,7 +189,7 @@ public class PacmanEntity extends Entity {
     }
 
     @Override
-    public double getSpeed() {
+    public int getFixedSpeed() {
         // These constants are taken straight out of the Pacman game
         int level = maze.getLevelManager().getLevel();
 
@@ -89,27 +199,27 @@ public class PacmanEntity extends Entity {
 
         if (maze.getFrightenedTimer() > 0) {
             if (level >= 5) {
-                return BASE_SPEED * 1.00;
+                return speed(100);
             } else if (level >= 2) {
-                return BASE_SPEED * 0.95;
+                return speed(95);
             } else {
-                return BASE_SPEED * 0.90;
+                return speed(90);
             }
         } else {
             if (level >= 21) {
-                return BASE_SPEED * 0.90;
+                return speed(90);
             } else if (level >= 5) {
-                return BASE_SPEED * 1.00;
+                return speed(100);
             } else if (level >= 2) {
-                return BASE_SPEED * 0.90;
+                return speed(90);
             } else {
-                return BASE_SPEED * 0.80;
+                return speed(80);
             }
         }
     }
 
     public Pair<Integer, Direction> getDistanceAndDirectionToNearestPelletAndGhost() {
-        Tile startTile = maze.getTile(getTilePosition());
+        Tile startTile = getTile();
         return pathFinder.getDistanceAndDirectionToNearestPowerPellet(startTile);
     }
 
@@ -122,6 +232,10 @@ public class PacmanEntity extends Entity {
         return behavior;
     }
 
+    public @NotNull Vector2i getSpawnPixel() {
+        return spawnPixel;
+    }
+
     /**
      * Returns true if the pacman is alive (has not been killed by a ghost).
      *
@@ -152,12 +266,13 @@ public class PacmanEntity extends Entity {
         Behavior behavior = getBehavior();
         direction = behavior.getDirection(this);
         if (canMove(direction)) {
-            move(direction, getSpeed(), true);
+            moveFixed(direction, getFixedSpeed(), true);
         }
 
-        // Eat pellets
-        Tile tile = maze.getTile(maze.toTileCoords(position));
-        TileState pellet = maze.eatPellet(this, tile);
+        // Eat pellets. Tiles are views, so only create one when there is something to eat
+        TileState pellet = maze.getTileState(FixedPoint.toTile(x), FixedPoint.toTile(y));
+        if (pellet == TileState.PELLET || pellet == TileState.POWER_PELLET)
+            pellet = maze.eatPellet(this, getTile());
         if (pellet == TileState.PELLET) {
             freezeTicks += 1;
         } else if (pellet == TileState.POWER_PELLET) {
@@ -175,8 +290,8 @@ public class PacmanEntity extends Entity {
             case 1, 3 -> spriteSheet.setCurrentTile(1, direction.ordinal());
             case 2 -> spriteSheet.setCurrentTile(2, direction.ordinal());
         }
-        int pixelX = (int) position.x() - spriteSheet.getTileSize().x() / 2 + 1;
-        int pixelY = (int) position.y() - spriteSheet.getTileSize().y() / 2 + 1;
+        int pixelX = FixedPoint.toPixel(x) - spriteSheet.getTileSize().x() / 2 + 1;
+        int pixelY = FixedPoint.toPixel(y) - spriteSheet.getTileSize().y() / 2 + 1;
         spriteSheet.render(batch, pixelX, pixelY);
     }
 
@@ -189,6 +304,6 @@ public class PacmanEntity extends Entity {
     public static class Config {
         public @NotNull Behavior behavior = new AggressiveChaseBehavior();
         public @NotNull Vector2i spawnPixel = new Vector2i();
-        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet("sprites/pacman-sprite.png", 20);
     }
 }
@@ -4,6 +4,7 @@ import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.PacmanEntity;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
+import org.joml.Vector2ic;
 
 /**
  * A behavior to chase the target directly.
@@ -12,9 +13,11 @@ import org.joml.Vector2i;
  */
 public class AggressiveChaseBehavior implements TargetableBehavior {
 
+    private final @NotNull Vector2i target = new Vector2i();
+
     @Override
-    public @NotNull Vector2i getTarget(@NotNull Entity entity) {
+    public @NotNull Vector2ic getTarget(@NotNull Entity entity) {
         PacmanEntity pacman = entity.getMaze().getPacman();
-        return pacman.getTilePosition();
+        return target.set(pacman.getTileX(), pacman.getTileY());
     }
 }
@@ -1,9 +1,11 @@
 package com.buaisociety.pacman.entity.behavior;
 
+import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.PacmanEntity;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
+import org.joml.Vector2ic;
 
 /**
  * A behavior to chase 4 tiles ahead of the target.
@@ -12,12 +14,13 @@ import org.joml.Vector2i;
  */
 public class AmbushChaseBehavior implements TargetableBehavior {
 
+    private final @NotNull Vector2i target = new Vector2i();
+
     @NotNull
     @Override
-    public Vector2i getTarget(@NotNull Entity entity) {
+    public Vector2ic getTarget(@NotNull Entity entity) {
         PacmanEntity pacman = entity.getMaze().getPacman();
-        Vector2i origin = pacman.getTilePosition();
-        origin.add(pacman.getDirection().asVector().mul(4));
-        return origin;
+        Direction dir = pacman.getDirection();
+        return target.set(pacman.getTileX() + dir.getDx() * 4, pacman.getTileY() + dir.getDy() * 4);
     }
 }
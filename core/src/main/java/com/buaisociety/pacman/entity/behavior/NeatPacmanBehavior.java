@@ -2,22 +2,56 @@ package com.buaisociety.pacman.entity.behavior;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.buaisociety.pacman.feature.FeatureContext;
+import com.buaisociety.pacman.feature.FeatureVector;
+import com.buaisociety.pacman.feature.Features;
+import com.buaisociety.pacman.feature.LiveInputs;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
+import com.buaisociety.pacman.metrics.InferenceEvent;
+import com.buaisociety.pacman.metrics.Metrics;
+import com.buaisociety.pacman.metrics.Phase;
 import com.buaisociety.pacman.sprite.DebugDrawing;
 import com.cjcrafter.neat.Client;
+import com.cjcrafter.neat.compute.Calculator;
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.PacmanEntity;
-import kotlin.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.joml.Vector2i;
 
 public class NeatPacmanBehavior implements Behavior {
 
+    /**
+     * The inputs of the neural network. Networks that are already trained
+     * depend on this order, so add new features at the end.
+     */
+    public static final @NotNull FeatureVector INPUTS = new FeatureVector(
+        Features.CAN_MOVE[FeatureContext.FORWARD],
+        Features.CAN_MOVE[FeatureContext.LEFT],
+        Features.CAN_MOVE[FeatureContext.RIGHT],
+        Features.CAN_MOVE[FeatureContext.BEHIND],
+        Features.NEAREST_PELLET[FeatureContext.FORWARD],
+        Features.NEAREST_PELLET[FeatureContext.LEFT],
+        Features.NEAREST_PELLET[FeatureContext.RIGHT],
+        Features.NEAREST_PELLET[FeatureContext.BEHIND],
+        Features.GHOST_AHEAD[FeatureContext.LEFT],
+        Features.GHOST_AHEAD[FeatureContext.RIGHT],
+        Features.GHOST_AHEAD[FeatureContext.FORWARD],
+        Features.GHOST_AHEAD[FeatureContext.BEHIND]
+    );
+
+    /**
+     * The number of outputs of the neural network: forward, left, right, and behind.
+     */
+    public static final int OUTPUTS = 4;
+
     private final @NotNull Client client;
+    private final boolean updateClientScore;
+    private final @Nullable boolean[] liveInputs;  // null to compute every input
     private @Nullable PacmanEntity pacman;
+    private int fitness;
+    private final @NotNull FeatureContext context = new FeatureContext();
+    private final @NotNull float[] inputs = new float[INPUTS.size()];
 
     // Score modifiers help us maintain "multiple pools" of points.
     // This is great for training, because we can take away points from
@@ -28,7 +62,55 @@ public class NeatPacmanBehavior implements Behavior {
     private int lastScore = 0;
 
     public NeatPacmanBehavior(@NotNull Client client) {
+        this(client, true);
+    }
+
+    /**
+     * Creates a behavior controlled by the client's neural network.
+     *
+     * @param client the client whose neural network controls pacman
+     * @param updateClientScore <code>false</code> if the caller sets the
+     *                          client's score itself, e.g. when the client
+     *                          plays several games at once
+     */
+    public NeatPacmanBehavior(@NotNull Client client, boolean updateClientScore) {
+        this(client, updateClientScore, null);
+    }
+
+    /**
+     * Creates a behavior controlled by the client's neural network, that only
+     * computes the inputs the network can use.
+     *
+     * @param client the client whose neural network controls pacman
+     * @param updateClientScore <code>false</code> if the caller sets the
+     *                          client's score itself, e.g. when the client
+     *                          plays several games at once
+     * @param liveInputs which inputs to compute, see {@link LiveInputs#analyze},
+     *                   or null to compute all of them
+     */
+    public NeatPacmanBehavior(@NotNull Client client, boolean updateClientScore, @Nullable boolean[] liveInputs) {
         this.client = client;
+        this.updateClientScore = updateClientScore;
+        this.liveInputs = liveInputs;
+    }
+
+    /**
+     * Returns which inputs can affect the outputs of the client's network.
+     *
+     * @param client the client to analyze
+     * @return <code>true</code> for each input of {@link #INPUTS} that is used
+     */
+    public static @NotNull boolean[] analyzeLiveInputs(@NotNull Client client) {
+        return LiveInputs.analyze(client.getGenome(), INPUTS.size(), OUTPUTS);
+    }
+
+    /**
+     * Returns the fitness earned by pacman so far, including score modifiers.
+     *
+     * @return the fitness earned so far
+     */
+    public int getFitness() {
+        return fitness;
     }
 
     /**
@@ -61,103 +143,24 @@ public class NeatPacmanBehavior implements Behavior {
             return Direction.UP;
         }
 
-        // We are going to use these directions a lot for different inputs. Get them all once for clarity and brevity
-        Direction forward = pacman.getDirection();
-        Direction left = pacman.getDirection().left();
-        Direction right = pacman.getDirection().right();
-        Direction behind = pacman.getDirection().behind();
-
-        // Input nodes 1, 2, 3, and 4 show if the pacman can move in the forward, left, right, and behind directions
-        boolean canMoveForward = pacman.canMove(forward);
-        boolean canMoveLeft = pacman.canMove(left);
-        boolean canMoveRight = pacman.canMove(right);
-        boolean canMoveBehind = pacman.canMove(behind);
-
-        // Nearest distance to Pallet:
-        int distanceToNearestPelletForward = pacman.getDistanceToNearestPellet(forward);
-        int distanceToNearestPelletLeft = pacman.getDistanceToNearestPellet(left);
-        int distanceToNearestPelletRight = pacman.getDistanceToNearestPellet(right);
-        int distanceToNearestPelletBehind = pacman.getDistanceToNearestPellet(behind);
-
-        // Nearest distance to ghost:
-        int distanceToGhostForward = pacman.getDistanceToNearestGhost(forward);
-        int distanceToGhostLeft = pacman.getDistanceToNearestGhost(left);
-        int distanceToGhostRight = pacman.getDistanceToNearestGhost(right);
-        int distanceToGhostBehind = pacman.getDistanceToNearestGhost(behind);
-
-        // One hot encoding for the direction of the closest power pellet
-        int minDistance = Math.min(distanceToNearestPelletForward, Math.min(distanceToNearestPelletLeft, Math.min(distanceToNearestPelletRight, distanceToNearestPelletBehind)));
-        boolean closestPalletIsForward = distanceToNearestPelletForward == minDistance;
-        boolean closestPalletIsLeft = distanceToNearestPelletLeft == minDistance;
-        boolean closestPalletIsRight = distanceToNearestPelletRight == minDistance;
-        boolean closestPalletIsBehind = distanceToNearestPelletBehind == minDistance;
-
-        // Get the fruit position
-        Vector2i fruitPosition = pacman.getMaze().getFruitPosition();
-        if (fruitPosition != null) {
-            // Calculate direction to the fruit
-            Tile pacmanTile = pacman.getMaze().getTile(pacman.getTilePosition());
-            Tile fruitTile = pacman.getMaze().getTile(fruitPosition);
-            Direction directionToFruit = pacmanTile.getDirectionTo(fruitTile);
-
-            // Use the direction to the fruit in your NEAT algorithm inputs
-            boolean fruitIsForward = directionToFruit == pacman.getDirection();
-            boolean fruitIsLeft = directionToFruit == pacman.getDirection().left();
-            boolean fruitIsRight = directionToFruit == pacman.getDirection().right();
-            boolean fruitIsBehind = directionToFruit == pacman.getDirection().behind();
+        // Only the features in INPUTS are computed (and only the ones the
+        // network uses), see Features for the others
+        long start = System.nanoTime();
+        context.update(pacman);
+        INPUTS.compute(context, inputs, liveInputs);
+        long computed = System.nanoTime();
+        Metrics.recordNanos(Phase.FEATURES, computed - start);
+
+        // The same client may be playing several games at once on different threads
+        InferenceEvent inference = new InferenceEvent();
+        inference.begin();
+        Calculator calculator = client.getCalculator();
+        float[] outputs;
+        synchronized (calculator) {
+            outputs = calculator.calculate(inputs).join();
         }
-
-        boolean ghostLeft = pacman.dfsCheckForGhost(left);
-        boolean ghostRight = pacman.dfsCheckForGhost(right);
-        boolean ghostForward = pacman.dfsCheckForGhost(forward);
-        boolean ghostBehind = pacman.dfsCheckForGhost(behind);
-
-        // Get the current score and number of pellets left
-        int pelletsLeft = pacman.getMaze().getPelletsRemaining();
-
-        // Check if Pacman should eat a PowerPellet
-        boolean shouldEatPowerPellet = (distanceToGhostForward < 5 || distanceToGhostLeft < 5 || distanceToGhostRight < 5 || distanceToGhostBehind < 5);
-        // Get closest power pellet direction and distance
-        Pair<Integer, Direction> closestPowerPellet = pacman.getDistanceAndDirectionToNearestPelletAndGhost();
-        int distanceToClosestPowerPellet = closestPowerPellet.getFirst();
-        Direction directionToClosestPowerPellet = closestPowerPellet.getSecond();
-        boolean closestPowerPelletIsForward = directionToClosestPowerPellet == forward;
-        boolean closestPowerPelletIsLeft = directionToClosestPowerPellet == left;
-        boolean closestPowerPelletIsRight = directionToClosestPowerPellet == right;
-        boolean closestPowerPelletIsBehind = directionToClosestPowerPellet == behind;
-        boolean isInSuperMode = pacman.isInSuperMode();
-
-        float[] outputs = client.getCalculator().calculate(new float[]{
-            canMoveForward ? 1f : 0f,
-            canMoveLeft ? 1f : 0f,
-            canMoveRight ? 1f : 0f,
-            canMoveBehind ? 1f : 0f,
-            closestPalletIsForward ? 1f : 0f,
-            closestPalletIsLeft ? 1f : 0f,
-            closestPalletIsRight ? 1f : 0f,
-            closestPalletIsBehind ? 1f : 0f,
-            ghostLeft ? 1f : 0f,
-            ghostRight ? 1f : 0f,
-            ghostForward ? 1f : 0f,
-            ghostBehind ? 1f : 0f,
-        }).join();
-
-        //            closestPalletIsForward ? 1f : 0f,
-        //            closestPalletIsLeft ? 1f : 0f,
-        //            closestPalletIsRight ? 1f : 0f,
-        //            closestPalletIsBehind ? 1f : 0f,
-
-//        distanceToGhostForward,
-//            distanceToGhostLeft,
-//            distanceToGhostRight,
-//            distanceToGhostBehind,
-//        shouldEatPowerPellet ? 1f : 0f,
-//            distanceToClosestPowerPellet,
-//            closestPowerPelletIsForward ? 1f : 0f,
-//            closestPowerPelletIsLeft ? 1f : 0f,
-//            closestPowerPelletIsRight ? 1f : 0f,
-//            closestPowerPelletIsBehind ? 1f : 0f,
-//            isInSuperMode ? 1f : 0f,
+        Metrics.record(Phase.INFERENCE, computed);
+        inference.end(inputs.length, liveInputs);
 
         int index = 0;
         float max = outputs[0];
@@ -176,7 +179,9 @@ public class NeatPacmanBehavior implements Behavior {
             default -> throw new IllegalStateException("Unexpected value: " + index);
         };
 
-        client.setScore(pacman.getMaze().getLevelManager().getScore() + scoreModifier);
+        fitness = pacman.getMaze().getLevelManager().getScore() + scoreModifier;
+        if (updateClientScore)
+            client.setScore(fitness);
         return newDirection;
     }
 
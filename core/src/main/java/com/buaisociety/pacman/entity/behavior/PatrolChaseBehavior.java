@@ -9,6 +9,7 @@ import com.buaisociety.pacman.maze.Maze;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
+import org.joml.Vector2ic;
 
 /**
  * This behavior coordinates with the
@@ -16,10 +17,11 @@ import org.joml.Vector2i;
 public class PatrolChaseBehavior implements TargetableBehavior {
 
     private @Nullable GhostEntity blinky;
+    private final @NotNull Vector2i target = new Vector2i();
 
     public @NotNull GhostEntity findBlinky(@NotNull Maze maze) {
-        for (Entity entity : maze.getEntities()) {
-            if (entity instanceof GhostEntity ghost && ghost.getBehavior(GhostState.CHASE) instanceof AggressiveChaseBehavior) {
+        for (GhostEntity ghost : maze.getGhosts()) {
+            if (ghost.getBehavior(GhostState.CHASE) instanceof AggressiveChaseBehavior) {
                 return ghost;
             }
         }
@@ -29,7 +31,7 @@ public class PatrolChaseBehavior implements TargetableBehavior {
 
     @NotNull
     @Override
-    public Vector2i getTarget(@NotNull Entity entity) {
+    public Vector2ic getTarget(@NotNull Entity entity) {
         Maze maze = entity.getMaze();
         if (blinky == null) {
             blinky = findBlinky(maze);
@@ -37,10 +39,10 @@ public class PatrolChaseBehavior implements TargetableBehavior {
 
         PacmanEntity pacman = maze.getPacman();
         Direction dir = pacman.getDirection();
-        Vector2i target = pacman.getTilePosition().add(dir.getDx() * 2, dir.getDy() * 2);
+        int aheadX = pacman.getTileX() + dir.getDx() * 2;
+        int aheadY = pacman.getTileY() + dir.getDy() * 2;
 
-        Vector2i between = target.sub(blinky.getTilePosition());
-        between.mul(2).add(blinky.getTilePosition());
-        return between;
+        // Double the vector from blinky to 2 tiles ahead of pacman
+        return target.set(aheadX * 2 - blinky.getTileX(), aheadY * 2 - blinky.getTileY());
     }
 }
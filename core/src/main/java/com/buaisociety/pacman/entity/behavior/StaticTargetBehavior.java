@@ -1,22 +1,41 @@
 package com.buaisociety.pacman.entity.behavior;
 
+import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.maze.MazeTemplate;
+import com.buaisociety.pacman.maze.NavigationTable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
+import org.joml.Vector2ic;
 
 /**
  * Targets 1 specific tile, always. This is used for the scatter behavior of the ghosts.
+ *
+ * <p>Since the target never changes, directions come from the maze's
+ * {@link NavigationTable} for the target instead of comparing distances.
  */
 public class StaticTargetBehavior implements TargetableBehavior {
 
     private final Vector2i target;
+    private @Nullable NavigationTable table;  // looked up the first time it is needed
 
     public StaticTargetBehavior(Vector2i target) {
-        this.target = target;
+        this.target = new Vector2i(target);
     }
 
     @Override
-    public @NotNull Vector2i getTarget(@NotNull Entity entity) {
+    public @NotNull Direction getDirection(@NotNull Entity entity) {
+        MazeTemplate template = entity.getMaze().getTemplate();
+        if (table == null)
+            table = template.getNavigationTable(target.x, target.y);
+
+        Direction direction = table.getDirection(template.index(entity.getTileX(), entity.getTileY()), entity.getDirection());
+        return direction == null ? entity.getDirection() : direction;
+    }
+
+    @Override
+    public @NotNull Vector2ic getTarget(@NotNull Entity entity) {
         return target;
     }
 }
@@ -2,11 +2,9 @@ package com.buaisociety.pacman.entity.behavior;
 
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
-import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
+import com.buaisociety.pacman.maze.TileState;
 import org.jetbrains.annotations.NotNull;
-import org.joml.RoundingMode;
-import org.joml.Vector2i;
+import org.joml.Vector2ic;
 
 /**
  * A behavior that targets a tile in the maze instead of a direction.
@@ -25,23 +23,26 @@ public interface TargetableBehavior extends Behavior {
 
     @Override
     default @NotNull Direction getDirection(@NotNull Entity entity) {
-        Vector2i target = getTarget(entity);
+        Vector2ic target = getTarget(entity);
 
         Direction temp = null;
         int smallest = Integer.MAX_VALUE;
 
-        Tile current = entity.getMaze().getTile(entity.getTilePosition());
+        int tileX = entity.getTileX();
+        int tileY = entity.getTileY();
+        Direction behind = entity.getDirection().behind();
         for (Direction direction : DIRECTIONS) {
             // Ghosts may not reverse direction
-            if (entity.getDirection().behind() == direction)
+            if (behind == direction)
                 continue;
 
-            Tile next = current.getNeighbor(direction);
-            if (!next.getState().isPassable())
+            TileState next = entity.getMaze().getTileState(tileX + direction.getDx(), tileY + direction.getDy());
+            if (!next.isPassable())
                 continue;
 
-            Vector2i location = new Vector2i(entity.getPosition().div(Maze.TILE_SIZE), RoundingMode.TRUNCATE).add(direction.asVector());
-            int distance = (int) location.distanceSquared(target);
+            int dx = tileX + direction.getDx() - target.x();
+            int dy = tileY + direction.getDy() - target.y();
+            int distance = dx * dx + dy * dy;
 
             if (distance <= smallest) {
                 smallest = distance;
@@ -55,5 +56,13 @@ public interface TargetableBehavior extends Behavior {
         return temp;
     }
 
-    @NotNull Vector2i getTarget(@NotNull Entity entity);
+    /**
+     * Returns the tile this behavior is heading towards. Implementations may
+     * reuse the same vector between calls, so the result is only valid until
+     * the next call.
+     *
+     * @param entity the entity using this behavior
+     * @return the target tile, read-only
+     */
+    @NotNull Vector2ic getTarget(@NotNull Entity entity);
 }
@@ -3,13 +3,37 @@ package com.buaisociety.pacman.entity.behavior;
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.feature.FeatureContext;
+import com.buaisociety.pacman.feature.FeatureVector;
+import com.buaisociety.pacman.feature.Features;
 import com.cjcrafter.neat.compute.Calculator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class TournamentBehavior implements Behavior {
 
+    /**
+     * The inputs of the neural network.
+     */
+    public static final @NotNull FeatureVector INPUTS = new FeatureVector(
+        // TODO: Add your inputs here, in the same order as NeatPacmanBehavior
+        Features.CAN_MOVE[FeatureContext.FORWARD],
+        Features.CAN_MOVE[FeatureContext.LEFT],
+        Features.CAN_MOVE[FeatureContext.RIGHT],
+        Features.CAN_MOVE[FeatureContext.BEHIND],
+        Features.NEAREST_PELLET[FeatureContext.FORWARD],
+        Features.NEAREST_PELLET[FeatureContext.LEFT],
+        Features.NEAREST_PELLET[FeatureContext.RIGHT],
+        Features.NEAREST_PELLET[FeatureContext.BEHIND],
+        Features.GHOST_AHEAD[FeatureContext.LEFT],
+        Features.GHOST_AHEAD[FeatureContext.RIGHT],
+        Features.GHOST_AHEAD[FeatureContext.FORWARD],
+        Features.GHOST_AHEAD[FeatureContext.BEHIND]
+    );
+
     private final Calculator calculator;
+    private final @NotNull FeatureContext context = new FeatureContext();
+    private final @NotNull float[] inputs = new float[INPUTS.size()];
     private @Nullable PacmanEntity pacman;
 
     private int previousScore = 0;
@@ -32,8 +56,8 @@ public class TournamentBehavior implements Behavior {
     @Override
     public Direction getDirection(@NotNull Entity entity) {
         // --- DO NOT REMOVE ---
-        if (pacman == null) {
-            pacman = (PacmanEntity) entity;
+        if (pacman != entity) {
+            pacman = (PacmanEntity) entity;  // a new pacman is spawned every level
         }
 
         int newScore = pacman.getMaze().getLevelManager().getScore();
@@ -51,52 +75,9 @@ public class TournamentBehavior implements Behavior {
         // --- END OF DO NOT REMOVE ---
 
         // TODO: Put all your code for info into the neural network here
-
-        // We are going to use these directions a lot for different inputs. Get them all once for clarity and brevity
-        Direction forward = pacman.getDirection();
-        Direction left = pacman.getDirection().left();
-        Direction right = pacman.getDirection().right();
-        Direction behind = pacman.getDirection().behind();
-
-        // Input nodes 1, 2, 3, and 4 show if the pacman can move in the forward, left, right, and behind directions
-        boolean canMoveForward = pacman.canMove(forward);
-        boolean canMoveLeft = pacman.canMove(left);
-        boolean canMoveRight = pacman.canMove(right);
-        boolean canMoveBehind = pacman.canMove(behind);
-
-        // Nearest distance to Pallet:
-        int distanceToNearestPelletForward = pacman.getDistanceToNearestPellet(forward);
-        int distanceToNearestPelletLeft = pacman.getDistanceToNearestPellet(left);
-        int distanceToNearestPelletRight = pacman.getDistanceToNearestPellet(right);
-        int distanceToNearestPelletBehind = pacman.getDistanceToNearestPellet(behind);
-
-        // One hot encoding for the direction of the closest power pellet
-        int minDistance = Math.min(distanceToNearestPelletForward, Math.min(distanceToNearestPelletLeft, Math.min(distanceToNearestPelletRight, distanceToNearestPelletBehind)));
-        boolean closestPalletIsForward = distanceToNearestPelletForward == minDistance;
-        boolean closestPalletIsLeft = distanceToNearestPelletLeft == minDistance;
-        boolean closestPalletIsRight = distanceToNearestPelletRight == minDistance;
-        boolean closestPalletIsBehind = distanceToNearestPelletBehind == minDistance;
-
-        boolean ghostLeft = pacman.dfsCheckForGhost(left);
-        boolean ghostRight = pacman.dfsCheckForGhost(right);
-        boolean ghostForward = pacman.dfsCheckForGhost(forward);
-        boolean ghostBehind = pacman.dfsCheckForGhost(behind);
-
-        float[] inputs = new float[] {
-            // TODO: Add your inputs here
-            canMoveForward ? 1f : 0f,
-            canMoveLeft ? 1f : 0f,
-            canMoveRight ? 1f : 0f,
-            canMoveBehind ? 1f : 0f,
-            closestPalletIsForward ? 1f : 0f,
-            closestPalletIsLeft ? 1f : 0f,
-            closestPalletIsRight ? 1f : 0f,
-            closestPalletIsBehind ? 1f : 0f,
-            ghostLeft ? 1f : 0f,
-            ghostRight ? 1f : 0f,
-            ghostForward ? 1f : 0f,
-            ghostBehind ? 1f : 0f,
-        };
+        // Only the features in INPUTS are computed, see Features for the others
+        context.update(pacman);
+        INPUTS.compute(context, inputs);
         float[] outputs = calculator.calculate(inputs).join();
 
         // Chooses the maximum output as the direction to go... feel free to change this ofc!
@@ -0,0 +1,138 @@
+package com.buaisociety.pacman.feature;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named input to pacman's neural network, like "can pacman move forward".
+ *
+ * <p>Features are registered once in {@link Features} and evaluated against a
+ * {@link FeatureContext}, which memoizes the expensive work (path finding)
+ * that several features share. Each feature counts how often it was
+ * evaluated and how long that took, across every game and thread, so the
+ * cost of an input vector can be read back with {@link Features#printCosts()}.
+ * The time of shared work is counted by the context, not by the feature that
+ * happened to need it first.
+ */
+public final class Feature {
+
+    /**
+     * Computes the value of a feature.
+     */
+    @FunctionalInterface
+    public interface Evaluator {
+        float evaluate(@NotNull FeatureContext context);
+    }
+
+    private final @NotNull String name;
+    private final int index;
+    private final @NotNull Evaluator evaluator;
+    private final @NotNull LongAdder evaluations = new LongAdder();
+    private final @NotNull LongAdder nanos = new LongAdder();
+    private final @NotNull LongAdder skips = new LongAdder();
+    private volatile long lastAverageNanos;  // from before the last reset, for features that are always skipped
+    private final @NotNull AtomicInteger sharedComputations = new AtomicInteger();  // every shared computation this feature was seen to use
+
+    Feature(@NotNull String name, int index, @NotNull Evaluator evaluator) {
+        this.name = name;
+        this.index = index;
+        this.evaluator = evaluator;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the position of this feature in {@link Features#getAll()}.
+     *
+     * @return the index of this feature
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Evaluates this feature, counting the time it takes, minus the time of
+     * any shared computation it ran. Also records which shared computations
+     * the feature uses, see {@link #getSharedComputations()}.
+     *
+     * @param context the game to evaluate the feature for
+     * @return the value of the feature
+     */
+    public float evaluate(@NotNull FeatureContext context) {
+        context.startFeature();
+        long shared = context.getSharedNanos();
+        long start = System.nanoTime();
+        float value = evaluator.evaluate(context);
+        nanos.add(System.nanoTime() - start - (context.getSharedNanos() - shared));
+        evaluations.increment();
+
+        int used = context.getUsed();
+        if ((sharedComputations.get() & used) != used)
+            sharedComputations.getAndAccumulate(used, (a, b) -> a | b);
+        return value;
+    }
+
+    /**
+     * Returns the shared computations of a {@link FeatureContext} this
+     * feature used in any evaluation so far. A feature that has never been
+     * evaluated is not known to need any.
+     *
+     * @return a mask of computations
+     */
+    int getSharedComputations() {
+        return sharedComputations.get();
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * Counts an evaluation that was skipped because the network does not use
+     * this feature, see {@link LiveInputs}.
+     */
+    void skip() {
+        skips.increment();
+    }
+
+    public long getSkips() {
+        return skips.sum();
+    }
+
+    /**
+     * Estimates the time saved by skipped evaluations, from the average time
+     * of the evaluations that did run. Shared computations are not included,
+     * see {@link Features#printCosts()}. If every evaluation since the last
+     * {@link #resetCounters() reset} was skipped, the average from before the
+     * reset is used.
+     *
+     * @return the estimated nanoseconds saved, or 0 if this feature never ran
+     */
+    public long getEstimatedNanosSaved() {
+        long evaluated = getEvaluations();
+        long average = evaluated == 0 ? lastAverageNanos : getNanos() / evaluated;
+        return getSkips() * average;
+    }
+
+    public void resetCounters() {
+        long evaluated = getEvaluations();
+        if (evaluated != 0)
+            lastAverageNanos = getNanos() / evaluated;
+        evaluations.reset();
+        nanos.reset();
+        skips.reset();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
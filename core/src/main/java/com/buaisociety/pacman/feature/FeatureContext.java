@@ -0,0 +1,314 @@
+package com.buaisociety.pacman.feature;
+
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.Tile;
+import kotlin.Pair;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2i;
+
+import java.util.List;
+
+/**
+ * The state of 1 game that {@link Feature features} are evaluated against,
+ * with the expensive parts memoized for the current tick.
+ *
+ * <p>Directions are relative to where pacman is facing:
+ * {@link #FORWARD}, {@link #LEFT}, {@link #RIGHT} and {@link #BEHIND}. Path
+ * finding is only done the first time a feature needs it in a tick, and
+ * shared by every feature that needs it afterward (e.g. the 4 distances to
+ * the nearest pellet serve both the distance features and the "closest
+ * pellet" one-hot features). Call {@link #update(PacmanEntity)} at the start
+ * of every tick.
+ *
+ * <p>Each shared computation is timed as a {@link SharedComputation}, not as
+ * part of the feature that happened to need it first. The context also
+ * records which computations each feature uses, so
+ * {@link FeatureVector#compute(FeatureContext, float[], int, boolean[])} can
+ * tell which runs only dead inputs needed.
+ *
+ * <p>A context belongs to 1 game, so it must not be shared between threads.
+ */
+public class FeatureContext {
+
+    public static final int FORWARD = 0;
+    public static final int LEFT = 1;
+    public static final int RIGHT = 2;
+    public static final int BEHIND = 3;
+
+    // Bits of the computed mask
+    private static final int PELLET_DISTANCES = 1;
+    private static final int POWER_PELLET = 1 << 1;
+    private static final int FRUIT = 1 << 2;
+    private static final int GHOST_DISTANCE = 1 << 3;  // + relative direction
+    private static final int GHOST_AHEAD = 1 << 7;  // + relative direction
+
+    // Indexed by bit of the computed mask
+    private static final @NotNull SharedComputation[] COMPUTATIONS = {
+        new SharedComputation("pellet_distances"),
+        new SharedComputation("power_pellet_path"),
+        new SharedComputation("fruit_direction"),
+        new SharedComputation("ghost_distance_forward"),
+        new SharedComputation("ghost_distance_left"),
+        new SharedComputation("ghost_distance_right"),
+        new SharedComputation("ghost_distance_behind"),
+        new SharedComputation("ghost_ahead_forward"),
+        new SharedComputation("ghost_ahead_left"),
+        new SharedComputation("ghost_ahead_right"),
+        new SharedComputation("ghost_ahead_behind"),
+    };
+
+    private @Nullable PacmanEntity pacman;
+    private int tick = -1;
+    private int computed;
+    private int skipped;  // computations counted as skipped this tick
+    private int used;  // computations used since startFeature()
+    private long sharedNanos;  // time spent in shared computations, ever
+    private final @NotNull Direction[] directions = new Direction[4];
+
+    private final @NotNull int[] pelletDistances = new int[4];
+    private int nearestPelletDistance;
+    private final @NotNull int[] ghostDistances = new int[4];
+    private final @NotNull boolean[] ghostsAhead = new boolean[4];
+    private int powerPelletDistance;
+    private @Nullable Direction powerPelletDirection;
+    private @Nullable Direction fruitDirection;
+
+    /**
+     * Points this context at the given pacman for the current tick. Memoized
+     * values are kept if pacman has not moved on to the next tick.
+     *
+     * @param pacman the pacman to evaluate features for
+     */
+    public void update(@NotNull PacmanEntity pacman) {
+        if (pacman == this.pacman && pacman.getTicksAlive() == tick)
+            return;
+
+        this.pacman = pacman;
+        this.tick = pacman.getTicksAlive();
+        this.computed = 0;
+        this.skipped = 0;
+
+        Direction forward = pacman.getDirection();
+        directions[FORWARD] = forward;
+        directions[LEFT] = forward.left();
+        directions[RIGHT] = forward.right();
+        directions[BEHIND] = forward.behind();
+    }
+
+    /**
+     * Returns every shared computation, for {@link Features#printCosts()}.
+     *
+     * @return the shared computations
+     */
+    static @NotNull List<SharedComputation> getComputations() {
+        return List.of(COMPUTATIONS);
+    }
+
+    /**
+     * Starts recording which shared computations a feature uses, see
+     * {@link #getUsed()}.
+     */
+    void startFeature() {
+        used = 0;
+    }
+
+    /**
+     * Returns the shared computations used since {@link #startFeature()},
+     * whether they ran or were already memoized.
+     *
+     * @return a mask of computations
+     */
+    int getUsed() {
+        return used;
+    }
+
+    /**
+     * Returns the total time this context spent in shared computations, so
+     * features can leave it out of their own time.
+     *
+     * @return the time in nanoseconds
+     */
+    long getSharedNanos() {
+        return sharedNanos;
+    }
+
+    /**
+     * Counts the given computations as skipped this tick, unless they already
+     * ran (a live feature needed them) or were already counted.
+     *
+     * @param needed the computations needed by the dead features of this tick
+     */
+    void skipShared(int needed) {
+        int newlySkipped = needed & ~computed & ~skipped;
+        skipped |= newlySkipped;
+        for (int bits = newlySkipped; bits != 0; bits &= bits - 1)
+            COMPUTATIONS[Integer.numberOfTrailingZeros(bits)].skip();
+    }
+
+    private void finish(int bit, long start) {
+        long elapsed = System.nanoTime() - start;
+        sharedNanos += elapsed;
+        computed |= bit;
+
+        SharedComputation computation = COMPUTATIONS[Integer.numberOfTrailingZeros(bit)];
+        computation.record(elapsed);
+        if ((skipped & bit) != 0) {
+            skipped &= ~bit;
+            computation.unskip();
+        }
+    }
+
+    public @NotNull PacmanEntity getPacman() {
+        if (pacman == null)
+            throw new IllegalStateException("Call update() first");
+        return pacman;
+    }
+
+    public @NotNull Maze getMaze() {
+        return getPacman().getMaze();
+    }
+
+    /**
+     * Returns the absolute direction of the given relative direction.
+     *
+     * @param relative {@link #FORWARD}, {@link #LEFT}, {@link #RIGHT} or {@link #BEHIND}
+     * @return the absolute direction
+     */
+    public @NotNull Direction getDirection(int relative) {
+        getPacman();
+        return directions[relative];
+    }
+
+    /**
+     * Returns the number of steps to the nearest pellet when starting in the
+     * given direction, see {@link PacmanEntity#getDistanceToNearestPellet(Direction)}.
+     * The first call in a tick computes all 4 directions.
+     *
+     * @param relative the relative direction
+     * @return the distance, or {@link Integer#MAX_VALUE}
+     */
+    public int getPelletDistance(int relative) {
+        computePelletDistances();
+        return pelletDistances[relative];
+    }
+
+    /**
+     * Returns true if the given direction leads to the nearest pellet. Ties
+     * are true for every direction involved.
+     *
+     * @param relative the relative direction
+     * @return true if the nearest pellet is that way
+     */
+    public boolean isNearestPellet(int relative) {
+        computePelletDistances();
+        return pelletDistances[relative] == nearestPelletDistance;
+    }
+
+    private void computePelletDistances() {
+        used |= PELLET_DISTANCES;
+        if ((computed & PELLET_DISTANCES) != 0)
+            return;
+
+        long start = System.nanoTime();
+        PacmanEntity pacman = getPacman();
+        int nearest = Integer.MAX_VALUE;
+        for (int relative = 0; relative < 4; relative++) {
+            pelletDistances[relative] = pacman.getDistanceToNearestPellet(directions[relative]);
+            nearest = Math.min(nearest, pelletDistances[relative]);
+        }
+        nearestPelletDistance = nearest;
+        finish(PELLET_DISTANCES, start);
+    }
+
+    /**
+     * Returns the number of steps to the nearest ghost when starting in the
+     * given direction, see {@link PacmanEntity#getDistanceToNearestGhost(Direction)}.
+     *
+     * @param relative the relative direction
+     * @return the distance, or {@link Integer#MAX_VALUE}
+     */
+    public int getGhostDistance(int relative) {
+        int bit = GHOST_DISTANCE << relative;
+        used |= bit;
+        if ((computed & bit) == 0) {
+            long start = System.nanoTime();
+            ghostDistances[relative] = getPacman().getDistanceToNearestGhost(directions[relative]);
+            finish(bit, start);
+        }
+        return ghostDistances[relative];
+    }
+
+    /**
+     * Returns true if there is a ghost in the hallway in the given direction,
+     * see {@link PacmanEntity#dfsCheckForGhost(Direction)}.
+     *
+     * @param relative the relative direction
+     * @return true if a ghost is that way
+     */
+    public boolean isGhostAhead(int relative) {
+        int bit = GHOST_AHEAD << relative;
+        used |= bit;
+        if ((computed & bit) == 0) {
+            long start = System.nanoTime();
+            ghostsAhead[relative] = getPacman().dfsCheckForGhost(directions[relative]);
+            finish(bit, start);
+        }
+        return ghostsAhead[relative];
+    }
+
+    /**
+     * Returns the number of steps to the nearest power pellet.
+     *
+     * @return the distance, or {@link Integer#MAX_VALUE}
+     */
+    public int getPowerPelletDistance() {
+        computePowerPellet();
+        return powerPelletDistance;
+    }
+
+    /**
+     * Returns the absolute direction of the first step towards the nearest
+     * power pellet.
+     *
+     * @return the direction, or null if there is no reachable power pellet
+     */
+    public @Nullable Direction getPowerPelletDirection() {
+        computePowerPellet();
+        return powerPelletDirection;
+    }
+
+    private void computePowerPellet() {
+        used |= POWER_PELLET;
+        if ((computed & POWER_PELLET) != 0)
+            return;
+
+        long start = System.nanoTime();
+        Pair<Integer, Direction> nearest = getPacman().getDistanceAndDirectionToNearestPelletAndGhost();
+        powerPelletDistance = nearest.getFirst();
+        powerPelletDirection = nearest.getSecond();
+        finish(POWER_PELLET, start);
+    }
+
+    /**
+     * Returns the rough absolute direction of the fruit, see
+     * {@link Tile#getDirectionTo(Tile)}.
+     *
+     * @return the direction, or null if there is no fruit
+     */
+    public @Nullable Direction getFruitDirection() {
+        used |= FRUIT;
+        if ((computed & FRUIT) == 0) {
+            long start = System.nanoTime();
+            Maze maze = getMaze();
+            Vector2i fruitPosition = maze.getFruitPosition();
+            fruitDirection = fruitPosition == null
+                ? null
+                : getPacman().getTile().getDirectionTo(maze.getTile(fruitPosition));
+            finish(FRUIT, start);
+        }
+        return fruitDirection;
+    }
+}
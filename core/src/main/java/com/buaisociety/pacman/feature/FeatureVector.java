@@ -0,0 +1,108 @@
+package com.buaisociety.pacman.feature;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The inputs of a neural network, as an ordered list of {@link Feature features}.
+ *
+ * <p>Behaviors declare their input vector once, e.g.
+ * <pre>{@code
+ * FeatureVector inputs = new FeatureVector(Features.CAN_MOVE, Features.GHOST_AHEAD);
+ * }</pre>
+ * and then {@link #compute(FeatureContext, float[]) compute} it every tick.
+ * Only the declared features are evaluated, so features nobody asks for
+ * cost nothing.
+ */
+public final class FeatureVector {
+
+    private final @NotNull Feature[] features;
+
+    public FeatureVector(@NotNull Feature... features) {
+        this.features = features.clone();
+    }
+
+    /**
+     * Creates a vector from groups of features, e.g. the 4 directions of
+     * {@link Features#CAN_MOVE}, in order.
+     *
+     * @param groups the groups of features
+     */
+    public FeatureVector(@NotNull Feature[]... groups) {
+        this.features = Arrays.stream(groups).flatMap(Arrays::stream).toArray(Feature[]::new);
+    }
+
+    /**
+     * Returns the number of inputs.
+     *
+     * @return the number of inputs
+     */
+    public int size() {
+        return features.length;
+    }
+
+    public @NotNull Feature get(int input) {
+        return features[input];
+    }
+
+    public @NotNull List<Feature> getFeatures() {
+        return List.of(features);
+    }
+
+    /**
+     * Evaluates every feature into <code>dest</code>.
+     *
+     * @param context the game to evaluate the features for, already {@link FeatureContext#update updated}
+     * @param dest the array to write the inputs to, at least {@link #size()} long
+     * @return <code>dest</code>
+     */
+    public @NotNull float[] compute(@NotNull FeatureContext context, @NotNull float[] dest) {
+        return compute(context, dest, null);
+    }
+
+    /**
+     * Evaluates the live features into <code>dest</code>, and writes 0 for
+     * the rest. Inputs with no path to an output (see {@link LiveInputs}) do
+     * not change the network's outputs, so their features are not worth
+     * computing.
+     *
+     * @param context the game to evaluate the features for, already {@link FeatureContext#update updated}
+     * @param dest the array to write the inputs to, at least {@link #size()} long
+     * @param live which inputs to evaluate, or null to evaluate all of them
+     * @return <code>dest</code>
+     */
+    public @NotNull float[] compute(@NotNull FeatureContext context, @NotNull float[] dest, @Nullable boolean[] live) {
+        return compute(context, dest, 0, live);
+    }
+
+    /**
+     * Evaluates the live features into <code>dest</code>, starting at
+     * <code>offset</code>, e.g. to fill 1 row of a batch of observations.
+     *
+     * @param context the game to evaluate the features for, already {@link FeatureContext#update updated}
+     * @param dest the array to write the inputs to
+     * @param offset the index in <code>dest</code> of the first input
+     * @param live which inputs to evaluate, or null to evaluate all of them
+     * @return <code>dest</code>
+     */
+    public @NotNull float[] compute(@NotNull FeatureContext context, @NotNull float[] dest, int offset, @Nullable boolean[] live) {
+        int skippedNeeds = 0;
+        for (int i = 0; i < features.length; i++) {
+            if (live == null || live[i]) {
+                dest[offset + i] = features[i].evaluate(context);
+            } else {
+                dest[offset + i] = 0f;
+                features[i].skip();
+                skippedNeeds |= features[i].getSharedComputations();
+            }
+        }
+
+        // Only after the live features, which may need the same computations
+        if (skippedNeeds != 0)
+            context.skipShared(skippedNeeds);
+        return dest;
+    }
+}
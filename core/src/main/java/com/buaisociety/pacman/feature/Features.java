@@ -0,0 +1,186 @@
+package com.buaisociety.pacman.feature;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The registry of every {@link Feature} that can be fed to pacman's neural
+ * network. Behaviors pick the features they want with a {@link FeatureVector}
+ * and only pay for those.
+ *
+ * <p>Directional features come in groups of 4, relative to where pacman is
+ * facing: forward, left, right, and behind (in that order, matching the
+ * outputs of the network).
+ */
+public final class Features {
+
+    private static final @NotNull Map<String, Feature> BY_NAME = new LinkedHashMap<>();
+    private static final @NotNull List<Feature> ALL = new ArrayList<>();
+    private static final @NotNull String[] RELATIVE_NAMES = {"forward", "left", "right", "behind"};
+
+    public static final @NotNull Feature[] CAN_MOVE = registerRelative("can_move",
+        (context, relative) -> bool(context.getPacman().canMove(context.getDirection(relative))));
+
+    public static final @NotNull Feature[] PELLET_DISTANCE = registerRelative("pellet_distance",
+        (context, relative) -> context.getPelletDistance(relative));
+
+    public static final @NotNull Feature[] NEAREST_PELLET = registerRelative("nearest_pellet",
+        (context, relative) -> bool(context.isNearestPellet(relative)));
+
+    public static final @NotNull Feature[] GHOST_DISTANCE = registerRelative("ghost_distance",
+        (context, relative) -> context.getGhostDistance(relative));
+
+    public static final @NotNull Feature[] GHOST_AHEAD = registerRelative("ghost_ahead",
+        (context, relative) -> bool(context.isGhostAhead(relative)));
+
+    public static final @NotNull Feature[] FRUIT = registerRelative("fruit",
+        (context, relative) -> bool(context.getFruitDirection() == context.getDirection(relative)));
+
+    public static final @NotNull Feature[] POWER_PELLET = registerRelative("power_pellet",
+        (context, relative) -> bool(context.getPowerPelletDirection() == context.getDirection(relative)));
+
+    public static final @NotNull Feature POWER_PELLET_DISTANCE = register("power_pellet_distance",
+        FeatureContext::getPowerPelletDistance);
+
+    /**
+     * True when a ghost is less than 5 steps away in any direction.
+     */
+    public static final @NotNull Feature SHOULD_EAT_POWER_PELLET = register("should_eat_power_pellet", context -> {
+        for (int relative = 0; relative < 4; relative++) {
+            if (context.getGhostDistance(relative) < 5)
+                return 1f;
+        }
+        return 0f;
+    });
+
+    public static final @NotNull Feature SUPER_MODE = register("super_mode",
+        context -> bool(context.getPacman().isInSuperMode()));
+
+    public static final @NotNull Feature PELLETS_REMAINING = register("pellets_remaining",
+        context -> context.getMaze().getPelletsRemaining());
+
+    private Features() {
+    }
+
+    /**
+     * Computes a directional feature, see {@link #registerRelative(String, RelativeEvaluator)}.
+     */
+    @FunctionalInterface
+    public interface RelativeEvaluator {
+        float evaluate(@NotNull FeatureContext context, int relative);
+    }
+
+    /**
+     * Registers a new feature.
+     *
+     * @param name the unique name of the feature
+     * @param evaluator computes the feature
+     * @return the registered feature
+     * @throws IllegalArgumentException if the name is already registered
+     */
+    public static synchronized @NotNull Feature register(@NotNull String name, @NotNull Feature.Evaluator evaluator) {
+        if (BY_NAME.containsKey(name))
+            throw new IllegalArgumentException("Feature " + name + " is already registered");
+
+        Feature feature = new Feature(name, ALL.size(), evaluator);
+        BY_NAME.put(name, feature);
+        ALL.add(feature);
+        return feature;
+    }
+
+    /**
+     * Registers 4 features named <code>name_forward</code>, <code>name_left</code>,
+     * <code>name_right</code> and <code>name_behind</code>.
+     *
+     * @param name the prefix of the feature names
+     * @param evaluator computes the feature for a relative direction, see {@link FeatureContext#FORWARD}
+     * @return the registered features, indexed by relative direction
+     */
+    public static @NotNull Feature[] registerRelative(@NotNull String name, @NotNull RelativeEvaluator evaluator) {
+        Feature[] features = new Feature[RELATIVE_NAMES.length];
+        for (int relative = 0; relative < RELATIVE_NAMES.length; relative++) {
+            int captured = relative;
+            features[relative] = register(name + "_" + RELATIVE_NAMES[relative], context -> evaluator.evaluate(context, captured));
+        }
+        return features;
+    }
+
+    /**
+     * Returns the feature with the given name.
+     *
+     * @param name the name of the feature
+     * @return the feature, or null if there is none
+     */
+    public static synchronized @Nullable Feature get(@NotNull String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * Returns every registered feature, in the order they were registered.
+     *
+     * @return every feature
+     */
+    public static synchronized @NotNull List<Feature> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(ALL));
+    }
+
+    /**
+     * Prints how often each feature was evaluated and how long it took, most
+     * expensive first, then the same for the shared computations of
+     * {@link FeatureContext}, and how much time skipping dead inputs (see
+     * {@link LiveInputs}) saved. A shared computation only counts as saved
+     * when no live feature needed it that tick. Anything that was never used
+     * is left out.
+     */
+    public static void printCosts() {
+        List<Feature> features = new ArrayList<>(getAll());
+        features.removeIf(feature -> feature.getEvaluations() == 0 && feature.getSkips() == 0);
+        features.sort((a, b) -> Long.compare(b.getNanos(), a.getNanos()));
+
+        long totalNanos = 0;
+        long totalSaved = 0;
+        System.out.println("Feature costs:");
+        for (Feature feature : features) {
+            long evaluations = feature.getEvaluations();
+            System.out.printf("  %-28s %12d evaluations %10.1f ms %8.0f ns each %12d skipped%n",
+                feature.getName(), evaluations, feature.getNanos() / 1e6,
+                evaluations == 0 ? 0.0 : (double) feature.getNanos() / evaluations, feature.getSkips());
+            totalNanos += feature.getNanos();
+            totalSaved += feature.getEstimatedNanosSaved();
+        }
+
+        List<SharedComputation> computations = new ArrayList<>(FeatureContext.getComputations());
+        computations.removeIf(computation -> computation.getRuns() == 0 && computation.getSkips() == 0);
+        computations.sort((a, b) -> Long.compare(b.getNanos(), a.getNanos()));
+        System.out.println("Shared computations:");
+        for (SharedComputation computation : computations) {
+            long runs = computation.getRuns();
+            System.out.printf("  %-28s %12d runs        %10.1f ms %8.0f ns each %12d skipped%n",
+                computation.getName(), runs, computation.getNanos() / 1e6,
+                runs == 0 ? 0.0 : (double) computation.getNanos() / runs, computation.getSkips());
+            totalNanos += computation.getNanos();
+            totalSaved += computation.getEstimatedNanosSaved();
+        }
+        System.out.printf("  Total %.1f ms, skipping dead inputs saved about %.1f ms%n", totalNanos / 1e6, totalSaved / 1e6);
+    }
+
+    /**
+     * Resets the counters of every feature and shared computation.
+     */
+    public static void resetCosts() {
+        for (Feature feature : getAll())
+            feature.resetCounters();
+        for (SharedComputation computation : FeatureContext.getComputations())
+            computation.resetCounters();
+    }
+
+    private static float bool(boolean value) {
+        return value ? 1f : 0f;
+    }
+}
@@ -0,0 +1,82 @@
+package com.buaisociety.pacman.feature;
+
+import com.cjcrafter.neat.genome.ConnectionGene;
+import com.cjcrafter.neat.genome.Genome;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the inputs of a genome that can affect its outputs.
+ *
+ * <p>Evolved genomes often have inputs with no enabled connection, or whose
+ * connections only lead to hidden nodes that never reach an output. The
+ * value of those inputs cannot change what the network does, so
+ * {@link FeatureVector#compute(FeatureContext, float[], boolean[])} skips
+ * the features behind them. A genome only changes when the population
+ * evolves, so this is computed once per client per generation.
+ *
+ * <p>neat4j numbers the input nodes first, <code>0..inputs-1</code>,
+ * followed by the output nodes.
+ */
+public final class LiveInputs {
+
+    private LiveInputs() {
+    }
+
+    /**
+     * Returns which inputs have a path of enabled connections to an output.
+     *
+     * @param genome the genome to analyze
+     * @param inputs the number of input nodes
+     * @param outputs the number of output nodes
+     * @return <code>true</code> for each input that can affect an output
+     */
+    public static @NotNull boolean[] analyze(@NotNull Genome genome, int inputs, int outputs) {
+        // Walk backwards from the outputs along enabled connections
+        Map<Integer, List<Integer>> incoming = new HashMap<>();
+        for (ConnectionGene connection : genome.getConnections()) {
+            if (connection.getEnabled())
+                incoming.computeIfAbsent(connection.getToId(), id -> new ArrayList<>()).add(connection.getFromId());
+        }
+
+        Set<Integer> reached = new HashSet<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int output = inputs; output < inputs + outputs; output++) {
+            reached.add(output);
+            queue.add(output);
+        }
+        while (!queue.isEmpty()) {
+            for (int from : incoming.getOrDefault(queue.poll(), List.of())) {
+                if (reached.add(from))
+                    queue.add(from);
+            }
+        }
+
+        boolean[] live = new boolean[inputs];
+        for (int input = 0; input < inputs; input++)
+            live[input] = reached.contains(input);
+        return live;
+    }
+
+    /**
+     * Returns the number of live inputs.
+     *
+     * @param live the result of {@link #analyze(Genome, int, int)}
+     * @return the number of <code>true</code> values
+     */
+    public static int count(@NotNull boolean[] live) {
+        int count = 0;
+        for (boolean input : live) {
+            if (input)
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,87 @@
+package com.buaisociety.pacman.feature;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An expensive part of a {@link FeatureContext} (e.g. the 4 pellet searches)
+ * that is computed at most once per tick and shared by every feature that
+ * needs it. Like {@link Feature}, it counts its runs and their time across
+ * every game and thread.
+ *
+ * <p>A run is skipped when the only features that need it that tick are dead
+ * inputs (see {@link LiveInputs}). If a live feature needs it too, it runs
+ * anyway, and skipping the dead ones saved nothing.
+ */
+final class SharedComputation {
+
+    private final @NotNull String name;
+    private final @NotNull LongAdder runs = new LongAdder();
+    private final @NotNull LongAdder nanos = new LongAdder();
+    private final @NotNull LongAdder skips = new LongAdder();
+    private volatile long lastAverageNanos;  // from before the last reset, for computations that are always skipped
+
+    SharedComputation(@NotNull String name) {
+        this.name = name;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    void record(long elapsed) {
+        nanos.add(elapsed);
+        runs.increment();
+    }
+
+    void skip() {
+        skips.increment();
+    }
+
+    /**
+     * Takes back a {@link #skip()} counted earlier in the tick, when a later
+     * live feature needed the computation after all.
+     */
+    void unskip() {
+        skips.decrement();
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    public long getSkips() {
+        return skips.sum();
+    }
+
+    /**
+     * Estimates the time saved by skipped runs, the same way as
+     * {@link Feature#getEstimatedNanosSaved()}.
+     *
+     * @return the estimated nanoseconds saved, or 0 if this never ran
+     */
+    public long getEstimatedNanosSaved() {
+        long ran = getRuns();
+        long average = ran == 0 ? lastAverageNanos : getNanos() / ran;
+        return getSkips() * average;
+    }
+
+    public void resetCounters() {
+        long ran = getRuns();
+        if (ran != 0)
+            lastAverageNanos = getNanos() / ran;
+        runs.reset();
+        nanos.reset();
+        skips.reset();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,263 @@
+package com.buaisociety.pacman.maze;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of tiles in a maze, stored as 1 bit per tile. Bit
+ * <code>y * width + x</code> is the tile at (x, y), the same index as
+ * {@link MazeTemplate#index(int, int)}. A 28x36 maze fits in 16 longs.
+ *
+ * <p>Since every tile is a bit, set operations work on 64 tiles at once, and
+ * {@link #neighbors(Bitboard)} moves every tile in the set 1 step in every
+ * direction with a few shifts. This makes flood fills (see
+ * {@link BitboardPathFinder}) expand a whole layer at a time.
+ */
+public final class Bitboard {
+
+    private static final @NotNull Map<Integer, Masks> MASKS = new ConcurrentHashMap<>();
+
+    private final int width;
+    private final int height;
+    private final int size;
+    private final @NotNull long[] words;
+    private final @NotNull Masks masks;
+
+    public Bitboard(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.words = new long[(size + 63) >>> 6];
+        this.masks = MASKS.computeIfAbsent(width << 16 | height, key -> new Masks(width, height));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean get(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public void set(int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    public void clear(int index) {
+        words[index >>> 6] &= ~(1L << index);
+    }
+
+    public void set(int index, boolean value) {
+        if (value)
+            set(index);
+        else
+            clear(index);
+    }
+
+    /**
+     * Removes every tile from this set.
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    public void copyFrom(@NotNull Bitboard other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    public void or(@NotNull Bitboard other) {
+        for (int i = 0; i < words.length; i++)
+            words[i] |= other.words[i];
+    }
+
+    public void and(@NotNull Bitboard other) {
+        for (int i = 0; i < words.length; i++)
+            words[i] &= other.words[i];
+    }
+
+    public void andNot(@NotNull Bitboard other) {
+        for (int i = 0; i < words.length; i++)
+            words[i] &= ~other.words[i];
+    }
+
+    /**
+     * Returns true if at least 1 tile is in both sets.
+     *
+     * @param other the other set
+     * @return true if the sets overlap
+     */
+    public boolean intersects(@NotNull Bitboard other) {
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & other.words[i]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of tiles in this set.
+     *
+     * @return the number of tiles
+     */
+    public int popCount() {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Returns the index of the first tile in this set at or after the given
+     * index, or -1 if there is none.
+     *
+     * @param from the index to start from
+     * @return the index of the next tile, or -1
+     */
+    public int nextSetBit(int from) {
+        int i = from >>> 6;
+        if (i >= words.length)
+            return -1;
+
+        long word = words[i] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            if (++i == words.length)
+                return -1;
+            word = words[i];
+        }
+    }
+
+    /**
+     * Sets <code>dest</code> to every tile 1 step up, down, left, or right of a
+     * tile in this set, wrapping around the edges of the maze like
+     * {@link Maze#getTile(int, int)}. Walls are not considered, so callers
+     * usually {@link #and(Bitboard)} the result with the passable tiles.
+     *
+     * @param dest the set to write the neighbors to. Must not be this set
+     */
+    public void neighbors(@NotNull Bitboard dest) {
+        if (dest == this)
+            throw new IllegalArgumentException("dest must be a different bitboard");
+
+        long[] out = dest.words;
+        Arrays.fill(out, 0L);
+        orShifted(words, null, width, out);  // up
+        orShifted(words, null, -width, out);  // down
+        orShifted(words, masks.notLastColumn, 1, out);  // right
+        orShifted(words, masks.notFirstColumn, -1, out);  // left
+
+        // Wrap around the edges
+        orShifted(words, masks.lastRow, -(size - width), out);  // up from the top row
+        orShifted(words, masks.firstRow, size - width, out);  // down from the bottom row
+        orShifted(words, masks.lastColumn, -(width - 1), out);  // right from the last column
+        orShifted(words, masks.firstColumn, width - 1, out);  // left from the first column
+
+        out[out.length - 1] &= masks.lastWord;
+    }
+
+    // dest |= (src & mask) shifted towards higher indices by shift (or lower, if negative)
+    private static void orShifted(@NotNull long[] src, @Nullable long[] mask, int shift, @NotNull long[] dest) {
+        int length = src.length;
+        if (shift >= 0) {
+            int wordShift = shift >>> 6;
+            int bitShift = shift & 63;
+            for (int i = length - 1; i >= wordShift; i--) {
+                int j = i - wordShift;
+                long value = word(src, mask, j) << bitShift;
+                if (bitShift != 0 && j > 0)
+                    value |= word(src, mask, j - 1) >>> (64 - bitShift);
+                dest[i] |= value;
+            }
+        } else {
+            int wordShift = -shift >>> 6;
+            int bitShift = -shift & 63;
+            for (int i = 0; i < length - wordShift; i++) {
+                int j = i + wordShift;
+                long value = word(src, mask, j) >>> bitShift;
+                if (bitShift != 0 && j + 1 < length)
+                    value |= word(src, mask, j + 1) << (64 - bitShift);
+                dest[i] |= value;
+            }
+        }
+    }
+
+    private static long word(@NotNull long[] src, @Nullable long[] mask, int i) {
+        return mask == null ? src[i] : src[i] & mask[i];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Bitboard other)) return false;
+        return width == other.width && height == other.height && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    /**
+     * The rows and columns of a maze size, shared by every bitboard of that
+     * size.
+     */
+    private static final class Masks {
+        private final @NotNull long[] firstColumn;
+        private final @NotNull long[] lastColumn;
+        private final @NotNull long[] notFirstColumn;
+        private final @NotNull long[] notLastColumn;
+        private final @NotNull long[] firstRow;
+        private final @NotNull long[] lastRow;
+        private final long lastWord;
+
+        private Masks(int width, int height) {
+            int size = width * height;
+            int length = (size + 63) >>> 6;
+            firstColumn = new long[length];
+            lastColumn = new long[length];
+            notFirstColumn = new long[length];
+            notLastColumn = new long[length];
+            firstRow = new long[length];
+            lastRow = new long[length];
+
+            for (int index = 0; index < size; index++) {
+                int x = index % width;
+                int y = index / width;
+                long bit = 1L << index;
+                int word = index >>> 6;
+                if (x == 0)
+                    firstColumn[word] |= bit;
+                else
+                    notFirstColumn[word] |= bit;
+                if (x == width - 1)
+                    lastColumn[word] |= bit;
+                else
+                    notLastColumn[word] |= bit;
+                if (y == 0)
+                    firstRow[word] |= bit;
+                if (y == height - 1)
+                    lastRow[word] |= bit;
+            }
+
+            int used = size & 63;
+            lastWord = used == 0 ? -1L : (1L << used) - 1;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.metrics.PathQueryEvent;
+import com.buaisociety.pacman.util.EventSystem;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Finds distances in a maze by flood-filling {@link Bitboard bitboards}.
+ *
+ * <p>Instead of visiting tiles 1 at a time like {@link ShortestPathFinder},
+ * each step expands the whole frontier by 1 tile with
+ * {@link Bitboard#neighbors(Bitboard)}, so a query costs a few dozen long
+ * operations per step of distance. The scratch bitboards are reused between
+ * queries, so queries do not allocate, and a path finder must not be shared
+ * between threads.
+ */
+public class BitboardPathFinder {
+
+    private final @NotNull Maze maze;
+    private @NotNull Bitboard frontier;
+    private @NotNull Bitboard next;
+    private final @NotNull Bitboard visited;
+
+    public BitboardPathFinder(@NotNull Maze maze) {
+        this.maze = maze;
+        int width = maze.getTemplate().getWidth();
+        int height = maze.getTemplate().getHeight();
+        this.frontier = new Bitboard(width, height);
+        this.next = new Bitboard(width, height);
+        this.visited = new Bitboard(width, height);
+    }
+
+    /**
+     * Returns the number of steps from the start tile to the nearest target
+     * tile, only walking on {@link TileState#isPassable() passable} tiles.
+     *
+     * @param startIndex the index of the tile to start from
+     * @param targets the tiles to find
+     * @return the distance to the nearest target, or {@link Integer#MAX_VALUE} if none are reachable
+     */
+    public int distanceToNearest(int startIndex, @NotNull Bitboard targets) {
+        PathQueryEvent event = new PathQueryEvent();
+        event.begin();
+        int distance = search(startIndex, targets);
+        if (event.isRecorded())
+            event.end("BitboardPathFinder", describe(targets), distance == 0 ? 1 : visited.popCount(), distance);
+        return distance;
+    }
+
+    private int search(int startIndex, @NotNull Bitboard targets) {
+        if (targets.get(startIndex))
+            return 0;
+
+        Bitboard passable = maze.getPassableBoard();
+        frontier.clear();
+        frontier.set(startIndex);
+        visited.copyFrom(frontier);
+
+        int distance = 0;
+        while (true) {
+            frontier.neighbors(next);
+            next.and(passable);
+            next.andNot(visited);
+            if (next.isEmpty())
+                return Integer.MAX_VALUE;
+
+            distance++;
+            if (next.intersects(targets))
+                return distance;
+
+            visited.or(next);
+            Bitboard temp = frontier;
+            frontier = next;
+            next = temp;
+        }
+    }
+
+    private @NotNull String describe(@NotNull Bitboard targets) {
+        if (targets == maze.getPelletBoard())
+            return "pellet";
+        if (targets == maze.getPowerPelletBoard())
+            return "power_pellet";
+        if (targets == maze.peekGhostBoard())
+            return "ghost";
+        return "other";
+    }
+
+    /**
+     * Returns the number of steps from the tile next to the given tile to the
+     * nearest target tile. This matches {@link ShortestPathFinder}, which is
+     * called with the neighbor in the direction pacman is considering.
+     *
+     * @param tileX the x-coordinate of the tile
+     * @param tileY the y-coordinate of the tile
+     * @param direction the direction of the tile to start from
+     * @param targets the tiles to find
+     * @return the distance to the nearest target, or {@link Integer#MAX_VALUE} if the neighbor is a wall or none are reachable
+     */
+    public int distanceToNearest(int tileX, int tileY, @NotNull Direction direction, @NotNull Bitboard targets) {
+        MazeTemplate template = maze.getTemplate();
+        int start = template.getNeighbor(template.index(tileX, tileY), direction);
+        if (!maze.getPassableBoard().get(start))
+            return Integer.MAX_VALUE;
+        return distanceToNearest(start, targets);
+    }
+
+    /**
+     * Compares this path finder against {@link ShortestPathFinder} on every
+     * passable tile and direction of the first maze, with most of the pellets
+     * eaten so the searches are not trivially short.
+     *
+     * @param args the number of rounds to time, default 20
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        GameManager manager = new GameManager(new EventSystem(), new GameManager.Config());
+        manager.nextLevel();
+        Maze maze = manager.getCurrentMaze();
+        MazeTemplate template = maze.getTemplate();
+
+        // Leave every 16th pellet, so the nearest pellet is usually a few tiles away
+        int pellets = 0;
+        for (int i = 0; i < template.getArea(); i++) {
+            TileState state = maze.getTileState(i);
+            if (state == TileState.PELLET && pellets++ % 16 != 0)
+                maze.setTileState(i, TileState.SPACE);
+        }
+
+        ShortestPathFinder reference = new ShortestPathFinder(new MazeGraph(maze));
+        BitboardPathFinder pathFinder = maze.getPathFinder();
+        Bitboard pelletBoard = maze.getPelletBoard();
+        Bitboard ghostBoard = maze.getGhostBoard();
+
+        int queries = 0;
+        for (int i = 0; i < template.getArea(); i++) {
+            if (!maze.getTileState(i).isPassable())
+                continue;
+            for (Direction direction : Direction.values()) {
+                int neighbor = template.getNeighbor(i, direction);
+                Tile tile = maze.getTile(template.getPosition(neighbor).x(), template.getPosition(neighbor).y());
+                boolean passable = tile.getState().isPassable();
+                int expectedPellet = passable ? reference.getDistanceToNearestPellet(tile) : Integer.MAX_VALUE;
+                int expectedGhost = passable ? reference.getDistanceToNearestGhost(tile) : Integer.MAX_VALUE;
+                int actualPellet = pathFinder.distanceToNearest(i % template.getWidth(), i / template.getWidth(), direction, pelletBoard);
+                int actualGhost = pathFinder.distanceToNearest(i % template.getWidth(), i / template.getWidth(), direction, ghostBoard);
+                if (expectedPellet != actualPellet || expectedGhost != actualGhost)
+                    throw new IllegalStateException("Mismatch at " + template.getPosition(i) + " " + direction
+                        + ": pellet " + expectedPellet + " vs " + actualPellet + ", ghost " + expectedGhost + " vs " + actualGhost);
+                queries += 2;
+            }
+        }
+        System.out.println("Both path finders agree on " + queries + " queries");
+
+        long referenceNanos = 0;
+        long bitboardNanos = 0;
+        long checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < template.getArea(); i++) {
+                if (!maze.getTileState(i).isPassable())
+                    continue;
+                Tile tile = maze.getTile(i % template.getWidth(), i / template.getWidth());
+                checksum += reference.getDistanceToNearestPellet(tile);
+                checksum += reference.getDistanceToNearestGhost(tile);
+            }
+            referenceNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < template.getArea(); i++) {
+                if (!maze.getTileState(i).isPassable())
+                    continue;
+                checksum -= pathFinder.distanceToNearest(i, pelletBoard);
+                checksum -= pathFinder.distanceToNearest(i, maze.getGhostBoard());
+            }
+            bitboardNanos += System.nanoTime() - start;
+        }
+
+        System.out.printf("ShortestPathFinder: %.1f us/round, BitboardPathFinder: %.1f us/round (%.1fx), checksum %d%n",
+            referenceNanos / 1e3 / rounds, bitboardNanos / 1e3 / rounds,
+            (double) referenceNanos / bitboardNanos, checksum);
+    }
+}
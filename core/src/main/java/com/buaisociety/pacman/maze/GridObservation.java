@@ -0,0 +1,164 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.FruitEntity;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.GhostState;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * The maze as a <code>channels x height x width</code> grid of floats, for
+ * convolutional networks, kept in a direct {@link FloatBuffer}.
+ *
+ * <p>Cell <code>(x, y)</code> of channel <code>c</code> is at
+ * <code>c * height * width + y * width + x</code>, the same tile index as
+ * {@link MazeTemplate#index(int, int)}. Tile channels are 1 or 0. Entity
+ * channels count the entities on the tile, so 2 frightened ghosts on the
+ * same tile are a 2.
+ *
+ * <p>Rebuilding the grid every tick would cost the size of the maze. Instead,
+ * the maze writes tile changes through as they happen (see
+ * {@link Maze#setTileState(int, TileState)}), and {@link #update()} only
+ * moves the entities whose tile or state changed since the last update.
+ * Either way, only the cells that changed are written.
+ */
+public class GridObservation {
+
+    public static final int WALLS = 0;
+    public static final int PELLETS = 1;
+    public static final int POWER_PELLETS = 2;
+    public static final int PACMAN = 3;
+    public static final int GHOSTS = 4;  // 1 channel per GhostState, in ordinal order
+    public static final int FRUIT = GHOSTS + GhostState.values().length;
+    public static final int CHANNELS = FRUIT + 1;
+
+    private static final int PACMAN_SLOT = 0;
+    private static final int FRUIT_SLOT = 1;
+    private static final int GHOST_SLOTS = 2;
+
+    private final @NotNull Maze maze;
+    private final int width;
+    private final int height;
+    private final int cells;
+    private final @NotNull FloatBuffer buffer;
+
+    // Where each entity was written by the last update, or -1 if it was not.
+    // Slots are pacman, the fruit, then the ghosts in spawn order.
+    private @NotNull int[] lastChannel = new int[GHOST_SLOTS];
+    private @NotNull int[] lastCell = new int[GHOST_SLOTS];
+
+    GridObservation(@NotNull Maze maze) {
+        this.maze = maze;
+        this.width = maze.getTemplate().getWidth();
+        this.height = maze.getTemplate().getHeight();
+        this.cells = width * height;
+        this.buffer = ByteBuffer.allocateDirect(CHANNELS * cells * Float.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+        Arrays.fill(lastChannel, -1);
+        Arrays.fill(lastCell, -1);
+        rebuildTiles();
+        update();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the grid, without syncing the entities. Call {@link #update()}
+     * first to include this tick's movement. The buffer is reused for the
+     * whole maze, so it can be handed to a tensor library once.
+     *
+     * @return the grid, <code>CHANNELS * height * width</code> floats
+     */
+    public @NotNull FloatBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Moves every entity that changed tile or state since the last update,
+     * and returns the grid.
+     *
+     * @return the grid, see {@link #getBuffer()}
+     */
+    public @NotNull FloatBuffer update() {
+        GhostEntity[] ghosts = maze.getGhosts();
+        if (lastCell.length != GHOST_SLOTS + ghosts.length) {
+            // Ghosts only spawn when the level starts, so this rarely happens
+            clearEntities();
+            lastChannel = new int[GHOST_SLOTS + ghosts.length];
+            lastCell = new int[GHOST_SLOTS + ghosts.length];
+            Arrays.fill(lastChannel, -1);
+            Arrays.fill(lastCell, -1);
+        }
+
+        PacmanEntity pacman = maze.findPacman();
+        sync(PACMAN_SLOT, pacman, PACMAN);
+        FruitEntity fruit = maze.getFruit();
+        sync(FRUIT_SLOT, fruit, FRUIT);
+        for (int i = 0; i < ghosts.length; i++)
+            sync(GHOST_SLOTS + i, ghosts[i], GHOSTS + ghosts[i].getState().ordinal());
+        return buffer;
+    }
+
+    private void sync(int slot, @Nullable Entity entity, int channel) {
+        int cell = entity == null || entity.isRemove() ? -1 : maze.getTemplate().index(entity.getTileX(), entity.getTileY());
+        if (cell == -1)
+            channel = -1;
+        if (cell == lastCell[slot] && channel == lastChannel[slot])
+            return;
+
+        if (lastCell[slot] != -1)
+            add(lastChannel[slot], lastCell[slot], -1f);
+        if (cell != -1)
+            add(channel, cell, 1f);
+        lastCell[slot] = cell;
+        lastChannel[slot] = channel;
+    }
+
+    private void add(int channel, int cell, float amount) {
+        int offset = channel * cells + cell;
+        buffer.put(offset, buffer.get(offset) + amount);
+    }
+
+    private void clearEntities() {
+        for (int slot = 0; slot < lastCell.length; slot++) {
+            if (lastCell[slot] != -1)
+                add(lastChannel[slot], lastCell[slot], -1f);
+        }
+    }
+
+    /**
+     * Writes the tile channels of 1 tile. Called by the maze when a tile
+     * changes.
+     *
+     * @param index the index of the tile
+     * @param state the new state of the tile
+     */
+    void setTile(int index, @NotNull TileState state) {
+        buffer.put(WALLS * cells + index, state.isPassable() ? 0f : 1f);
+        buffer.put(PELLETS * cells + index, state == TileState.PELLET ? 1f : 0f);
+        buffer.put(POWER_PELLETS * cells + index, state == TileState.POWER_PELLET ? 1f : 0f);
+    }
+
+    /**
+     * Rewrites the tile channels of every tile. Called by the maze when every
+     * tile changes at once.
+     */
+    void rebuildTiles() {
+        for (int index = 0; index < cells; index++)
+            setTile(index, maze.getTileState(index));
+    }
+}
@@ -0,0 +1,262 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Direction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The passable tiles of a maze, compressed into junctions and the corridors
+ * between them.
+ *
+ * <p>A junction is any passable tile that does not have exactly 2 passable
+ * neighbors (intersections and dead ends). A corridor is the run of tiles
+ * between 2 junctions. Every tile in a corridor has an offset: the start
+ * junction is at offset 0, the tiles in the corridor are at offsets
+ * <code>1..length-1</code>, and the end junction is at offset
+ * <code>length</code>. Mapping an entity to its (corridor, offset) turns
+ * questions like "is there a ghost ahead in this hallway" into a subtraction,
+ * instead of walking the hallway 1 tile at a time.
+ *
+ * <p>The graph is built from the initial state of the {@link MazeTemplate},
+ * since eating pellets never changes which tiles are passable. It is
+ * immutable and shared by every game on the template.
+ */
+public final class JunctionGraph {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final @NotNull MazeTemplate template;
+    private final @NotNull boolean[] junctions;
+    private final @NotNull int[] corridorOf;  // corridor of each tile, -1 for junctions and walls
+    private final @NotNull int[] offsetOf;
+    private final @NotNull byte[] forwardDirection;  // direction towards a higher offset, for corridor tiles
+    private final @NotNull byte[] backwardDirection;  // direction towards a lower offset, for corridor tiles
+    private final @NotNull int[] exits;  // [junction * 4 + direction], corridor << 1 | 1 if it leaves from the end, -1 if none
+    private final @NotNull int[] starts;
+    private final @NotNull int[] ends;
+    private final @NotNull int[][] corridorTiles;
+
+    public JunctionGraph(@NotNull MazeTemplate template) {
+        this.template = template;
+        int area = template.getArea();
+        this.junctions = new boolean[area];
+        this.corridorOf = new int[area];
+        this.offsetOf = new int[area];
+        this.forwardDirection = new byte[area];
+        this.backwardDirection = new byte[area];
+        this.exits = new int[area * DIRECTIONS.length];
+        Arrays.fill(corridorOf, -1);
+        Arrays.fill(exits, -1);
+
+        for (int i = 0; i < area; i++) {
+            if (isPassable(i) && countPassableNeighbors(i) != 2)
+                junctions[i] = true;
+        }
+
+        List<int[]> tiles = new ArrayList<>();
+        List<Integer> startList = new ArrayList<>();
+        List<Integer> endList = new ArrayList<>();
+        for (int i = 0; i < area; i++) {
+            if (junctions[i])
+                traceExits(i, tiles, startList, endList);
+        }
+
+        // Loops with no intersections have no junctions, so promote 1 tile
+        for (int i = 0; i < area; i++) {
+            if (isPassable(i) && !junctions[i] && corridorOf[i] == -1) {
+                junctions[i] = true;
+                traceExits(i, tiles, startList, endList);
+            }
+        }
+
+        this.corridorTiles = tiles.toArray(new int[0][]);
+        this.starts = startList.stream().mapToInt(Integer::intValue).toArray();
+        this.ends = endList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private boolean isPassable(int index) {
+        return template.getInitialState(index).isPassable();
+    }
+
+    private int countPassableNeighbors(int index) {
+        int count = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (isPassable(template.getNeighbor(index, direction)))
+                count++;
+        }
+        return count;
+    }
+
+    private void traceExits(int junction, @NotNull List<int[]> tiles, @NotNull List<Integer> startList, @NotNull List<Integer> endList) {
+        for (Direction exit : DIRECTIONS) {
+            if (exits[junction * DIRECTIONS.length + exit.ordinal()] != -1 || !isPassable(template.getNeighbor(junction, exit)))
+                continue;
+
+            int corridor = tiles.size();
+            List<Integer> path = new ArrayList<>();
+            Direction direction = exit;
+            int current = template.getNeighbor(junction, exit);
+            while (!junctions[current]) {
+                corridorOf[current] = corridor;
+                offsetOf[current] = path.size() + 1;
+                path.add(current);
+
+                // Corridor tiles have exactly 2 passable neighbors, so take the one we did not come from
+                Direction back = direction.behind();
+                backwardDirection[current] = (byte) back.ordinal();
+                for (Direction next : DIRECTIONS) {
+                    if (next != back && isPassable(template.getNeighbor(current, next))) {
+                        direction = next;
+                        break;
+                    }
+                }
+                forwardDirection[current] = (byte) direction.ordinal();
+                current = template.getNeighbor(current, direction);
+            }
+
+            exits[junction * DIRECTIONS.length + exit.ordinal()] = corridor << 1;
+            exits[current * DIRECTIONS.length + direction.behind().ordinal()] = corridor << 1 | 1;
+            tiles.add(path.stream().mapToInt(Integer::intValue).toArray());
+            startList.add(junction);
+            endList.add(current);
+        }
+    }
+
+    public @NotNull MazeTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns true if the tile is a junction: a passable tile that does not
+     * have exactly 2 passable neighbors.
+     *
+     * @param index the index of the tile
+     * @return true if the tile is a junction
+     */
+    public boolean isJunction(int index) {
+        return junctions[index];
+    }
+
+    public int getCorridorCount() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the corridor that the tile is in.
+     *
+     * @param index the index of the tile
+     * @return the corridor, or -1 if the tile is a junction or a wall
+     */
+    public int getCorridor(int index) {
+        return corridorOf[index];
+    }
+
+    /**
+     * Returns the offset of the tile in its corridor, see {@link #getCorridor(int)}.
+     *
+     * @param index the index of the tile
+     * @return the offset, from 1 to the length of the corridor - 1
+     */
+    public int getOffset(int index) {
+        return offsetOf[index];
+    }
+
+    /**
+     * Returns the number of steps from the start junction of the corridor to
+     * its end junction.
+     *
+     * @param corridor the corridor
+     * @return the length of the corridor
+     */
+    public int getLength(int corridor) {
+        return corridorTiles[corridor].length + 1;
+    }
+
+    public int getStart(int corridor) {
+        return starts[corridor];
+    }
+
+    public int getEnd(int corridor) {
+        return ends[corridor];
+    }
+
+    /**
+     * Returns the tile at the given offset of the corridor, including the
+     * junctions at offsets 0 and {@link #getLength(int)}.
+     *
+     * @param corridor the corridor
+     * @param offset the offset in the corridor
+     * @return the index of the tile
+     */
+    public int getTile(int corridor, int offset) {
+        if (offset == 0)
+            return starts[corridor];
+        int[] tiles = corridorTiles[corridor];
+        return offset > tiles.length ? ends[corridor] : tiles[offset - 1];
+    }
+
+    /**
+     * Returns the junction reached by walking from the tile in the given
+     * direction and following the corridor.
+     *
+     * @param from the index of the tile to start from
+     * @param direction the direction to start walking
+     * @return the index of the junction, or -1 if the direction is a wall
+     */
+    public int getJunctionAhead(int from, @NotNull Direction direction) {
+        int corridor = getCorridorAhead(from, direction);
+        if (corridor == -1)
+            return -1;
+        return isWalkingForward(from, direction) ? ends[corridor] : starts[corridor];
+    }
+
+    /**
+     * Returns the number of steps from one tile to another, if the target is
+     * in the corridor that starts by walking from the tile in the given
+     * direction (including the junction at the end of the corridor).
+     *
+     * @param from the index of the tile to start from
+     * @param direction the direction to start walking
+     * @param target the index of the tile to find
+     * @return the number of steps to the target, or -1 if it is not ahead
+     */
+    public int distanceAhead(int from, @NotNull Direction direction, int target) {
+        int corridor = getCorridorAhead(from, direction);
+        if (corridor == -1)
+            return -1;
+
+        boolean forward = isWalkingForward(from, direction);
+        int offset = junctions[from] ? (forward ? 0 : getLength(corridor)) : offsetOf[from];
+        int targetOffset;
+        if (corridorOf[target] == corridor)
+            targetOffset = offsetOf[target];
+        else if (target == (forward ? ends[corridor] : starts[corridor]))
+            targetOffset = forward ? getLength(corridor) : 0;
+        else
+            return -1;
+
+        int distance = forward ? targetOffset - offset : offset - targetOffset;
+        return distance > 0 ? distance : -1;
+    }
+
+    private int getCorridorAhead(int from, @NotNull Direction direction) {
+        if (junctions[from]) {
+            int exit = exits[from * DIRECTIONS.length + direction.ordinal()];
+            return exit == -1 ? -1 : exit >> 1;
+        }
+        int corridor = corridorOf[from];
+        if (corridor == -1)
+            return -1;
+        int ordinal = direction.ordinal();
+        return ordinal == forwardDirection[from] || ordinal == backwardDirection[from] ? corridor : -1;
+    }
+
+    private boolean isWalkingForward(int from, @NotNull Direction direction) {
+        if (junctions[from])
+            return (exits[from * DIRECTIONS.length + direction.ordinal()] & 1) == 0;
+        return direction.ordinal() == forwardDirection[from];
+    }
+}
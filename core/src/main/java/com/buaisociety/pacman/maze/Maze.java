@@ -1,8 +1,6 @@
 package com.buaisociety.pacman.maze;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.GameManager;
@@ -16,6 +14,7 @@ import com.buaisociety.pacman.event.EntityPreSpawnEvent;
 import com.buaisociety.pacman.event.EntityRemoveEvent;
 import com.buaisociety.pacman.event.EntitySpawnEvent;
 import com.buaisociety.pacman.event.GlobalBehaviorEvent;
+import com.buaisociety.pacman.sprite.Assets;
 import com.buaisociety.pacman.sprite.CutoutSpriteSheet;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.Particle;
@@ -29,6 +28,8 @@ import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -48,6 +49,11 @@ public class Maze implements Disposable {
      */
     public static final int TILE_SIZE = 8;
 
+    /**
+     * The game is frozen for the first 4 seconds of each maze.
+     */
+    public static final int START_TICKS = 60 * 4;
+
     /**
      * Times for the ghosts to be in scatter mode, then chase mode, until finally the ghost is infinitely in chase mode.
      */
@@ -56,19 +62,43 @@ public class Maze implements Disposable {
         new int[]{420, 1200, 120, 1200, 300, 61980, 1, -1},
         new int[]{300, 1200, 300, 1200, 300, 62220, 1, -1}
     };
+
+    /**
+     * Pellets each ghost waits for before leaving the ghost pen, on level 1, 2, and 3+.
+     */
+    private static final int[][] GHOST_RELEASE_PELLETS = new int[][]{
+        new int[]{0, 0, 30, 60},
+        new int[]{0, 0, 0, 50},
+        new int[]{0, 0, 0, 0}
+    };
+
     public static final int[] LEVEL_FRIGHT_TIMES = new int[]{360, 300, 240, 180, 120, 300, 120, 120, 60, 300, 120, 60, 60, 180, 60, 60, 0, 60, 0};
 
+    private static final TileState[] TILE_STATES = TileState.values();
+
 
     protected @NotNull GameManager gameManager;
-    protected @NotNull Sprite levelSprite;
+    protected @Nullable Sprite levelSprite;
+    private final @Nullable String levelSpritePath;
     protected @NotNull GrayscaleSpriteSheet pelletSprite;
     protected @NotNull GrayscaleSpriteSheet powerPelletSprite;
     protected @NotNull CutoutSpriteSheet fruitSprite;
     protected @NotNull GrayscaleSpriteSheet bonusPointsSprite;
-    protected @NotNull Tile[][] tiles;
+    private final @NotNull MazeTemplate template;
+    private final @NotNull byte[] tileStates;  // TileState ordinals, indexed like the template
+    private @Nullable PelletLayer pelletLayer;  // created the first time the maze is rendered
+    private final @NotNull Bitboard passableBoard;
+    private final @NotNull Bitboard pelletBoard;  // pellets and power pellets
+    private final @NotNull Bitboard powerPelletBoard;
+    private final @NotNull Bitboard ghostBoard;  // rebuilt by getGhostBoard()
+    private @Nullable BitboardPathFinder pathFinder;  // created the first time it is needed
+    private @Nullable GridObservation gridObservation;  // created the first time it is needed
     protected int totalPellets;
-    protected int pelletsRemaining;
     protected @NotNull List<Entity> entities;
+    private final @NotNull List<Entity> entitiesView;  // read-only, see getEntities()
+    private @Nullable PacmanEntity pacman;
+    private @NotNull GhostEntity[] ghosts = new GhostEntity[0];  // in spawn (and release) order
+    private @Nullable FruitEntity fruit;
     protected int ticks;
     protected int freezeTicks;
     private int gameStartTicks;
@@ -89,55 +119,235 @@ public class Maze implements Disposable {
         @NotNull Sprite levelSprite,
         @NotNull TileState[][] tiles,
         @NotNull Vector2i fruitSpawnPixel
+    ) {
+        this(gameManager, levelSprite, null, new MazeTemplate(tiles), fruitSpawnPixel);
+    }
+
+    /**
+     * Creates a maze whose background is loaded from the given internal path
+     * the first time the maze is rendered. Mazes that are never rendered (e.g.
+     * during headless evaluation) never create any textures.
+     *
+     * @param gameManager the game manager that owns this maze
+     * @param levelSpritePath the internal path of the background, e.g. <code>"mazes/0/render.png"</code>
+     * @param template the layout of the maze, shared with every other game on it
+     * @param fruitSpawnPixel the pixel that fruit spawns at
+     */
+    public Maze(
+        @NotNull GameManager gameManager,
+        @NotNull String levelSpritePath,
+        @NotNull MazeTemplate template,
+        @NotNull Vector2i fruitSpawnPixel
+    ) {
+        this(gameManager, null, levelSpritePath, template, fruitSpawnPixel);
+    }
+
+    private Maze(
+        @NotNull GameManager gameManager,
+        @Nullable Sprite levelSprite,
+        @Nullable String levelSpritePath,
+        @NotNull MazeTemplate template,
+        @NotNull Vector2i fruitSpawnPixel
     ) {
         this.gameManager = gameManager;
         this.levelSprite = levelSprite;
-        this.tiles = new Tile[tiles.length][tiles[0].length];
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                this.tiles[y][x] = new Tile(this, new Vector2i(x, y), tiles[y][x]);
-            }
-        }
+        this.levelSpritePath = levelSpritePath;
+        this.template = template;
+        this.tileStates = new byte[template.getArea()];
+        this.passableBoard = new Bitboard(template.getWidth(), template.getHeight());
+        this.pelletBoard = new Bitboard(template.getWidth(), template.getHeight());
+        this.powerPelletBoard = new Bitboard(template.getWidth(), template.getHeight());
+        this.ghostBoard = new Bitboard(template.getWidth(), template.getHeight());
         this.entities = new ArrayList<>();
-        this.tileDimensions = new Vector2i(tiles[0].length, tiles.length);
+        this.entitiesView = Collections.unmodifiableList(entities);
+        this.tileDimensions = new Vector2i(template.getWidth(), template.getHeight());
         this.pixelDimensions = new Vector2i(tileDimensions).mul(TILE_SIZE);
         this.fruitSpawnPixel = fruitSpawnPixel;
         this.particles = new ArrayList<>();
-        initTiles();
+        resetTiles();
 
-        pelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/pellet.png")), 8);
+        pelletSprite = new GrayscaleSpriteSheet("sprites/pellet.png", 8);
         pelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
-        powerPelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/power-pellet.png")), 8);
+        powerPelletSprite = new GrayscaleSpriteSheet("sprites/power-pellet.png", 8);
         powerPelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
-        fruitSprite = new CutoutSpriteSheet(new Texture(Gdx.files.internal("sprites/fruit-sprite.png")), 16);
-        bonusPointsSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/bonus-points-sprite.png")), new Vector2i(8 * 4, 8 * 2));
+        fruitSprite = new CutoutSpriteSheet("sprites/fruit-sprite.png", 16);
+        bonusPointsSprite = new GrayscaleSpriteSheet("sprites/bonus-points-sprite.png", new Vector2i(8 * 4, 8 * 2));
 
         // Start with chase so the first update flips it to scatter
         isGhostChase = true;
 
         // Game is frozen for the first 4 seconds
-        gameStartTicks = 60 * 4;
+        gameStartTicks = START_TICKS;
     }
 
     /**
-     * Responsible for initializing the tiles array, and setting the initial variables of this Maze instance.
+     * Recounts the pellets in the maze. Call this after changing tiles before the game starts.
      */
     public void initTiles() {
-        if (tiles == null) {
-            throw new IllegalStateException("Tiles array must be initialized before calling initTiles()");
-        }
+        passableBoard.clear();
+        pelletBoard.clear();
+        powerPelletBoard.clear();
+        for (int i = 0; i < tileStates.length; i++)
+            updateBitboards(i, TILE_STATES[tileStates[i]]);
+        totalPellets = pelletBoard.popCount();
+        if (gridObservation != null)
+            gridObservation.rebuildTiles();
+    }
 
-        pelletsRemaining = 0;
-        totalPellets = 0;
-        for (Tile[] row : tiles) {
-            for (Tile tile : row) {
-                TileState state = tile.getState();
-                if (state == TileState.PELLET || state == TileState.POWER_PELLET) {
-                    pelletsRemaining++;
-                    totalPellets++;
-                }
-            }
-        }
+    /**
+     * Puts every pellet back, by copying the initial tile states from the
+     * template.
+     */
+    public void resetTiles() {
+        template.copyStates(tileStates, 0);
+        initTiles();
+        if (pelletLayer != null)
+            pelletLayer.markAllChanged();
+    }
+
+    private void updateBitboards(int index, @NotNull TileState state) {
+        passableBoard.set(index, state.isPassable());
+        pelletBoard.set(index, state == TileState.PELLET || state == TileState.POWER_PELLET);
+        powerPelletBoard.set(index, state == TileState.POWER_PELLET);
+    }
+
+    /**
+     * Returns every tile that entities can walk on. Kept in sync with
+     * {@link #setTileState(int, TileState)}, do not modify.
+     *
+     * @return the passable tiles
+     */
+    public @NotNull Bitboard getPassableBoard() {
+        return passableBoard;
+    }
+
+    /**
+     * Returns every tile with a pellet or a power pellet. Kept in sync with
+     * {@link #setTileState(int, TileState)}, do not modify.
+     *
+     * @return the tiles with pellets
+     */
+    public @NotNull Bitboard getPelletBoard() {
+        return pelletBoard;
+    }
+
+    /**
+     * Returns every tile with a power pellet. Kept in sync with
+     * {@link #setTileState(int, TileState)}, do not modify.
+     *
+     * @return the tiles with power pellets
+     */
+    public @NotNull Bitboard getPowerPelletBoard() {
+        return powerPelletBoard;
+    }
+
+    /**
+     * Returns every tile with a ghost on it. Ghosts move every tick, so this
+     * is rebuilt on every call. Do not modify.
+     *
+     * @return the tiles with ghosts
+     */
+    public @NotNull Bitboard getGhostBoard() {
+        ghostBoard.clear();
+        for (GhostEntity ghost : ghosts)
+            ghostBoard.set(template.index(ghost.getTileX(), ghost.getTileY()));
+        return ghostBoard;
+    }
+
+    /**
+     * Returns the ghost board as of the last {@link #getGhostBoard()}, without
+     * rebuilding it.
+     *
+     * @return the tiles with ghosts, possibly out of date
+     */
+    @NotNull Bitboard peekGhostBoard() {
+        return ghostBoard;
+    }
+
+    /**
+     * Returns the path finder for distance queries on this maze's bitboards.
+     *
+     * @return the path finder
+     */
+    public @NotNull BitboardPathFinder getPathFinder() {
+        if (pathFinder == null)
+            pathFinder = new BitboardPathFinder(this);
+        return pathFinder;
+    }
+
+    /**
+     * Returns this maze as a grid of channels for convolutional networks.
+     * Tile changes are written into it as they happen, so reading it every
+     * tick only costs {@link GridObservation#update()}.
+     *
+     * @return the grid observation
+     */
+    public @NotNull GridObservation getGridObservation() {
+        if (gridObservation == null)
+            gridObservation = new GridObservation(this);
+        return gridObservation;
+    }
+
+    /**
+     * Returns the layout this maze was created from.
+     *
+     * @return the template of this maze
+     */
+    public @NotNull MazeTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the state of the tile at the given index, see
+     * {@link MazeTemplate#index(int, int)}.
+     *
+     * @param index the index of the tile
+     * @return the state of the tile
+     */
+    public @NotNull TileState getTileState(int index) {
+        return TILE_STATES[tileStates[index]];
+    }
+
+    /**
+     * Returns the state of the tile, wrapping around the edges of the maze.
+     * Unlike {@link #getTile(int, int)}, this never allocates.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the state of the tile
+     */
+    public @NotNull TileState getTileState(int x, int y) {
+        return TILE_STATES[tileStates[template.index(x, y)]];
+    }
+
+    /**
+     * Sets the state of the tile at the given index, and updates the cached
+     * pellet layer and grid observation.
+     *
+     * @param index the index of the tile
+     * @param state the new state
+     */
+    public void setTileState(int index, @NotNull TileState state) {
+        if (tileStates[index] == state.ordinal())
+            return;
+
+        tileStates[index] = (byte) state.ordinal();
+        updateBitboards(index, state);
+        if (gridObservation != null)
+            gridObservation.setTile(index, state);
+        if (pelletLayer != null)
+            pelletLayer.markChanged(index);
+    }
+
+    /**
+     * Copies the state of every tile into the given array, as
+     * {@link TileState#ordinal() ordinals} indexed like the template.
+     *
+     * @param dest the array to copy into
+     * @param offset the index in <code>dest</code> of the first tile
+     */
+    public void copyTileStates(@NotNull byte[] dest, int offset) {
+        System.arraycopy(tileStates, 0, dest, offset, tileStates.length);
     }
 
     public void reset() {
@@ -152,16 +362,41 @@ public class Maze implements Disposable {
     }
 
     public int getPelletsRemaining() {
-        return pelletsRemaining;
+        return pelletBoard.popCount();
     }
 
     public @NotNull PacmanEntity getPacman() {
-        for (Entity entity : entities) {
-            if (entity instanceof PacmanEntity) {
-                return (PacmanEntity) entity;
-            }
-        }
-        throw new IllegalStateException("Pacman not found in maze");
+        if (pacman == null)
+            throw new IllegalStateException("Pacman not found in maze");
+        return pacman;
+    }
+
+    /**
+     * Returns pacman, or null before pacman spawns.
+     *
+     * @return pacman, or null
+     */
+    @Nullable PacmanEntity findPacman() {
+        return pacman;
+    }
+
+    /**
+     * Returns the ghosts in the maze, in the order they were spawned (which is
+     * also the order they are released from the ghost pen). Do not modify.
+     *
+     * @return the ghosts in the maze
+     */
+    public @NotNull GhostEntity[] getGhosts() {
+        return ghosts;
+    }
+
+    /**
+     * Returns the fruit in the maze, if there is one.
+     *
+     * @return the fruit, or null
+     */
+    public @Nullable FruitEntity getFruit() {
+        return fruit;
     }
 
     public void addParticle(@NotNull Particle particle) {
@@ -169,12 +404,61 @@ public class Maze implements Disposable {
     }
 
     /**
-     * Returns the list of entities in the maze.
+     * Returns the list of entities in the maze. The list is read-only, use
+     * {@link #addEntity(Entity)} and {@link #removeEntity(Entity)} so that
+     * {@link #getPacman()}, {@link #getGhosts()} and {@link #getFruit()} stay
+     * up to date.
      *
      * @return The list of entities in the maze.
      */
     public @NotNull List<Entity> getEntities() {
-        return entities;
+        return entitiesView;
+    }
+
+    /**
+     * Adds an entity to the maze.
+     *
+     * @param entity the entity to add
+     */
+    public void addEntity(@NotNull Entity entity) {
+        entities.add(entity);
+        if (entity instanceof PacmanEntity added) {
+            pacman = added;
+        } else if (entity instanceof GhostEntity ghost) {
+            ghosts = Arrays.copyOf(ghosts, ghosts.length + 1);
+            ghosts[ghosts.length - 1] = ghost;
+        } else if (entity instanceof FruitEntity added) {
+            fruit = added;
+        }
+    }
+
+    /**
+     * Removes an entity from the maze, without firing an {@link EntityRemoveEvent}.
+     *
+     * @param entity the entity to remove
+     * @return true if the entity was in the maze
+     */
+    public boolean removeEntity(@NotNull Entity entity) {
+        if (!entities.remove(entity))
+            return false;
+        unregister(entity);
+        return true;
+    }
+
+    private void unregister(@NotNull Entity entity) {
+        if (entity == pacman) {
+            pacman = null;
+        } else if (entity == fruit) {
+            fruit = null;
+        } else if (entity instanceof GhostEntity) {
+            int index = Arrays.asList(ghosts).indexOf(entity);
+            if (index != -1) {
+                GhostEntity[] remaining = new GhostEntity[ghosts.length - 1];
+                System.arraycopy(ghosts, 0, remaining, 0, index);
+                System.arraycopy(ghosts, index + 1, remaining, index, remaining.length - index);
+                ghosts = remaining;
+            }
+        }
     }
 
     /**
@@ -216,16 +500,15 @@ public class Maze implements Disposable {
     }
 
     /**
-     * Returns the tile at the given position.
+     * Returns the tile at the given position. Tiles are views (see
+     * {@link Tile}), so per-tick code should prefer {@link #getTileState(int, int)}.
      *
      * @param x The x-coordinate of the tile.
      * @param y The y-coordinate of the tile.
      * @return The tile at the given position.
      */
     public final @NotNull Tile getTile(int x, int y) {
-        y = (y + tileDimensions.y) % tileDimensions.y;
-        x = (x + tileDimensions.x) % tileDimensions.x;
-        return tiles[y][x];
+        return new Tile(this, template.index(x, y));
     }
 
     /**
@@ -252,6 +535,15 @@ public class Maze implements Disposable {
         return frightenedTimer;
     }
 
+    /**
+     * Returns the pixel that fruit spawns at.
+     *
+     * @return The pixel that fruit spawns at.
+     */
+    public @NotNull Vector2ic getFruitSpawnPixel() {
+        return fruitSpawnPixel;
+    }
+
     /**
      * Ghosts change between chase and scatter mode on a timer (set by this maze class).
      *
@@ -267,7 +559,7 @@ public class Maze implements Disposable {
      * @return <code>null</code> if the game is still running, or a {@link TerminalReason}
      */
     public @Nullable TerminalReason getTerminalReason() {
-        if (pelletsRemaining == 0)
+        if (pelletBoard.isEmpty())
             return TerminalReason.WIN;
 
         PacmanEntity pacman = getPacman();
@@ -323,7 +615,6 @@ public class Maze implements Disposable {
         // pellets also release ghosts when a certain number of them are eaten.
         if (state == TileState.PELLET) {
             gameManager.incrementScore(10);
-            pelletsRemaining--;
             tile.setState(TileState.SPACE);
 
             // Ghosts are released when a certain number of pellets are eaten. The
@@ -335,19 +626,11 @@ public class Maze implements Disposable {
             // Allow a handicap to delay the speed changes per-level
             // makes the game easier
             level = Math.max(1, level - gameManager.getConfig().handicap);
-            int[] bounds = switch (level) {
-                case 1 -> new int[]{0, 0, 30, 60};
-                case 2 -> new int[]{0, 0, 0, 50};
-                default -> new int[]{0, 0, 0, 0};
-            };
-
-            int ghostIndex = 0;
-            for (Entity temp : entities) {
-                if (!(temp instanceof GhostEntity ghost))
-                    continue;
+            int[] bounds = GHOST_RELEASE_PELLETS[Math.min(level, GHOST_RELEASE_PELLETS.length) - 1];
 
+            for (int ghostIndex = 0; ghostIndex < ghosts.length; ghostIndex++) {
+                GhostEntity ghost = ghosts[ghostIndex];
                 int bound = bounds[Math.min(ghostIndex, bounds.length - 1)];
-                ghostIndex++;
                 if (ghost.isReleased())
                     continue;
 
@@ -361,7 +644,6 @@ public class Maze implements Disposable {
         } else if (state == TileState.POWER_PELLET) {
             localNumGhostsEaten = 0;
             gameManager.incrementScore(50);
-            pelletsRemaining--;
             tile.setState(TileState.SPACE);
 
             // Allow a handicap to delay the speed changes per-level
@@ -374,10 +656,8 @@ public class Maze implements Disposable {
                 levelIndex = LEVEL_FRIGHT_TIMES.length - 1;
 
             frightenedTimer = LEVEL_FRIGHT_TIMES[levelIndex];
-            for (Entity temp : entities) {
-                if (temp instanceof GhostEntity ghost) {
-                    ghost.setState(GhostState.FRIGHTENED);
-                }
+            for (GhostEntity ghost : ghosts) {
+                ghost.setState(GhostState.FRIGHTENED);
             }
         } else {
             // Make sure we actually ate a pellet
@@ -385,7 +665,7 @@ public class Maze implements Disposable {
         }
 
         // Once 70 pellets are eaten, the first fruit is released
-        int pelletsEaten = totalPellets - pelletsRemaining;
+        int pelletsEaten = totalPellets - getPelletsRemaining();
         if (pelletsEaten == 70 || pelletsEaten == 170) {
             spawnFruit();
         }
@@ -395,9 +675,11 @@ public class Maze implements Disposable {
 
     public void spawnFruit() {
         // Remove the first fruit, if there
-        entities.removeIf(entity -> entity instanceof FruitEntity);
+        if (fruit != null)
+            removeEntity(fruit);
         FruitEntity.Config config = new FruitEntity.Config();
         config.spawnPixel = new Vector2d(fruitSpawnPixel);
+        config.ticksLeft = gameManager.getRandom().nextInt(9 * 60, 10 * 60);
 
         // Fire the event to allow the fruit to be customized
         EntityPreSpawnEvent event = new EntityPreSpawnEvent(this, EntityType.FRUIT, config);
@@ -405,32 +687,21 @@ public class Maze implements Disposable {
         if (event.isCancelled())
             return;
 
-        FruitEntity fruit = new FruitEntity(this, (FruitEntity.Config) event.getConfig());
-        EntitySpawnEvent spawnEvent = new EntitySpawnEvent(fruit);
+        FruitEntity spawned = new FruitEntity(this, (FruitEntity.Config) event.getConfig());
+        EntitySpawnEvent spawnEvent = new EntitySpawnEvent(spawned);
         gameManager.getEvents().fireEvent(spawnEvent);
         if (spawnEvent.isCancelled())
             return;
 
-        entities.add(fruit);
+        addEntity(spawned);
     }
 
     public boolean isFruitPresent() {
-        for (Entity entity : entities) {
-            if (entity instanceof FruitEntity) {
-                return true;
-            }
-        }
-        return false;
+        return fruit != null;
     }
 
-    // Maze.java
     public @Nullable Vector2i getFruitPosition() {
-        for (Entity entity : entities) {
-            if (entity instanceof FruitEntity) {
-                return entity.getTilePosition();
-            }
-        }
-        return null;
+        return fruit == null ? null : fruit.getTilePosition();
     }
 
     public void update() {
@@ -467,10 +738,12 @@ public class Maze implements Disposable {
             localChaseCounter = LEVEL_STATES[levelIndex][ghostChaseIndex++];
 
             // Fire an event to allow the chase/scatter times to be customized
-            GlobalBehaviorEvent event = new GlobalBehaviorEvent(this, isGhostChase, localChaseCounter);
-            gameManager.getEvents().fireEvent(event);
-            isGhostChase = event.isChaseBehavior();
-            localChaseCounter = event.getTimeLeft();
+            if (gameManager.getEvents().hasListeners(GlobalBehaviorEvent.class)) {
+                GlobalBehaviorEvent event = new GlobalBehaviorEvent(this, isGhostChase, localChaseCounter);
+                gameManager.getEvents().fireEvent(event);
+                isGhostChase = event.isChaseBehavior();
+                localChaseCounter = event.getTimeLeft();
+            }
         }
 
         // Must be indexed to allow modification of entities list
@@ -480,34 +753,39 @@ public class Maze implements Disposable {
         }
 
         // Remove dead ones
+        boolean fireRemove = gameManager.getEvents().hasListeners(EntityRemoveEvent.class);
         Iterator<Entity> iterator = entities.iterator();
         while (iterator.hasNext()) {
             Entity entity = iterator.next();
             if (entity.isRemove()) {
-                EntityRemoveEvent event = new EntityRemoveEvent(entity);
-                gameManager.getEvents().fireEvent(event);
-                if (event.isCancelled())
-                    continue;
+                if (fireRemove) {
+                    EntityRemoveEvent event = new EntityRemoveEvent(entity);
+                    gameManager.getEvents().fireEvent(event);
+                    if (event.isCancelled())
+                        continue;
+                }
 
                 iterator.remove();
+                unregister(entity);
             }
         }
     }
 
     public void render(@NotNull SpriteBatch batch) {
-        batch.draw(levelSprite, 0, 0);
+        if (levelSprite == null)
+            levelSprite = new Sprite(Assets.acquireTexture(levelSpritePath));
+        if (pelletLayer == null)
+            pelletLayer = new PelletLayer(this, levelSprite.getTexture(), pelletSprite);
+
+        // The background and pellets only change when a pellet is eaten
+        pelletLayer.render(batch);
 
         // Power pellets should flicker on and off
         boolean flicker = ticks % 20 < 10;
-
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                Tile tile = tiles[y][x];
-                if (tile.getState() == TileState.PELLET) {
-                    pelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
-                } else if (tile.getState() == TileState.POWER_PELLET && flicker) {
-                    powerPelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
-                }
+        if (flicker) {
+            for (int index = powerPelletBoard.nextSetBit(0); index != -1; index = powerPelletBoard.nextSetBit(index + 1)) {
+                Vector2ic position = template.getPosition(index);
+                powerPelletSprite.render(batch, position.x() * TILE_SIZE, position.y() * TILE_SIZE);
             }
         }
 
@@ -538,7 +816,13 @@ public class Maze implements Disposable {
         for (Entity entity : entities) {
             entity.dispose();
         }
-        levelSprite.getTexture().dispose();
+        if (pelletLayer != null)
+            pelletLayer.dispose();
+        if (levelSprite != null && levelSpritePath != null)
+            Assets.releaseTexture(levelSpritePath);  // shared by every game on this maze
+        else if (levelSprite != null)
+            levelSprite.getTexture().dispose();
+        levelSprite = null;
         pelletSprite.dispose();
         powerPelletSprite.dispose();
         bonusPointsSprite.dispose();
@@ -0,0 +1,179 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Direction;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Vector2i;
+import org.joml.Vector2ic;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The parts of a maze that never change during a game: its size, the initial
+ * state of each tile, and the geometry of each tile (position, center pixel,
+ * and neighbors).
+ *
+ * <p>A template is built once per maze layout and shared by every
+ * {@link Maze} that uses it, so each game only stores 1 byte per tile (see
+ * {@link Maze#getTileState(int)}). Tiles are indexed
+ * <code>y * width + x</code>, with the bottom-left tile at index 0.
+ */
+public final class MazeTemplate {
+
+    private static final TileState[] STATES = TileState.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int width;
+    private final int height;
+    private final @NotNull byte[] states;
+    private final @NotNull Vector2ic[] positions;
+    private final @NotNull Vector2ic[] centerPixels;
+    private final @NotNull int[] neighbors;  // [index * 4 + direction.ordinal()]
+    private final int totalPellets;
+    private final @NotNull JunctionGraph junctionGraph;
+    private final @NotNull Map<Long, NavigationTable> navigationTables = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a template from the initial state of each tile.
+     *
+     * @param tiles the initial state of each tile, indexed <code>[y][x]</code>
+     */
+    public MazeTemplate(@NotNull TileState[][] tiles) {
+        this.height = tiles.length;
+        this.width = tiles[0].length;
+
+        int area = width * height;
+        this.states = new byte[area];
+        this.positions = new Vector2ic[area];
+        this.centerPixels = new Vector2ic[area];
+        this.neighbors = new int[area * DIRECTIONS.length];
+
+        int pellets = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                TileState state = tiles[y][x];
+                states[index] = (byte) state.ordinal();
+                if (state == TileState.PELLET || state == TileState.POWER_PELLET)
+                    pellets++;
+
+                positions[index] = new Vector2i(x, y);
+                centerPixels[index] = new Vector2i(
+                    x * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1,
+                    y * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1
+                );
+                for (Direction direction : DIRECTIONS)
+                    neighbors[index * DIRECTIONS.length + direction.ordinal()] = index(x + direction.getDx(), y + direction.getDy());
+            }
+        }
+        this.totalPellets = pellets;
+        this.junctionGraph = new JunctionGraph(this);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of tiles in the maze, <code>width * height</code>.
+     *
+     * @return the number of tiles
+     */
+    public int getArea() {
+        return states.length;
+    }
+
+    /**
+     * Returns the number of pellets and power pellets the maze starts with.
+     *
+     * @return the initial number of pellets
+     */
+    public int getTotalPellets() {
+        return totalPellets;
+    }
+
+    /**
+     * Returns the junctions and corridors of the maze, built once per template.
+     *
+     * @return the junction graph
+     */
+    public @NotNull JunctionGraph getJunctionGraph() {
+        return junctionGraph;
+    }
+
+    /**
+     * Returns the table of directions towards the given target tile. Tables
+     * are built the first time a target is requested, then shared by every
+     * game on this template.
+     *
+     * @param targetX the x-coordinate of the target tile, may be outside the maze
+     * @param targetY the y-coordinate of the target tile, may be outside the maze
+     * @return the navigation table
+     */
+    public @NotNull NavigationTable getNavigationTable(int targetX, int targetY) {
+        long key = (long) targetX << 32 | (targetY & 0xFFFFFFFFL);
+        return navigationTables.computeIfAbsent(key, k -> new NavigationTable(this, targetX, targetY));
+    }
+
+    /**
+     * Returns the index of the tile, wrapping around the edges of the maze.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the index of the tile
+     */
+    public int index(int x, int y) {
+        return Math.floorMod(y, height) * width + Math.floorMod(x, width);
+    }
+
+    /**
+     * Returns the initial state of the tile.
+     *
+     * @param index the index of the tile
+     * @return the initial state
+     */
+    public @NotNull TileState getInitialState(int index) {
+        return STATES[states[index]];
+    }
+
+    /**
+     * Copies the initial state of every tile into the given array, as
+     * {@link TileState#ordinal() ordinals}.
+     *
+     * @param dest the array to copy into
+     * @param offset the index in <code>dest</code> of the first tile
+     */
+    public void copyStates(@NotNull byte[] dest, int offset) {
+        System.arraycopy(states, 0, dest, offset, states.length);
+    }
+
+    public @NotNull Vector2ic getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Returns the center pixel of the tile, see {@link Tile#getCenterPixel()}.
+     *
+     * @param index the index of the tile
+     * @return the center pixel, read-only
+     */
+    public @NotNull Vector2ic getCenterPixel(int index) {
+        return centerPixels[index];
+    }
+
+    /**
+     * Returns the index of the neighboring tile, wrapping around the edges of
+     * the maze.
+     *
+     * @param index the index of the tile
+     * @param direction the direction of the neighbor
+     * @return the index of the neighbor
+     */
+    public int getNeighbor(int index, @NotNull Direction direction) {
+        return neighbors[index * DIRECTIONS.length + direction.ordinal()];
+    }
+}
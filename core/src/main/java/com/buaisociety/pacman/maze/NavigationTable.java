@@ -0,0 +1,89 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Direction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The direction a ghost takes towards 1 fixed target tile, for every tile in
+ * the maze and every direction the ghost could be moving.
+ *
+ * <p>Scatter and eaten ghosts always head to the same tile, so instead of
+ * comparing distances every time they reach a new tile (see
+ * {@link com.buaisociety.pacman.entity.behavior.TargetableBehavior}), the
+ * choice is made once per template and looked up. Tables are built by
+ * {@link MazeTemplate#getNavigationTable(int, int)} and shared by every game
+ * on the template.
+ */
+public final class NavigationTable {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int targetX;
+    private final int targetY;
+    private final @NotNull byte[] directions;  // [index * 4 + incoming direction], -1 if there is nowhere to go
+
+    NavigationTable(@NotNull MazeTemplate template, int targetX, int targetY) {
+        this.targetX = targetX;
+        this.targetY = targetY;
+        this.directions = new byte[template.getArea() * DIRECTIONS.length];
+
+        for (int index = 0; index < template.getArea(); index++) {
+            int tileX = template.getPosition(index).x();
+            int tileY = template.getPosition(index).y();
+            for (Direction incoming : DIRECTIONS) {
+                // Same rules as TargetableBehavior#getDirection, ties go to the last direction
+                Direction best = null;
+                int smallest = Integer.MAX_VALUE;
+                Direction behind = incoming.behind();
+                for (Direction direction : DIRECTIONS) {
+                    if (behind == direction)
+                        continue;
+                    if (!template.getInitialState(template.getNeighbor(index, direction)).isPassable())
+                        continue;
+
+                    int dx = tileX + direction.getDx() - targetX;
+                    int dy = tileY + direction.getDy() - targetY;
+                    int distance = dx * dx + dy * dy;
+                    if (distance <= smallest) {
+                        smallest = distance;
+                        best = direction;
+                    }
+                }
+                directions[index * DIRECTIONS.length + incoming.ordinal()] = (byte) (best == null ? -1 : best.ordinal());
+            }
+        }
+    }
+
+    public int getTargetX() {
+        return targetX;
+    }
+
+    public int getTargetY() {
+        return targetY;
+    }
+
+    /**
+     * Returns the direction to take from the tile towards the target.
+     *
+     * @param index the index of the tile
+     * @param incoming the direction the ghost is currently moving
+     * @return the direction to take, or null if every direction is a wall or behind
+     */
+    public @Nullable Direction getDirection(int index, @NotNull Direction incoming) {
+        int direction = getDirectionOrdinal(index, incoming.ordinal());
+        return direction == -1 ? null : DIRECTIONS[direction];
+    }
+
+    /**
+     * Returns the {@link Direction#ordinal() ordinal} of the direction to take
+     * from the tile towards the target, see {@link #getDirection(int, Direction)}.
+     *
+     * @param index the index of the tile
+     * @param incoming the ordinal of the direction the ghost is currently moving
+     * @return the ordinal of the direction to take, or -1
+     */
+    public int getDirectionOrdinal(int index, int incoming) {
+        return directions[index * DIRECTIONS.length + incoming];
+    }
+}
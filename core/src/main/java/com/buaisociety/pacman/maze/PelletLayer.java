@@ -0,0 +1,152 @@
+package com.buaisociety.pacman.maze;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ScreenUtils;
+import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
+import com.buaisociety.pacman.sprite.PaletteShader;
+import com.buaisociety.pacman.util.Disposable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2ic;
+
+import java.nio.IntBuffer;
+
+/**
+ * The maze background with the remaining pellets drawn on top, cached in an
+ * offscreen frame buffer.
+ *
+ * <p>The pellets only change when one is eaten, so instead of drawing every
+ * pellet each frame, only the tiles that changed since the last frame are
+ * redrawn into the frame buffer. Power pellets flicker, so they are not part
+ * of this layer.
+ */
+class PelletLayer implements Disposable {
+
+    private final @NotNull Maze maze;
+    private final @NotNull Texture background;
+    private final @NotNull GrayscaleSpriteSheet pelletSprite;
+    private final @NotNull IntArray changedTiles = new IntArray();  // tile indices
+    private final @NotNull Matrix4 projection = new Matrix4();
+    private final @NotNull Matrix4 screenProjection = new Matrix4();
+    private final @NotNull IntBuffer viewport = BufferUtils.newIntBuffer(16);
+
+    private @Nullable FrameBuffer frameBuffer;
+    private @Nullable TextureRegion region;
+    private boolean redrawAll = true;
+
+    PelletLayer(@NotNull Maze maze, @NotNull Texture background, @NotNull GrayscaleSpriteSheet pelletSprite) {
+        this.maze = maze;
+        this.background = background;
+        this.pelletSprite = pelletSprite;
+    }
+
+    /**
+     * Marks the tile to be redrawn the next time this layer is rendered.
+     *
+     * @param index the index of the tile that changed
+     */
+    void markChanged(int index) {
+        if (!redrawAll)
+            changedTiles.add(index);
+    }
+
+    /**
+     * Marks every tile to be redrawn the next time this layer is rendered.
+     */
+    void markAllChanged() {
+        redrawAll = true;
+        changedTiles.clear();
+    }
+
+    /**
+     * Draws this layer, after redrawing any changed tiles into the frame
+     * buffer. Must be called between {@link SpriteBatch#begin()} and
+     * {@link SpriteBatch#end()}.
+     *
+     * @param batch the batch to draw with
+     */
+    void render(@NotNull SpriteBatch batch) {
+        if (frameBuffer == null) {
+            Vector2ic size = maze.getPixelDimensions();
+            frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, size.x(), size.y(), false);
+            projection.setToOrtho2D(0, 0, size.x(), size.y());
+            region = new TextureRegion(frameBuffer.getColorBufferTexture());
+            region.flip(false, true);  // frame buffers are upside down
+        }
+
+        if (redrawAll || changedTiles.notEmpty())
+            update(batch);
+
+        PaletteShader.end(batch);
+        batch.draw(region, 0, 0);
+    }
+
+    private void update(@NotNull SpriteBatch batch) {
+        // Pause drawing to the screen to draw into the frame buffer instead
+        screenProjection.set(batch.getProjectionMatrix());
+        batch.end();
+        Gdx.gl.glGetIntegerv(GL20.GL_VIEWPORT, viewport);
+        frameBuffer.begin();
+        batch.setProjectionMatrix(projection);
+        batch.begin();
+
+        // The background is opaque, so drawing it without blending erases
+        // whatever pellet was drawn there before
+        batch.disableBlending();
+        if (redrawAll) {
+            ScreenUtils.clear(0, 0, 0, 0);
+            batch.draw(background, 0, 0);
+        } else {
+            for (int i = 0; i < changedTiles.size; i++) {
+                Vector2ic position = maze.getTemplate().getPosition(changedTiles.get(i));
+                int x = position.x() * Maze.TILE_SIZE;
+                int y = position.y() * Maze.TILE_SIZE;
+                int srcY = background.getHeight() - y - Maze.TILE_SIZE;  // textures start at the top
+                batch.draw(background, x, y, Maze.TILE_SIZE, Maze.TILE_SIZE, x, srcY, Maze.TILE_SIZE, Maze.TILE_SIZE, false, false);
+            }
+        }
+        batch.enableBlending();
+
+        if (redrawAll) {
+            Vector2ic dimensions = maze.getDimensions();
+            for (int y = 0; y < dimensions.y(); y++) {
+                for (int x = 0; x < dimensions.x(); x++) {
+                    if (maze.getTileState(x, y) == TileState.PELLET)
+                        pelletSprite.render(batch, x * Maze.TILE_SIZE, y * Maze.TILE_SIZE);
+                }
+            }
+        } else {
+            for (int i = 0; i < changedTiles.size; i++) {
+                int index = changedTiles.get(i);
+                if (maze.getTileState(index) == TileState.PELLET) {
+                    Vector2ic position = maze.getTemplate().getPosition(index);
+                    pelletSprite.render(batch, position.x() * Maze.TILE_SIZE, position.y() * Maze.TILE_SIZE);
+                }
+            }
+        }
+
+        PaletteShader.end(batch);
+        batch.end();
+        frameBuffer.end(viewport.get(0), viewport.get(1), viewport.get(2), viewport.get(3));
+        batch.setProjectionMatrix(screenProjection);
+        batch.begin();
+
+        changedTiles.clear();
+        redrawAll = false;
+    }
+
+    @Override
+    public void dispose() {
+        if (frameBuffer != null)
+            frameBuffer.dispose();
+    }
+}
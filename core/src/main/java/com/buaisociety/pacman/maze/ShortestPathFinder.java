@@ -2,9 +2,9 @@
 package com.buaisociety.pacman.maze;
 
 import com.buaisociety.pacman.entity.Direction;
-import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.metrics.PathQueryEvent;
 import kotlin.Pair;
 
 import java.util.*;
@@ -18,6 +18,8 @@ public class ShortestPathFinder {
     }
 
     public int getDistanceToNearestPellet(Tile startTile) {
+        PathQueryEvent event = new PathQueryEvent();
+        event.begin();
         Queue<Tile> queue = new LinkedList<>();
         Set<Tile> visited = new HashSet<>();
         Map<Tile, Integer> distance = new HashMap<>();
@@ -31,7 +33,7 @@ public class ShortestPathFinder {
             int currentDistance = distance.get(current);
 
             if (current.getState() == TileState.PELLET || current.getState() == TileState.POWER_PELLET) {
-                return currentDistance;
+                return record(event, "pellet", visited, currentDistance);
             }
 
             for (Tile neighbor : mazeGraph.getAdjList().get(current)) {
@@ -43,10 +45,12 @@ public class ShortestPathFinder {
             }
         }
 
-        return Integer.MAX_VALUE; // No pellet found
+        return record(event, "pellet", visited, Integer.MAX_VALUE); // No pellet found
     }
 
     public int getDistanceToNearestGhost(Tile startTile) {
+        PathQueryEvent event = new PathQueryEvent();
+        event.begin();
         Queue<Tile> queue = new LinkedList<>();
         Set<Tile> visited = new HashSet<>();
         Map<Tile, Integer> distance = new HashMap<>();
@@ -60,9 +64,9 @@ public class ShortestPathFinder {
             int currentDistance = distance.get(current);
 
             // Check if the current tile has a ghost
-            for (Entity entity : current.getMaze().getEntities()) {
-                if (entity instanceof GhostEntity && entity.getTilePosition().equals(current.getPosition())) {
-                    return currentDistance;
+            for (GhostEntity entity : current.getMaze().getGhosts()) {
+                if (entity.getTileX() == current.getPosition().x() && entity.getTileY() == current.getPosition().y()) {
+                    return record(event, "ghost", visited, currentDistance);
                 }
             }
 
@@ -75,7 +79,7 @@ public class ShortestPathFinder {
             }
         }
 
-        return Integer.MAX_VALUE; // No ghost found
+        return record(event, "ghost", visited, Integer.MAX_VALUE); // No ghost found
     }
 
     private List<Tile> getAdjacentTiles(Tile startTile) {
@@ -83,6 +87,8 @@ public class ShortestPathFinder {
     }
 
     public Pair<Integer, Direction> getDistanceAndDirectionToNearestPowerPellet(Tile startTile) {
+        PathQueryEvent event = new PathQueryEvent();
+        event.begin();
         Queue<Tile> queue = new LinkedList<>();
         Set<Tile> visited = new HashSet<>();
         Map<Tile, Integer> distance = new HashMap<>();
@@ -104,7 +110,7 @@ public class ShortestPathFinder {
             int currentDistance = distance.get(current);
             if (current.getState() == TileState.POWER_PELLET) {
                 Direction initialDirection = directionMap.get(current);
-                return new Pair<>(currentDistance, initialDirection);
+                return new Pair<>(record(event, "power_pellet", visited, currentDistance), initialDirection);
             }
             for (Tile neighbor : getAdjacentTiles(current)) {
                 if (!visited.contains(neighbor) && neighbor.getState().isPassable()) {
@@ -115,93 +121,12 @@ public class ShortestPathFinder {
                 }
             }
         }
-        return new Pair<>(Integer.MAX_VALUE, null); // No PowerPellet found
+        return new Pair<>(record(event, "power_pellet", visited, Integer.MAX_VALUE), null); // No PowerPellet found
     }
 
-    public boolean dfsCheckForGhost(Tile startTile, Tile directionTile) {
-        Set<Tile> visited = new HashSet<>();
-        visited.add(startTile); // Mark Pacman's current position as visited
-        Tile current = directionTile; // Start from the tile in the specified direction
-
-        int counter = 0;
-
-        // Traverse through the hallway until a root is found
-        while (getUnvisitedNeighborCount(current, visited) == 1) {
-            counter++;
-            // Check for a ghost immediately upon visiting each tile
-            if (containsGhost(current)) {
-                System.out.printf("Ghost found at %s\n", current.getPosition());
-                return true;
-            }
-
-            // Move to the next tile in the hallway
-            for (Tile neighbor : mazeGraph.getAdjList().get(current)) {
-                if (!visited.contains(neighbor)) {
-                    visited.add(neighbor);
-                    current = neighbor;
-                    break;
-                }
-            }
-        }
-
-        if (counter > 8) {
-            return false; // No ghost found within 8 tiles
-        }
-
-        // Check the current tile (root) for a ghost
-        if (containsGhost(current)) {
-            System.out.printf("Ghost found at %s\n", current.getPosition());
-            return true;
-        }
-
-        // Start a countdown when a root is reached
-        int countdown = 2;
-        Stack<Tile> stack = new Stack<>();
-        stack.push(current);
-
-        while (!stack.isEmpty() && countdown > 0) {
-            Tile tile = stack.pop();
-            visited.add(tile);
-
-            // Check for a ghost on every visited tile during countdown
-            if (containsGhost(tile)) {
-                System.out.printf("Ghost found at %s\n", tile.getPosition());
-                return true;
-            }
-
-            // Add unvisited neighbors to the stack
-            for (Tile neighbor : mazeGraph.getAdjList().get(tile)) {
-                if (!visited.contains(neighbor)) {
-                    stack.push(neighbor);
-                    visited.add(neighbor);
-                }
-            }
-
-            // Decrease the countdown after expanding one depth level
-            countdown--;
-        }
-
-        return false; // No ghost found within two tiles from the root
-    }
-
-
-
-    private boolean containsGhost(Tile t){
-        for (Entity entity : t.getMaze().getEntities()) {
-            if (entity instanceof GhostEntity && entity.getTilePosition().equals(t.getPosition())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private int getUnvisitedNeighborCount(Tile tile, Set<Tile> visited) {
-        int count = 0;
-        for (Tile neighbor : mazeGraph.getAdjList().get(tile)) {
-            if (!visited.contains(neighbor)) {
-                count++;
-            }
-        }
-        return count;
+    private static int record(PathQueryEvent event, String type, Set<Tile> visited, int distance) {
+        if (event.isRecorded())
+            event.end("ShortestPathFinder", type, visited.size(), distance);
+        return distance;
     }
 }
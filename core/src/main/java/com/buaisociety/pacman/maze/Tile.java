@@ -2,24 +2,24 @@ package com.buaisociety.pacman.maze;
 
 import com.buaisociety.pacman.entity.Direction;
 import org.jetbrains.annotations.NotNull;
-import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
-import java.util.Objects;
-
 /**
  * Represents a tile in the maze.
+ *
+ * <p>Tiles are lightweight views: the state of the tile is stored in the
+ * {@link Maze}, and its geometry in the {@link MazeTemplate}. Two views of the
+ * same tile in the same maze are {@link #equals(Object) equal}, so tiles can
+ * still be used as map keys.
  */
 public class Tile {
 
     private final @NotNull Maze maze;
-    private final @NotNull Vector2i position;
-    private @NotNull TileState state;
+    private final int index;
 
-    public Tile(@NotNull Maze maze, @NotNull Vector2i position, @NotNull TileState state) {
+    Tile(@NotNull Maze maze, int index) {
         this.maze = maze;
-        this.position = position;
-        this.state = state;
+        this.index = index;
     }
 
     /**
@@ -31,6 +31,15 @@ public class Tile {
         return maze;
     }
 
+    /**
+     * Returns the index of this tile in the maze, <code>y * width + x</code>.
+     *
+     * @return the index of this tile.
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Returns the tile coordinates of this tile.
      *
@@ -39,7 +48,7 @@ public class Tile {
      * @return the tile coordinates of this tile.
      */
     public @NotNull Vector2ic getPosition() {
-        return position;
+        return maze.getTemplate().getPosition(index);
     }
 
     /**
@@ -48,7 +57,7 @@ public class Tile {
      * @return the current state of the tile.
      */
     public @NotNull TileState getState() {
-        return state;
+        return maze.getTileState(index);
     }
 
     /**
@@ -61,7 +70,7 @@ public class Tile {
      * @param state the new state of the tile.
      */
     public void setState(@NotNull TileState state) {
-        this.state = state;
+        maze.setTileState(index, state);
     }
 
     /**
@@ -70,12 +79,10 @@ public class Tile {
      * <p>Since each tile is a 8x8 grid, the original Pacman game arbitrarily
      * defines the center to be the pixel in the bottom-left corner of the center.
      *
-     * @return the position of the center pixel of this tile
+     * @return the position of the center pixel of this tile, read-only
      */
-    public @NotNull Vector2i getCenterPixel() {
-        int x = position.x * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
-        int y = position.y * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
-        return new Vector2i(x, y);
+    public @NotNull Vector2ic getCenterPixel() {
+        return maze.getTemplate().getCenterPixel(index);
     }
 
     /**
@@ -85,7 +92,7 @@ public class Tile {
      * @return the neighbor tile in the given direction
      */
     public @NotNull Tile getNeighbor(@NotNull Direction direction) {
-        return maze.getTile(position.x + direction.getDx(), position.y + direction.getDy());
+        return new Tile(maze, maze.getTemplate().getNeighbor(index, direction));
     }
 
     @Override
@@ -93,12 +100,12 @@ public class Tile {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Tile tile = (Tile) o;
-        return Objects.equals(maze, tile.maze) && Objects.equals(position, tile.position);
+        return maze == tile.maze && index == tile.index;
     }
 
     public @NotNull Direction getDirectionTo(@NotNull Tile targetTile) {
-        int dx = targetTile.getPosition().x() - this.position.x;
-        int dy = targetTile.getPosition().y() - this.position.y;
+        int dx = targetTile.getPosition().x() - getPosition().x();
+        int dy = targetTile.getPosition().y() - getPosition().y();
 
         if (Math.abs(dx) > Math.abs(dy)) {
             return dx > 0 ? Direction.RIGHT : Direction.LEFT;
@@ -109,6 +116,7 @@ public class Tile {
 
     @Override
     public int hashCode() {
-        return Objects.hash(maze, position);
+        // Tiles are only ever mixed within 1 maze, so the index is enough
+        return index;
     }
 }
@@ -0,0 +1,56 @@
+package com.buaisociety.pacman.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A Java Flight Recorder event marking the end of a generation, committed by
+ * {@link Metrics#endGeneration()}. The generation started long before, on
+ * other threads, so this is an instant event that carries the length of the
+ * generation as a field. Disabled by default, see {@link TickEvent}.
+ */
+@Name("pacman.Generation")
+@Label("Generation End")
+@Category({"Pacman", "Training"})
+@Description("The end of a generation of training")
+@Enabled(false)
+@StackTrace(false)
+public class GenerationEvent extends Event {
+
+    @Label("Generation")
+    int generation;
+
+    @Label("Generation Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long generationNanos;
+
+    @Label("Games")
+    long games;
+
+    @Label("Ticks")
+    long ticks;
+
+    /**
+     * Commits an event for the generation, if the event is enabled.
+     *
+     * @param metrics the metrics of the generation that ended
+     */
+    static void commit(@NotNull GenerationMetrics metrics) {
+        GenerationEvent event = new GenerationEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.generation = metrics.getGeneration();
+        event.generationNanos = metrics.getWallNanos();
+        event.games = metrics.getGames();
+        event.ticks = metrics.getTicks();
+        event.commit();
+    }
+}
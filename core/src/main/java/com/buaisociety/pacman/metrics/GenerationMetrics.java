@@ -0,0 +1,200 @@
+package com.buaisociety.pacman.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Everything {@link Metrics} recorded during 1 generation.
+ */
+public final class GenerationMetrics {
+
+    private static final @NotNull ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int generation;
+    private final long wallNanos;
+    private final long ticks;
+    private final long games;
+    private final @NotNull long[] phaseNanos;  // indexed by Phase ordinal
+    private final @NotNull long[] phaseCalls;
+    private final long allocatedBytes;
+
+    GenerationMetrics(int generation, long wallNanos, long ticks, long games, @NotNull long[] phaseNanos, @NotNull long[] phaseCalls, long allocatedBytes) {
+        this.generation = generation;
+        this.wallNanos = wallNanos;
+        this.ticks = ticks;
+        this.games = games;
+        this.phaseNanos = phaseNanos;
+        this.phaseCalls = phaseCalls;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns the number of this generation, counting from 0 when the
+     * program started.
+     *
+     * @return the generation number
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public double getSeconds() {
+        return wallNanos / 1e9;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the ticks of every game together per second of wall time.
+     *
+     * @return the aggregate ticks per second
+     */
+    public double getTicksPerSecond() {
+        return wallNanos == 0 ? 0 : ticks / getSeconds();
+    }
+
+    /**
+     * Returns how fast 1 game ticks on 1 thread: ticks per second spent in
+     * {@link Phase#UPDATE} and {@link Phase#POST_UPDATE}. Comparing this to
+     * {@link #getTicksPerSecond()} shows how well the games scale across
+     * threads.
+     *
+     * @return the ticks per second of 1 game
+     */
+    public double getTicksPerSecondPerGame() {
+        long busy = getNanos(Phase.UPDATE) + getNanos(Phase.POST_UPDATE);
+        return busy == 0 ? 0 : ticks / (busy / 1e9);
+    }
+
+    public double getGenerationsPerHour() {
+        return wallNanos == 0 ? 0 : 3600 / getSeconds();
+    }
+
+    /**
+     * Returns the bytes allocated during this generation by threads that are
+     * still alive.
+     *
+     * @return the allocated bytes, or -1 if they could not be measured
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getNanos(@NotNull Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getCalls(@NotNull Phase phase) {
+        return phaseCalls[phase.ordinal()];
+    }
+
+    /**
+     * Returns the time spent updating entities, not counting computing
+     * features and running the network.
+     *
+     * @return the nanoseconds spent in entity updates
+     */
+    public long getEntityUpdateNanos() {
+        return Math.max(0, getNanos(Phase.UPDATE) - getNanos(Phase.FEATURES) - getNanos(Phase.INFERENCE));
+    }
+
+    /**
+     * Returns every metric by name, in a fixed order. These are the columns
+     * of the CSV file and the fields of the JSON lines, see {@link MetricsLog}.
+     *
+     * @return the metrics by name
+     */
+    public @NotNull Map<String, Number> toMap() {
+        Map<String, Number> map = new LinkedHashMap<>();
+        map.put("generation", generation);
+        map.put("seconds", round(getSeconds()));
+        map.put("games", games);
+        map.put("ticks", ticks);
+        map.put("ticks_per_second", round(getTicksPerSecond()));
+        map.put("ticks_per_second_per_game", round(getTicksPerSecondPerGame()));
+        map.put("generations_per_hour", round(getGenerationsPerHour()));
+        map.put("allocated_mb", allocatedBytes < 0 ? -1 : round(allocatedBytes / 1e6));
+        map.put("allocation_mb_per_second", allocatedBytes < 0 || wallNanos == 0 ? -1 : round(allocatedBytes / 1e6 / getSeconds()));
+        map.put("entity_update_ms", round(getEntityUpdateNanos() / 1e6));
+        for (Phase phase : Phase.values()) {
+            map.put(phase.getKey() + "_ms", round(getNanos(phase) / 1e6));
+            map.put(phase.getKey() + "_calls", getCalls(phase));
+        }
+        return map;
+    }
+
+    /**
+     * Returns the names of the CSV columns, see {@link #toMap()}.
+     *
+     * @return the CSV header, without a line break
+     */
+    public @NotNull String toCsvHeader() {
+        return String.join(",", toMap().keySet());
+    }
+
+    /**
+     * Returns this generation as a CSV row, see {@link #toCsvHeader()}.
+     *
+     * @return the CSV row, without a line break
+     */
+    public @NotNull String toCsvRow() {
+        List<String> values = new ArrayList<>();
+        for (Number value : toMap().values())
+            values.add(value.toString());
+        return String.join(",", values);
+    }
+
+    /**
+     * Returns this generation as a JSON object on 1 line.
+     *
+     * @return the JSON line, without a line break
+     */
+    public @NotNull String toJson() {
+        ObjectNode node = MAPPER.createObjectNode();
+        for (Map.Entry<String, Number> entry : toMap().entrySet()) {
+            Number value = entry.getValue();
+            if (value instanceof Double)
+                node.put(entry.getKey(), value.doubleValue());
+            else
+                node.put(entry.getKey(), value.longValue());
+        }
+        return node.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.ROOT,
+            "Generation %d: %.1fs, %d games, %.0f ticks/s (%.0f per game), %.1f generations/hour",
+            generation, getSeconds(), games, getTicksPerSecond(), getTicksPerSecondPerGame(), getGenerationsPerHour()));
+        if (allocatedBytes >= 0)
+            builder.append(String.format(Locale.ROOT, ", %.0f MB/s allocated", allocatedBytes / 1e6 / getSeconds()));
+
+        builder.append(String.format(Locale.ROOT, "%n  entity_update %.1f ms", getEntityUpdateNanos() / 1e6));
+        for (Phase phase : Phase.values()) {
+            if (phase != Phase.UPDATE)
+                builder.append(String.format(Locale.ROOT, ", %s %.1f ms", phase.getKey(), getNanos(phase) / 1e6));
+        }
+        return builder.toString();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
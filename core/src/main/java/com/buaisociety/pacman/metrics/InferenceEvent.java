@@ -0,0 +1,46 @@
+package com.buaisociety.pacman.metrics;
+
+import com.buaisociety.pacman.feature.LiveInputs;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A Java Flight Recorder event for 1 evaluation of pacman's neural network,
+ * including waiting for other games that share the same network. Disabled
+ * by default, see {@link TickEvent}.
+ */
+@Name("pacman.Inference")
+@Label("Network Evaluation")
+@Category({"Pacman", "Neural Network"})
+@Description("1 evaluation of a client's neural network")
+@Enabled(false)
+@StackTrace(false)
+public class InferenceEvent extends Event {
+
+    @Label("Inputs")
+    int inputs;
+
+    @Label("Live Inputs")
+    @Description("The inputs that were computed, the rest have no path to an output")
+    int liveInputs;
+
+    /**
+     * Ends the event, and commits it if it is enabled.
+     *
+     * @param inputs the number of inputs of the network
+     * @param liveInputs which inputs were computed, or null if all of them were
+     */
+    public void end(int inputs, @Nullable boolean[] liveInputs) {
+        if (shouldCommit()) {
+            this.inputs = inputs;
+            this.liveInputs = liveInputs == null ? inputs : LiveInputs.count(liveInputs);
+            commit();
+        }
+    }
+}
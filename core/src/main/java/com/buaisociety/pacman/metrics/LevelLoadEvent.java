@@ -0,0 +1,43 @@
+package com.buaisociety.pacman.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for loading a level, see
+ * {@link com.buaisociety.pacman.GameManager#nextLevel()}. Disabled by
+ * default, see {@link TickEvent}.
+ */
+@Name("pacman.LevelLoad")
+@Label("Level Load")
+@Category({"Pacman", "Simulation"})
+@Description("Loading the maze of the next level and spawning its entities")
+@Enabled(false)
+@StackTrace(false)
+public class LevelLoadEvent extends Event {
+
+    @Label("Game Id")
+    int gameId;
+
+    @Label("Level")
+    int level;
+
+    /**
+     * Ends the event, and commits it if it is enabled.
+     *
+     * @param gameId the id of the game, see {@link com.buaisociety.pacman.GameManager.Config#id}
+     * @param level the level that was loaded
+     */
+    public void end(int gameId, int level) {
+        if (shouldCommit()) {
+            this.gameId = gameId;
+            this.level = level;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.buaisociety.pacman.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts ticks and times the {@link Phase phases} of training, across every
+ * game and thread, so throughput can be compared between commits and
+ * machines.
+ *
+ * <p>Code that runs a phase records how long it took:
+ * <pre>{@code
+ * long start = System.nanoTime();
+ * neat.evolve();
+ * Metrics.record(Phase.EVOLVE, start);
+ * }</pre>
+ * and once per generation, {@link #endGeneration()} returns everything
+ * recorded since the last generation and starts over. Use
+ * {@link MetricsLog} to write the results to a file.
+ *
+ * <p>For profiling, the same work is also labelled with Java Flight Recorder
+ * events (see {@link TickEvent}), which are disabled by default.
+ */
+public final class Metrics {
+
+    private static final @NotNull Phase[] PHASES = Phase.values();
+    private static final @NotNull LongAdder[] NANOS = new LongAdder[PHASES.length];
+    private static final @NotNull LongAdder[] CALLS = new LongAdder[PHASES.length];
+    private static final @NotNull LongAdder TICKS = new LongAdder();
+    private static final @NotNull LongAdder GAMES = new LongAdder();
+
+    private static int generation;
+    private static long generationStartNanos = System.nanoTime();
+    private static long generationStartBytes = allocatedBytes();
+
+    static {
+        for (int i = 0; i < PHASES.length; i++) {
+            NANOS[i] = new LongAdder();
+            CALLS[i] = new LongAdder();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Records 1 run of a phase that started at <code>startNanos</code> and
+     * ended now.
+     *
+     * @param phase the phase that ran
+     * @param startNanos the {@link System#nanoTime()} when the phase started
+     */
+    public static void record(@NotNull Phase phase, long startNanos) {
+        recordNanos(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records 1 run of a phase that took <code>nanos</code>.
+     *
+     * @param phase the phase that ran
+     * @param nanos how long it took
+     */
+    public static void recordNanos(@NotNull Phase phase, long nanos) {
+        NANOS[phase.ordinal()].add(nanos);
+        CALLS[phase.ordinal()].increment();
+    }
+
+    /**
+     * Counts 1 tick of 1 game.
+     */
+    public static void tick() {
+        TICKS.increment();
+    }
+
+    /**
+     * Counts a new game.
+     */
+    public static void gameStarted() {
+        GAMES.increment();
+    }
+
+    /**
+     * Returns the metrics recorded since the last call (or since the program
+     * started), and resets every counter for the next generation.
+     *
+     * <p>Games still running keep recording while this runs, so call it
+     * between generations.
+     *
+     * @return the metrics of the generation that ended
+     */
+    public static synchronized @NotNull GenerationMetrics endGeneration() {
+        long now = System.nanoTime();
+        long bytes = allocatedBytes();
+
+        long[] nanos = new long[PHASES.length];
+        long[] calls = new long[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            nanos[i] = NANOS[i].sumThenReset();
+            calls[i] = CALLS[i].sumThenReset();
+        }
+
+        // Threads that ended take their allocations with them, so this can
+        // come out negative. Report unknown instead
+        long allocated = bytes < 0 || generationStartBytes < 0 || bytes < generationStartBytes ? -1 : bytes - generationStartBytes;
+        GenerationMetrics metrics = new GenerationMetrics(generation++, now - generationStartNanos,
+            TICKS.sumThenReset(), GAMES.sumThenReset(), nanos, calls, allocated);
+
+        generationStartNanos = now;
+        generationStartBytes = bytes;
+        GenerationEvent.commit(metrics);
+        return metrics;
+    }
+
+    /**
+     * Returns the bytes allocated so far by every live thread, using the
+     * HotSpot extension of {@link ThreadMXBean}.
+     *
+     * @return the allocated bytes, or -1 if this JVM cannot measure them
+     */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean hotspot) || !hotspot.isThreadAllocatedMemorySupported())
+            return -1;
+        if (!hotspot.isThreadAllocatedMemoryEnabled())
+            hotspot.setThreadAllocatedMemoryEnabled(true);
+
+        long total = 0;
+        for (long bytes : hotspot.getThreadAllocatedBytes(hotspot.getAllThreadIds())) {
+            if (bytes > 0)
+                total += bytes;
+        }
+        return total;
+    }
+}
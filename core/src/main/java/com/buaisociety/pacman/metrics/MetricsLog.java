@@ -0,0 +1,52 @@
+package com.buaisociety.pacman.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Appends the metrics of each generation to <code>metrics.csv</code> and
+ * <code>metrics.jsonl</code> (1 JSON object per line) in a folder, e.g. the
+ * save folder of a training run.
+ */
+public class MetricsLog {
+
+    private final @NotNull File csvFile;
+    private final @NotNull File jsonFile;
+
+    public MetricsLog(@NotNull File folder) {
+        folder.mkdirs();
+        this.csvFile = new File(folder, "metrics.csv");
+        this.jsonFile = new File(folder, "metrics.jsonl");
+    }
+
+    /**
+     * Appends 1 generation to both files. The CSV header is written when the
+     * file is created. Errors are printed, not thrown, so a full disk does not
+     * stop training.
+     *
+     * @param metrics the generation to write
+     */
+    public void write(@NotNull GenerationMetrics metrics) {
+        boolean newCsv = !csvFile.exists() || csvFile.length() == 0;
+        try (Writer csv = new FileWriter(csvFile, true); Writer json = new FileWriter(jsonFile, true)) {
+            if (newCsv)
+                csv.write(metrics.toCsvHeader() + System.lineSeparator());
+            csv.write(metrics.toCsvRow() + System.lineSeparator());
+            json.write(metrics.toJson() + System.lineSeparator());
+        } catch (IOException e) {
+            System.err.println("Could not write metrics to " + csvFile.getParent() + ": " + e.getMessage());
+        }
+    }
+
+    public @NotNull File getCsvFile() {
+        return csvFile;
+    }
+
+    public @NotNull File getJsonFile() {
+        return jsonFile;
+    }
+}
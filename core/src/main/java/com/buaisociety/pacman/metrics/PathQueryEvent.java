@@ -0,0 +1,65 @@
+package com.buaisociety.pacman.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A Java Flight Recorder event for 1 path finding query, by
+ * {@link com.buaisociety.pacman.maze.BitboardPathFinder} or
+ * {@link com.buaisociety.pacman.maze.ShortestPathFinder}. Disabled by
+ * default, see {@link TickEvent}.
+ */
+@Name("pacman.PathQuery")
+@Label("Path Query")
+@Category({"Pacman", "Path Finding"})
+@Description("A search for the nearest pellet, ghost, or power pellet")
+@Enabled(false)
+@StackTrace(false)
+public class PathQueryEvent extends Event {
+
+    @Label("Finder")
+    String finder;
+
+    @Label("Type")
+    @Description("What the query searched for, e.g. pellet or ghost")
+    String type;
+
+    @Label("Nodes Visited")
+    int nodesVisited;
+
+    @Label("Distance")
+    @Description("The distance found, or -1 if nothing was reachable")
+    int distance;
+
+    /**
+     * Returns true if this event will be recorded, so callers can skip
+     * computing the fields otherwise.
+     *
+     * @return true if the event should be committed
+     */
+    public boolean isRecorded() {
+        return shouldCommit();
+    }
+
+    /**
+     * Ends the event and commits it. Call {@link #isRecorded()} first.
+     *
+     * @param finder the simple name of the path finder
+     * @param type what the query searched for
+     * @param nodesVisited the number of tiles the search visited
+     * @param distance the distance found, or {@link Integer#MAX_VALUE} if nothing was reachable
+     */
+    public void end(@NotNull String finder, @NotNull String type, int nodesVisited, int distance) {
+        this.finder = finder;
+        this.type = type;
+        this.nodesVisited = nodesVisited;
+        this.distance = distance == Integer.MAX_VALUE ? -1 : distance;
+        commit();
+    }
+}
@@ -0,0 +1,67 @@
+package com.buaisociety.pacman.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A part of training that {@link Metrics} times separately.
+ */
+public enum Phase {
+
+    /**
+     * {@link com.buaisociety.pacman.GameManager#update()}, which updates every
+     * entity. This includes {@link #FEATURES} and {@link #INFERENCE}, which
+     * are reported on their own and subtracted out as <code>entity_update</code>.
+     */
+    UPDATE("update"),
+
+    /**
+     * Computing the inputs of pacman's neural network.
+     */
+    FEATURES("features"),
+
+    /**
+     * Running pacman's neural network.
+     */
+    INFERENCE("inference"),
+
+    /**
+     * {@link com.buaisociety.pacman.GameManager#postUpdate()}, which checks
+     * for wins and losses and starts the next level.
+     */
+    POST_UPDATE("post_update"),
+
+    /**
+     * Drawing the visible games.
+     */
+    RENDER("render"),
+
+    /**
+     * Disposing the games of the last generation and creating the next ones.
+     */
+    RESET("reset"),
+
+    /**
+     * Evolving the population after a generation.
+     */
+    EVOLVE("evolve"),
+
+    /**
+     * Saving the population after a generation.
+     */
+    SAVE("save");
+
+    private final @NotNull String key;
+
+    Phase(@NotNull String key) {
+        this.key = key;
+    }
+
+    /**
+     * Returns the name of this phase in the metrics files.
+     *
+     * @return the snake case name
+     */
+    public @NotNull String getKey() {
+        return key;
+    }
+}
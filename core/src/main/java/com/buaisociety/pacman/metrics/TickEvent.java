@@ -0,0 +1,50 @@
+package com.buaisociety.pacman.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for 1 tick of 1 game, see
+ * {@link com.buaisociety.pacman.GameManager#update()}.
+ *
+ * <p>Like every event in this package, this is disabled by default, so it
+ * costs (almost) nothing until a recording turns it on, e.g.
+ * <pre>
+ * -XX:StartFlightRecording:filename=training.jfr,+pacman.Tick#enabled=true,+pacman.PathQuery#enabled=true,+pacman.Inference#enabled=true,+pacman.LevelLoad#enabled=true,+pacman.Generation#enabled=true
+ * </pre>
+ * Ticks are very frequent, so record them with a threshold (e.g.
+ * <code>+pacman.Tick#threshold=1ms</code>) to only keep the slow ones.
+ */
+@Name("pacman.Tick")
+@Label("Game Tick")
+@Category({"Pacman", "Simulation"})
+@Description("1 update of every entity in 1 game")
+@Enabled(false)
+@StackTrace(false)
+public class TickEvent extends Event {
+
+    @Label("Game Id")
+    int gameId;
+
+    @Label("Level")
+    int level;
+
+    /**
+     * Ends the event, and commits it if it is enabled and slow enough.
+     *
+     * @param gameId the id of the game, see {@link com.buaisociety.pacman.GameManager.Config#id}
+     * @param level the level being played
+     */
+    public void end(int gameId, int level) {
+        if (shouldCommit()) {
+            this.gameId = gameId;
+            this.level = level;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.buaisociety.pacman.sprite;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Loads each texture and compiles each shader once, no matter how many
+ * sprite sheets use it.
+ *
+ * <p>Every game used to load its own copy of every sprite (and every ghost
+ * its own copy of the ghost sprite), so 250 games held thousands of copies
+ * of the same few textures. Now sprite sheets are lightweight views of a
+ * shared texture: each one {@link #acquireTexture(String) acquires} the
+ * texture when it is first drawn, and {@link #releaseTexture(String)
+ * releases} it when disposed. The texture is disposed once the last sheet
+ * using it has released it.
+ *
+ * <p>Acquire and release from the render thread, since loading and
+ * disposing textures needs the OpenGL context.
+ */
+public final class Assets {
+
+    private static final @NotNull Map<String, Entry<Texture>> textures = new HashMap<>();
+    private static final @NotNull Map<String, Entry<ShaderProgram>> shaders = new HashMap<>();
+
+    private Assets() {
+    }
+
+    /**
+     * Returns the texture at the given internal path, loading it if no one
+     * else is using it. Every call must be matched by a call to
+     * {@link #releaseTexture(String)}.
+     *
+     * @param path the internal path of the texture, e.g. <code>"sprites/pellet.png"</code>
+     * @return the shared texture
+     */
+    public static synchronized @NotNull Texture acquireTexture(@NotNull String path) {
+        Entry<Texture> entry = textures.computeIfAbsent(path, key -> new Entry<>(new Texture(key)));
+        entry.references++;
+        return entry.asset;
+    }
+
+    /**
+     * Releases a texture acquired with {@link #acquireTexture(String)}, and
+     * disposes it if this was the last reference.
+     *
+     * @param path the internal path of the texture
+     * @throws IllegalStateException if the texture is not acquired
+     */
+    public static synchronized void releaseTexture(@NotNull String path) {
+        release(textures, path, Texture::dispose);
+    }
+
+    /**
+     * Returns the shader compiled from the given internal paths, compiling
+     * it if no one else is using it. Every call must be matched by a call to
+     * {@link #releaseShader(String, String)}.
+     *
+     * @param vertexPath the internal path of the vertex shader
+     * @param fragmentPath the internal path of the fragment shader
+     * @return the shared shader
+     * @throws RuntimeException if the shader does not compile
+     */
+    public static synchronized @NotNull ShaderProgram acquireShader(@NotNull String vertexPath, @NotNull String fragmentPath) {
+        Entry<ShaderProgram> entry = shaders.get(shaderKey(vertexPath, fragmentPath));
+        if (entry == null) {
+            ShaderProgram.pedantic = false;
+            ShaderProgram shader = new ShaderProgram(Gdx.files.internal(vertexPath), Gdx.files.internal(fragmentPath));
+            if (!shader.isCompiled()) {
+                String log = shader.getLog();
+                shader.dispose();
+                throw new RuntimeException("Shader compile error: " + log);
+            }
+            entry = new Entry<>(shader);
+            shaders.put(shaderKey(vertexPath, fragmentPath), entry);
+        }
+        entry.references++;
+        return entry.asset;
+    }
+
+    /**
+     * Releases a shader acquired with {@link #acquireShader(String, String)},
+     * and disposes it if this was the last reference.
+     *
+     * @param vertexPath the internal path of the vertex shader
+     * @param fragmentPath the internal path of the fragment shader
+     * @throws IllegalStateException if the shader is not acquired
+     */
+    public static synchronized void releaseShader(@NotNull String vertexPath, @NotNull String fragmentPath) {
+        release(shaders, shaderKey(vertexPath, fragmentPath), ShaderProgram::dispose);
+    }
+
+    /**
+     * Returns how many textures are loaded right now. Useful to check that
+     * sprite sheets are disposed.
+     *
+     * @return the number of loaded textures
+     */
+    public static synchronized int getLoadedTextures() {
+        return textures.size();
+    }
+
+    private static <T> void release(@NotNull Map<String, Entry<T>> assets, @NotNull String key, @NotNull Consumer<T> dispose) {
+        Entry<T> entry = assets.get(key);
+        if (entry == null)
+            throw new IllegalStateException("Released " + key + " more times than it was acquired");
+
+        if (--entry.references == 0) {
+            assets.remove(key);
+            dispose.accept(entry.asset);
+        }
+    }
+
+    private static @NotNull String shaderKey(@NotNull String vertexPath, @NotNull String fragmentPath) {
+        return vertexPath + "|" + fragmentPath;
+    }
+
+    private static final class Entry<T> {
+        private final @NotNull T asset;
+        private int references;
+
+        private Entry(@NotNull T asset) {
+            this.asset = asset;
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package com.buaisociety.pacman.sprite;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.buaisociety.pacman.util.Disposable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
@@ -15,9 +14,9 @@ public class CutoutSpriteSheet implements Disposable {
     private final @NotNull Vector2i tileSize;
     private final @NotNull Vector2i tiles;
     private final @NotNull Vector2i currentTile;
+    private final @Nullable String texturePath;
 
-    private final @NotNull TextureRegion currentTileRegion;
-    private final @NotNull ShaderProgram shader;
+    private @Nullable TextureRegion currentTileRegion;
 
     public CutoutSpriteSheet(@NotNull Texture texture, int tileSize) {
         this(texture, new Vector2i(tileSize, tileSize));
@@ -25,15 +24,40 @@ public class CutoutSpriteSheet implements Disposable {
 
     public CutoutSpriteSheet(@NotNull Texture texture, @NotNull Vector2i tileSize) {
         this.tileSize = tileSize;
-        this.tiles = new Vector2i(texture.getWidth() / tileSize.x, texture.getHeight() / tileSize.y);
+        this.tiles = new Vector2i();
         this.currentTile = new Vector2i();
-        this.currentTileRegion = new TextureRegion(texture);
+        this.texturePath = null;
+        setTexture(texture);
+    }
+
+    /**
+     * Creates a sprite sheet that loads its texture from the given internal
+     * path the first time it is drawn.
+     *
+     * @param texturePath the internal path of the texture, e.g. <code>"sprites/fruit-sprite.png"</code>
+     * @param tileSize the width and height of each tile, in pixels
+     * @see GrayscaleSpriteSheet#GrayscaleSpriteSheet(String, int)
+     */
+    public CutoutSpriteSheet(@NotNull String texturePath, int tileSize) {
+        this.tileSize = new Vector2i(tileSize, tileSize);
+        this.tiles = new Vector2i();
+        this.currentTile = new Vector2i();
+        this.texturePath = texturePath;
+    }
 
-        ShaderProgram.pedantic = false;
-        shader = new ShaderProgram(Gdx.files.internal("shaders/grayscale.vert"), Gdx.files.internal("shaders/cutout.frag"));
-        if (!shader.isCompiled()) {
-            throw new RuntimeException("Shader compile error: " + shader.getLog());
+    private void setTexture(@NotNull Texture texture) {
+        tiles.set(texture.getWidth() / tileSize.x, texture.getHeight() / tileSize.y);
+        currentTileRegion = new TextureRegion(texture);
+        currentTileRegion.setRegion(currentTile.x * tileSize.x, currentTile.y * tileSize.y, tileSize.x, tileSize.y);
+    }
+
+    private @NotNull TextureRegion getRegion() {
+        if (currentTileRegion == null) {
+            if (texturePath == null)
+                throw new IllegalStateException("Sprite sheet has no texture");
+            setTexture(Assets.acquireTexture(texturePath));
         }
+        return currentTileRegion;
     }
 
     public @NotNull Vector2ic getTileSize() {
@@ -41,6 +65,7 @@ public class CutoutSpriteSheet implements Disposable {
     }
 
     public @NotNull Vector2ic getTiles() {
+        getRegion();
         return tiles;
     }
 
@@ -49,24 +74,47 @@ public class CutoutSpriteSheet implements Disposable {
     }
 
     public void setCurrentTile(int x, int y) {
+        TextureRegion region = getRegion();
         if (x < 0 || x >= tiles.x || y < 0 || y >= tiles.y) {
             throw new IllegalArgumentException("Invalid tile coordinates: " + x + ", " + y);
         }
 
         currentTile.set(x, y);
-        currentTileRegion.setRegion(x * tileSize.x, y * tileSize.y, tileSize.x, tileSize.y);
+        region.setRegion(x * tileSize.x, y * tileSize.y, tileSize.x, tileSize.y);
     }
 
+    /**
+     * Draws the current tile, with black pixels made transparent. Sprites
+     * drawn this way are batched together, see {@link PaletteShader}.
+     *
+     * @param batch the batch to draw with
+     * @param x the x pixel of the bottom left corner
+     * @param y the y pixel of the bottom left corner
+     */
     public void render(@NotNull SpriteBatch batch, int x, int y) {
-        batch.setShader(shader);
-        shader.bind();
-        batch.draw(currentTileRegion, x, y);
-        batch.setShader(null);
+        TextureRegion region = getRegion();
+        PaletteShader.begin(batch);
+
+        float color = batch.getPackedColor();
+        batch.setPackedColor(PaletteShader.cutoutColor());
+        batch.draw(region, x, y);
+        batch.setPackedColor(color);
     }
 
+    /**
+     * Releases the texture of this sprite sheet. Sheets created from a path
+     * share their texture (see {@link Assets}), so it is only disposed once
+     * no sheet uses it. Disposing twice does nothing.
+     */
     @Override
     public void dispose() {
-        shader.dispose();
-        currentTileRegion.getTexture().dispose();
+        if (currentTileRegion == null)
+            return;
+
+        if (texturePath != null)
+            Assets.releaseTexture(texturePath);
+        else
+            currentTileRegion.getTexture().dispose();
+        currentTileRegion = null;
     }
 }
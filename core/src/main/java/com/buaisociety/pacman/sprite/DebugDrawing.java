@@ -16,8 +16,8 @@ public final class DebugDrawing {
     private static final @NotNull GrayscaleSpriteSheet DIRECTION;
 
     static {
-        TARGET_TILE = new GrayscaleSpriteSheet(new Texture("sprites/power-pellet.png"), 8);
-        DIRECTION = new GrayscaleSpriteSheet(new Texture("sprites/directions-sprite.png"), 8);
+        TARGET_TILE = new GrayscaleSpriteSheet("sprites/power-pellet.png", 8);
+        DIRECTION = new GrayscaleSpriteSheet("sprites/directions-sprite.png", 8);
     }
 
     private DebugDrawing() {
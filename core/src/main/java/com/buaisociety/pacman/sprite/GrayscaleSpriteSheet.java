@@ -1,14 +1,13 @@
 package com.buaisociety.pacman.sprite;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.utils.Array;
 import com.buaisociety.pacman.util.Disposable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
@@ -17,10 +16,13 @@ public class GrayscaleSpriteSheet implements Disposable {
     private final @NotNull Vector2i tileSize;
     private final @NotNull Vector2i tiles;
     private final @NotNull Vector2i currentTile;
-    private final @NotNull TextureRegion currentTileRegion;
+    private final @Nullable String texturePath;
+    private @Nullable TextureRegion currentTileRegion;
 
-    private final @NotNull ShaderProgram shader;
     private final @NotNull Array<Color> colors;
+    private final @NotNull Array<Color> paletteColors = new Array<>();  // copy of the colors that paletteRow holds
+    private int paletteRow = -1;
+    private int paletteGeneration = -1;
 
     public GrayscaleSpriteSheet(@NotNull Texture texture, int tileSize) {
         this(texture, new Vector2i(tileSize, tileSize));
@@ -28,26 +30,86 @@ public class GrayscaleSpriteSheet implements Disposable {
 
     public GrayscaleSpriteSheet(@NotNull Texture texture, @NotNull Vector2i tileSize) {
         this.tileSize = tileSize;
-        this.tiles = new Vector2i(texture.getWidth() / tileSize.x, texture.getHeight() / tileSize.y);
+        this.tiles = new Vector2i();
         this.currentTile = new Vector2i();
-        this.currentTileRegion = new TextureRegion(texture);
+        this.texturePath = null;
+        setTexture(texture);
 
-        ShaderProgram.pedantic = false;
-        shader = new ShaderProgram(Gdx.files.internal("shaders/grayscale.vert"), Gdx.files.internal("shaders/grayscale.frag"));
-        if (!shader.isCompiled()) {
-            throw new RuntimeException("Shader compile error: " + shader.getLog());
-        }
+        colors = new Array<>(new Color[] {
+            Color.CLEAR, Color.PINK
+        });
+    }
+
+    /**
+     * Creates a sprite sheet that loads its texture from the given internal
+     * path the first time it is drawn. No OpenGL resources are created until
+     * then, so games can be simulated without a window.
+     *
+     * @param texturePath the internal path of the texture, e.g. <code>"sprites/pellet.png"</code>
+     * @param tileSize the width and height of each tile, in pixels
+     */
+    public GrayscaleSpriteSheet(@NotNull String texturePath, int tileSize) {
+        this(texturePath, new Vector2i(tileSize, tileSize));
+    }
+
+    /**
+     * Creates a sprite sheet that loads its texture from the given internal
+     * path the first time it is drawn. No OpenGL resources are created until
+     * then, so games can be simulated without a window. The texture is shared
+     * with every other sheet of the same path, but the current tile and
+     * colors belong to this sheet.
+     *
+     * @param texturePath the internal path of the texture, e.g. <code>"sprites/pellet.png"</code>
+     * @param tileSize the size of each tile, in pixels
+     */
+    public GrayscaleSpriteSheet(@NotNull String texturePath, @NotNull Vector2i tileSize) {
+        this.tileSize = tileSize;
+        this.tiles = new Vector2i();
+        this.currentTile = new Vector2i();
+        this.texturePath = texturePath;
 
         colors = new Array<>(new Color[] {
             Color.CLEAR, Color.PINK
         });
     }
 
+    private void setTexture(@NotNull Texture texture) {
+        tiles.set(texture.getWidth() / tileSize.x, texture.getHeight() / tileSize.y);
+        currentTileRegion = new TextureRegion(texture);
+        currentTileRegion.setRegion(currentTile.x * tileSize.x, currentTile.y * tileSize.y, tileSize.x, tileSize.y);
+    }
+
+    private @NotNull TextureRegion getRegion() {
+        if (currentTileRegion == null) {
+            if (texturePath == null)
+                throw new IllegalStateException("Sprite sheet has no texture");
+            setTexture(Assets.acquireTexture(texturePath));
+        }
+        return currentTileRegion;
+    }
+
+    private int getPaletteRow() {
+        // Colors are usually set every frame, but rarely change
+        boolean changed = paletteGeneration != PaletteShader.getGeneration() || paletteColors.size != colors.size;
+        for (int i = 0; !changed && i < colors.size; i++)
+            changed = !paletteColors.get(i).equals(colors.get(i));
+
+        if (changed) {
+            paletteRow = PaletteShader.getPaletteRow(colors);
+            paletteGeneration = PaletteShader.getGeneration();
+            paletteColors.clear();
+            for (Color color : colors)
+                paletteColors.add(new Color(color));
+        }
+        return paletteRow;
+    }
+
     public @NotNull Vector2ic getTileSize() {
         return tileSize;
     }
 
     public @NotNull Vector2ic getTiles() {
+        getRegion();
         return tiles;
     }
 
@@ -56,12 +118,13 @@ public class GrayscaleSpriteSheet implements Disposable {
     }
 
     public void setCurrentTile(int x, int y) {
+        TextureRegion region = getRegion();
         if (x < 0 || x >= tiles.x || y < 0 || y >= tiles.y) {
             throw new IllegalArgumentException("Invalid tile coordinates: " + x + ", " + y);
         }
 
         currentTile.set(x, y);
-        currentTileRegion.setRegion(x * tileSize.x, y * tileSize.y, tileSize.x, tileSize.y);
+        region.setRegion(x * tileSize.x, y * tileSize.y, tileSize.x, tileSize.y);
     }
 
     public @NotNull Array<Color> getColors() {
@@ -73,21 +136,41 @@ public class GrayscaleSpriteSheet implements Disposable {
         this.colors.addAll(colors);
     }
 
+    /**
+     * Draws the current tile, with each shade of gray replaced by a color.
+     * Sprites drawn this way are batched together, see {@link PaletteShader}.
+     *
+     * @param batch the batch to draw with
+     * @param x the x pixel of the bottom left corner
+     * @param y the y pixel of the bottom left corner
+     */
     public void render(@NotNull SpriteBatch batch, int x, int y) {
-        batch.setShader(shader);
-        shader.bind();
-        for (int i = 0; i < colors.size; i++) {
-            shader.setUniformf("u_colors[" + i + "]", colors.get(i));
-        }
-        shader.setUniformi("u_numColors", colors.size);
+        TextureRegion region = getRegion();
+
+        // Look up the row first, so begin() uploads it if it is new
+        int row = getPaletteRow();
+        PaletteShader.begin(batch);
 
-        batch.draw(currentTileRegion, x, y);
-        batch.setShader(null);
+        float color = batch.getPackedColor();
+        batch.setPackedColor(PaletteShader.paletteColor(row, colors.size));
+        batch.draw(region, x, y);
+        batch.setPackedColor(color);
     }
 
+    /**
+     * Releases the texture of this sprite sheet. Sheets created from a path
+     * share their texture (see {@link Assets}), so it is only disposed once
+     * no sheet uses it. Disposing twice does nothing.
+     */
     @Override
     public void dispose() {
-        shader.dispose();
-        currentTileRegion.getTexture().dispose();
+        if (currentTileRegion == null)
+            return;
+
+        if (texturePath != null)
+            Assets.releaseTexture(texturePath);
+        else
+            currentTileRegion.getTexture().dispose();
+        currentTileRegion = null;
     }
 }
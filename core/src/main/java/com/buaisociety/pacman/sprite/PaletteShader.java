@@ -0,0 +1,201 @@
+package com.buaisociety.pacman.sprite;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One shader shared by every sprite sheet, so sprites with different colors
+ * can be drawn in the same batch.
+ *
+ * <p>Palettes are stored as rows of a small texture. Instead of uniforms
+ * (which would flush the batch for every sprite), each sprite passes its
+ * palette through its vertex color: red is the palette row, green is the
+ * number of colors, and blue is the draw mode. Changing the batch color
+ * does not flush the batch.
+ *
+ * <p>The shader stays set on the batch until {@link #end(SpriteBatch)}, so
+ * only texture switches flush the batch. Use {@link SpriteBatch#renderCalls}
+ * to count the draw calls.
+ */
+public final class PaletteShader {
+
+    /**
+     * The maximum number of colors in a palette.
+     */
+    public static final int MAX_COLORS = 16;
+
+    /**
+     * The maximum number of distinct palettes, limited by the 8 bits of the
+     * red channel.
+     */
+    public static final int MAX_PALETTES = 256;
+
+    private static final int MODE_PALETTE = 0;
+    private static final int MODE_CUTOUT = 1;
+
+    private static final @NotNull Map<String, Integer> rows = new HashMap<>();
+    private static final @NotNull List<Color[]> palettes = new ArrayList<>();
+    private static int generation;
+    private static int uploadedRows;
+
+    private static @Nullable ShaderProgram shader;
+    private static @Nullable Pixmap pixmap;
+    private static @Nullable Texture texture;
+
+    private PaletteShader() {
+    }
+
+    /**
+     * Returns a number that changes whenever the palette rows are cleared.
+     * Callers that cache a row from {@link #getPaletteRow(Array)} should
+     * request it again when this changes.
+     *
+     * @return the current generation of palette rows
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the row of the palette texture that holds the given colors,
+     * adding it if needed. New rows are uploaded by the next
+     * {@link #begin(SpriteBatch)}, so call this before <code>begin</code>,
+     * not between <code>begin</code> and drawing. Should only be called from
+     * the render thread.
+     *
+     * @param colors the colors, at most {@link #MAX_COLORS}
+     * @return the row of the palette
+     */
+    public static int getPaletteRow(@NotNull Array<Color> colors) {
+        if (colors.size == 0 || colors.size > MAX_COLORS)
+            throw new IllegalArgumentException("Palettes need 1 to " + MAX_COLORS + " colors, got " + colors.size);
+
+        StringBuilder key = new StringBuilder(colors.size * 9);
+        for (Color color : colors)
+            key.append(Integer.toHexString(Color.rgba8888(color))).append(',');
+
+        Integer row = rows.get(key.toString());
+        if (row != null)
+            return row;
+
+        // Only happens when many debug colors are used. Start over, and let
+        // every sprite sheet look up its row again
+        if (palettes.size() >= MAX_PALETTES) {
+            rows.clear();
+            palettes.clear();
+            uploadedRows = 0;
+            generation++;
+        }
+
+        Color[] copy = new Color[colors.size];
+        for (int i = 0; i < colors.size; i++)
+            copy[i] = new Color(colors.get(i));
+
+        row = palettes.size();
+        palettes.add(copy);
+        rows.put(key.toString(), row);
+        return row;
+    }
+
+    /**
+     * Returns the packed vertex color that draws a sprite with the given
+     * palette.
+     *
+     * @param row the row from {@link #getPaletteRow(Array)}
+     * @param numColors the number of colors in the palette
+     * @return the packed color to pass to {@link SpriteBatch#setPackedColor(float)}
+     */
+    public static float paletteColor(int row, int numColors) {
+        return Color.toFloatBits(row, numColors, MODE_PALETTE, 255);
+    }
+
+    /**
+     * Returns the packed vertex color that draws a sprite as-is, except black
+     * pixels are transparent.
+     *
+     * @return the packed color to pass to {@link SpriteBatch#setPackedColor(float)}
+     */
+    public static float cutoutColor() {
+        return Color.toFloatBits(0, 0, MODE_CUTOUT, 255);
+    }
+
+    /**
+     * Sets the palette shader on the batch, if it is not already set, and
+     * uploads any new palettes. Must be called between
+     * {@link SpriteBatch#begin()} and {@link SpriteBatch#end()}.
+     *
+     * @param batch the batch to draw with
+     */
+    public static void begin(@NotNull SpriteBatch batch) {
+        ShaderProgram shader = getShader();
+        Texture texture = getTexture();
+
+        if (uploadedRows < palettes.size()) {
+            // Uploading binds the palette to unit 0, so draw what is queued first
+            batch.flush();
+            for (int y = uploadedRows; y < palettes.size(); y++) {
+                Color[] palette = palettes.get(y);
+                for (int x = 0; x < palette.length; x++) {
+                    pixmap.setColor(palette[x]);
+                    pixmap.drawPixel(x, y);
+                }
+            }
+            texture.draw(pixmap, 0, 0);
+            uploadedRows = palettes.size();
+            bindPalette(texture);
+        }
+
+        if (batch.getShader() != shader) {
+            batch.setShader(shader);
+            bindPalette(texture);
+            shader.setUniformi("u_palette", 1);
+            shader.setUniformf("u_paletteSize", MAX_COLORS, MAX_PALETTES);
+        }
+    }
+
+    /**
+     * Restores the default shader of the batch, e.g. before drawing sprites
+     * that are tinted with the batch color.
+     *
+     * @param batch the batch to draw with
+     */
+    public static void end(@NotNull SpriteBatch batch) {
+        if (shader != null && batch.getShader() == shader)
+            batch.setShader(null);
+    }
+
+    private static void bindPalette(@NotNull Texture texture) {
+        texture.bind(1);
+        Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+    }
+
+    private static @NotNull ShaderProgram getShader() {
+        if (shader == null)
+            shader = Assets.acquireShader("shaders/palette.vert", "shaders/palette.frag");  // held for the whole run
+        return shader;
+    }
+
+    private static @NotNull Texture getTexture() {
+        if (texture == null) {
+            pixmap = new Pixmap(MAX_COLORS, MAX_PALETTES, Pixmap.Format.RGBA8888);
+            pixmap.setBlending(Pixmap.Blending.None);
+            texture = new Texture(pixmap);
+            texture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+            uploadedRows = 0;
+        }
+        return texture;
+    }
+}
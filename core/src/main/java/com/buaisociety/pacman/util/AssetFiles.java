@@ -0,0 +1,88 @@
+package com.buaisociety.pacman.util;
+
+import com.badlogic.gdx.Gdx;
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads internal asset files, with or without a running libGDX application.
+ *
+ * <p>When libGDX has been started, files are read through
+ * <code>Gdx.files.internal</code>. Otherwise (e.g. when evaluating games
+ * headlessly), files are read from the working directory, falling back to the
+ * <code>assets</code> folder.
+ */
+public final class AssetFiles {
+
+    private AssetFiles() {
+    }
+
+    /**
+     * Opens the internal file at the given path. The caller is responsible
+     * for closing the stream.
+     *
+     * @param path the internal path, e.g. <code>"levels.json"</code>
+     * @return the opened stream
+     */
+    public static @NotNull InputStream read(@NotNull String path) {
+        if (Gdx.files != null)
+            return Gdx.files.internal(path).read();
+
+        try {
+            return Files.newInputStream(resolve(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    /**
+     * Reads the internal file at the given path as a UTF-8 string.
+     *
+     * @param path the internal path, e.g. <code>"levels.json"</code>
+     * @return the contents of the file
+     */
+    public static @NotNull String readString(@NotNull String path) {
+        try (InputStream in = read(path)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    /**
+     * Decodes the internal image at the given path. Unlike a
+     * {@link com.badlogic.gdx.graphics.Pixmap}, this does not need the libGDX
+     * natives to be loaded.
+     *
+     * @param path the internal path, e.g. <code>"mazes/0/maze.png"</code>
+     * @return the decoded image
+     */
+    public static @NotNull BufferedImage readImage(@NotNull String path) {
+        try (InputStream in = read(path)) {
+            BufferedImage image = ImageIO.read(in);
+            if (image == null)
+                throw new IllegalArgumentException("Unsupported image format: " + path);
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    private static @NotNull Path resolve(@NotNull String path) {
+        Path file = Paths.get(path);
+        if (Files.exists(file))
+            return file;
+
+        Path asset = Paths.get("assets", path);
+        return Files.exists(asset) ? asset : file;
+    }
+}
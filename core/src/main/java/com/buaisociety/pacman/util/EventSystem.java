@@ -1,17 +1,71 @@
 package com.buaisociety.pacman.util;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents an event system that can be used to listen to events.
+ *
+ * <p>Event systems can be nested with {@link #createChild()}. A child calls
+ * the listeners of its parent (first) and its own, but listeners registered
+ * on a child are not seen by the parent. Each game gets a child of the
+ * shared event system (see {@link com.buaisociety.pacman.GameManager}), so
+ * games running on different threads never fire through the same system.
+ *
+ * <p>Firing an event does not look anything up in a map: every event class
+ * gets a small index, and each system keeps an array of listener arrays by
+ * index, rebuilt only after a listener is added or removed. Callers that fire
+ * often can check {@link #hasListeners(Class)} to skip creating the event.
  */
 public class EventSystem {
 
+    private static final @NotNull EventListener<?>[] NO_LISTENERS = new EventListener<?>[0];
+    private static final @NotNull AtomicInteger NEXT_TYPE = new AtomicInteger();
+    private static final @NotNull ClassValue<Integer> TYPES = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(@NotNull Class<?> type) {
+            return NEXT_TYPE.getAndIncrement();
+        }
+    };
+
+    private final @Nullable EventSystem parent;
     private final Map<Class<? extends Event>, Set<EventListener<?>>> listeners = new ConcurrentHashMap<>();
+    private final @NotNull AtomicInteger modifications = new AtomicInteger();  // incremented by every change to the listeners of this system
+    private volatile @NotNull Dispatch dispatch = new Dispatch(-1, new EventListener<?>[0][]);
+
+    public EventSystem() {
+        this(null);
+    }
+
+    private EventSystem(@Nullable EventSystem parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates an event system that also calls every listener of this one,
+     * including listeners registered after the child is created.
+     *
+     * @return the new child event system.
+     */
+    public @NotNull EventSystem createChild() {
+        return new EventSystem(this);
+    }
+
+    /**
+     * Returns the event system this one inherits listeners from.
+     *
+     * @return the parent, or null if this is not a child.
+     */
+    public @Nullable EventSystem getParent() {
+        return parent;
+    }
 
     /**
      * Adds a listener to be called when the <code>eventClass</code> event is fired.
@@ -22,6 +76,7 @@ public class EventSystem {
      */
     public <T extends Event> void registerListener(@NotNull Class<T> eventClass, @NotNull EventListener<T> listener) {
         listeners.computeIfAbsent(eventClass, k -> ConcurrentHashMap.newKeySet()).add(listener);
+        modifications.incrementAndGet();
     }
 
     /**
@@ -34,16 +89,30 @@ public class EventSystem {
      */
     public <T extends Event> void unregisterListener(@NotNull Class<T> eventClass, @NotNull EventListener<T> listener) {
         Set<EventListener<?>> listeners = this.listeners.get(eventClass);
-        if (listeners != null) {
-            listeners.remove(listener);
+        if (listeners != null && listeners.remove(listener)) {
+            modifications.incrementAndGet();
         }
     }
 
     /**
-     * Removes all listeners from the event system.
+     * Removes all listeners from the event system. Listeners of the parent are
+     * not removed.
      */
     public void unregisterAllListeners() {
         this.listeners.clear();
+        modifications.incrementAndGet();
+    }
+
+    /**
+     * Returns true if firing an event of the given class would call any
+     * listener, here or in a parent. Events that are fired often should check
+     * this first, to avoid creating events nobody listens to.
+     *
+     * @param eventClass the class of the event.
+     * @return true if the event has listeners.
+     */
+    public boolean hasListeners(@NotNull Class<? extends Event> eventClass) {
+        return getListeners(TYPES.get(eventClass)).length != 0;
     }
 
     /**
@@ -54,10 +123,7 @@ public class EventSystem {
      * @param <T> the type of event to fire.
      */
     public <T extends Event> @NotNull T fireEvent(@NotNull T event) {
-        Set<EventListener<?>> listeners = this.listeners.get(event.getClass());
-        if (listeners == null)
-            return event;
-
+        EventListener<?>[] listeners = getListeners(TYPES.get(event.getClass()));
         for (EventListener<?> listener : listeners) {
             try {
                 //noinspection unchecked
@@ -70,4 +136,57 @@ public class EventSystem {
 
         return event;
     }
+
+    private @NotNull EventListener<?>[] getListeners(int type) {
+        int version = getVersion();
+        Dispatch dispatch = this.dispatch;
+        if (dispatch.version != version) {
+            dispatch = new Dispatch(version, buildListeners());
+            this.dispatch = dispatch;
+        }
+        return type < dispatch.listeners.length ? dispatch.listeners[type] : NO_LISTENERS;
+    }
+
+    /**
+     * Returns a number that changes whenever the listeners of this system or
+     * any parent change. Every change increments 1 of the counters, so the
+     * sum never repeats.
+     */
+    private int getVersion() {
+        int version = 0;
+        for (EventSystem system = this; system != null; system = system.parent)
+            version += system.modifications.get();
+        return version;
+    }
+
+    private @NotNull EventListener<?>[][] buildListeners() {
+        // Parents first, so their listeners are called first
+        List<EventSystem> systems = new ArrayList<>();
+        for (EventSystem system = this; system != null; system = system.parent)
+            systems.add(0, system);
+
+        List<List<EventListener<?>>> collected = new ArrayList<>();
+        for (EventSystem system : systems) {
+            for (Map.Entry<Class<? extends Event>, Set<EventListener<?>>> entry : system.listeners.entrySet()) {
+                int type = TYPES.get(entry.getKey());
+                while (collected.size() <= type)
+                    collected.add(new ArrayList<>());
+                collected.get(type).addAll(entry.getValue());
+            }
+        }
+
+        // Event types with a higher index have no listeners
+        EventListener<?>[][] byType = new EventListener<?>[collected.size()][];
+        for (int type = 0; type < byType.length; type++) {
+            List<EventListener<?>> listeners = collected.get(type);
+            byType[type] = listeners.isEmpty() ? NO_LISTENERS : listeners.toArray(new EventListener<?>[0]);
+        }
+        return byType;
+    }
+
+    /**
+     * The listeners of every event type, as of the given version.
+     */
+    private record Dispatch(int version, @NotNull EventListener<?>[][] listeners) {
+    }
 }
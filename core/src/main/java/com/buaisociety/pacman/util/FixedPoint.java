@@ -0,0 +1,114 @@
+package com.buaisociety.pacman.util;
+
+import com.buaisociety.pacman.maze.Maze;
+
+/**
+ * A utility class for 16.16 fixed-point numbers, used for the positions and
+ * speeds of entities.
+ *
+ * <p>Speeds like {@link com.buaisociety.pacman.entity.Entity#BASE_SPEED}
+ * make positions fractional. With doubles, whether an entity lands exactly
+ * on the center of a tile depends on rounding, so comparisons needed a
+ * tolerance. Fixed-point positions are plain ints, so moving is integer
+ * addition, landing on a center is exact, and the tile of a position is a
+ * shift. 1/65536 of a pixel keeps every speed within 0.001% of its double
+ * value.
+ */
+public final class FixedPoint {
+
+    /**
+     * The number of fractional bits.
+     */
+    public static final int SHIFT = 16;
+
+    /**
+     * 1 pixel, in fixed point.
+     */
+    public static final int ONE = 1 << SHIFT;
+
+    /**
+     * Shifting a position right by this many bits gives its tile.
+     */
+    public static final int TILE_SHIFT = SHIFT + Integer.numberOfTrailingZeros(Maze.TILE_SIZE);
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Converts pixels to fixed point, rounding to the nearest 1/65536 pixel.
+     *
+     * @param pixels the number of pixels
+     * @return the fixed-point value
+     */
+    public static int fromPixels(double pixels) {
+        return (int) Math.round(pixels * ONE);
+    }
+
+    /**
+     * Converts whole pixels to fixed point.
+     *
+     * @param pixels the number of pixels
+     * @return the fixed-point value
+     */
+    public static int fromPixels(int pixels) {
+        return pixels << SHIFT;
+    }
+
+    /**
+     * Converts fixed point to pixels, keeping the fraction.
+     *
+     * @param fixed the fixed-point value
+     * @return the number of pixels
+     */
+    public static double toPixels(int fixed) {
+        return fixed / (double) ONE;
+    }
+
+    /**
+     * Returns the pixel that the fixed-point value is in, rounding down.
+     *
+     * @param fixed the fixed-point value
+     * @return the pixel
+     */
+    public static int toPixel(int fixed) {
+        return fixed >> SHIFT;
+    }
+
+    /**
+     * Returns the tile that the fixed-point value is in, rounding down.
+     *
+     * @param fixed the fixed-point value
+     * @return the tile
+     */
+    public static int toTile(int fixed) {
+        return fixed >> TILE_SHIFT;
+    }
+
+    /**
+     * Returns the center of the given tile, in fixed point. This is the same
+     * pixel as {@link com.buaisociety.pacman.maze.Tile#getCenterPixel()}.
+     *
+     * @param tile the tile coordinate, on either axis
+     * @return the fixed-point center of the tile
+     */
+    public static int tileCenter(int tile) {
+        return fromPixels(tile * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1);
+    }
+
+    /**
+     * Moves a value towards a target value by a maximum delta, without
+     * overshooting. See {@link NumberUtil#moveTowards(double, double, double)}.
+     *
+     * @param current the current value
+     * @param target the target value
+     * @param maxDelta the maximum delta to move
+     * @return the new value
+     */
+    public static int moveTowards(int current, int target, int maxDelta) {
+        if (current < target) {
+            return Math.min(current + maxDelta, target);
+        } else {
+            return Math.max(current - maxDelta, target);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.buaisociety.pacman.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A utility class for summarizing samples, e.g. the scores of many games.
+ */
+public final class Statistics {
+
+    /**
+     * The two-sided 95% quantile of the standard normal distribution.
+     */
+    public static final double Z_95 = 1.959963984540054;
+
+    private Statistics() {
+    }
+
+    /**
+     * Returns the arithmetic mean of the values, or <code>NaN</code> if there
+     * are no values.
+     *
+     * @param values the values to average
+     * @return the mean of the values
+     */
+    public static double mean(@NotNull double[] values) {
+        if (values.length == 0)
+            return Double.NaN;
+
+        double sum = 0;
+        for (double value : values)
+            sum += value;
+        return sum / values.length;
+    }
+
+    /**
+     * Returns the median of the values, or <code>NaN</code> if there are no
+     * values. The given array is not modified.
+     *
+     * @param values the values to find the median of
+     * @return the median of the values
+     */
+    public static double median(@NotNull double[] values) {
+        if (values.length == 0)
+            return Double.NaN;
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+
+    /**
+     * Returns the unbiased sample variance of the values, or <code>0</code>
+     * if there are fewer than 2 values.
+     *
+     * @param values the values to find the variance of
+     * @return the sample variance of the values
+     */
+    public static double variance(@NotNull double[] values) {
+        if (values.length < 2)
+            return 0.0;
+
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values)
+            sum += (value - mean) * (value - mean);
+        return sum / (values.length - 1);
+    }
+
+    /**
+     * Returns the half-width of the 95% confidence interval for the mean of
+     * the values, using Student's t distribution. Returns infinity if there
+     * are fewer than 2 values.
+     *
+     * @param values the sampled values
+     * @return the half-width of the confidence interval
+     */
+    public static double confidenceHalfWidth(@NotNull double[] values) {
+        int n = values.length;
+        if (n < 2)
+            return Double.POSITIVE_INFINITY;
+        return tCritical95(n - 1) * Math.sqrt(variance(values) / n);
+    }
+
+    /**
+     * Returns the two-sided 95% critical value of Student's t distribution
+     * with the given degrees of freedom. Uses the Cornish-Fisher expansion,
+     * which is within 1% of the exact value for 3 or more degrees of freedom,
+     * and converges to {@link #Z_95} for large samples.
+     *
+     * @param degreesOfFreedom the degrees of freedom, may be fractional
+     * @return the critical value
+     */
+    public static double tCritical95(double degreesOfFreedom) {
+        if (degreesOfFreedom <= 0)
+            return Double.POSITIVE_INFINITY;
+
+        double z = Z_95;
+        double z3 = z * z * z;
+        double z5 = z3 * z * z;
+        double v = degreesOfFreedom;
+        return z
+            + (z3 + z) / (4 * v)
+            + (5 * z5 + 16 * z3 + 3 * z) / (96 * v * v)
+            + (3 * z5 * z * z + 19 * z5 + 17 * z3 - 15 * z) / (384 * v * v * v);
+    }
+
+    /**
+     * Returns <code>a[i] - b[i]</code> for every index both samples have,
+     * e.g. the score differences of 2 players on the same seeds. The
+     * confidence interval of the mean difference is then
+     * {@link #confidenceHalfWidth(double[])} of the result.
+     *
+     * @param a the first sample
+     * @param b the second sample, paired with <code>a</code> by index
+     * @return the differences, as long as the shorter sample
+     */
+    public static @NotNull double[] pairedDifferences(@NotNull double[] a, @NotNull double[] b) {
+        double[] differences = new double[Math.min(a.length, b.length)];
+        for (int i = 0; i < differences.length; i++)
+            differences[i] = a[i] - b[i];
+        return differences;
+    }
+}